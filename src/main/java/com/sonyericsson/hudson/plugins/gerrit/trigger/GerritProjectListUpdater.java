@@ -23,6 +23,7 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.StringUtil;
 import com.sonymobile.tools.gerrit.gerritevents.ConnectionListener;
 import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
@@ -32,14 +33,32 @@ import com.sonymobile.tools.gerrit.gerritevents.ssh.SshConnection;
 import com.sonymobile.tools.gerrit.gerritevents.ssh.SshConnectionFactory;
 import com.sonymobile.tools.gerrit.gerritevents.ssh.SshException;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.CheckForNull;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +67,11 @@ import org.slf4j.LoggerFactory;
  * available Gerrit projects. Executed periodically on a timely basis
  * and every time the connection to the Gerrit server has been restored.
  *
+ * Every refresh downloads the complete project list, over REST in pages when enabled, since Gerrit
+ * can't list only what changed. What the comparison with the known list saves is replacing the index
+ * and rewriting the snapshot when nothing was added or removed, not the transfer itself.
+ * Projects created in between are added from ProjectCreated events.
+ *
  * @author Gustaf Lundh &lt;Gustaf.Lundh@sonyericsson.com&gt;
  */
 public class GerritProjectListUpdater extends Thread implements ConnectionListener, NamedGerritEventListener {
@@ -55,12 +79,34 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
      * The command for fetching projects.
      */
     public static final String GERRIT_LS_PROJECTS = "gerrit ls-projects";
+    /**
+     * The number of projects to ask for in each request to the REST API.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int REST_PAGE_SIZE =
+            Integer.getInteger(GerritProjectListUpdater.class.getName() + ".restPageSize", 500);
+    /**
+     * The directory in the Jenkins root where the last known project list of each server is kept.
+     */
+    public static final String SNAPSHOT_DIRECTORY = "gerrit-trigger-projects";
+    /**
+     * How often, in ms, the project list is written to the snapshot after projects have been created.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final long SNAPSHOT_PERIOD =
+            Long.getLong(GerritProjectListUpdater.class.getName() + ".snapshotPeriod", TimeUnit.SECONDS.toMillis(30));
+    /**
+     * The prefix Gerrit puts in front of JSON responses to prevent XSSI.
+     */
+    private static final String REST_MAGIC_PREFIX = ")]}'";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
     private static final int MAX_WAIT_TIME = 64;
 
     private AtomicBoolean connected = new AtomicBoolean(false);
-    private boolean shutdown = false;
+    private final AtomicBoolean snapshotPending = new AtomicBoolean(false);
+    private volatile boolean shutdown = false;
     private static final Logger logger = LoggerFactory.getLogger(GerritProjectListUpdater.class);
-    private List<String> gerritProjects;
+    private volatile ProjectIndex projectIndex = ProjectIndex.EMPTY;
     private String serverName;
 
     /**
@@ -133,19 +179,24 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
 
     /**
      * OverLoaded gerritEvent(GerritEvent gerritEvent).
+     * The snapshot is written later by {@link GerritProjectListSnapshotWriter}, not on the event thread.
      * @param gerritEvent the event.
      */
     public void gerritEvent(ProjectCreated gerritEvent) {
         addGerritProject(gerritEvent.getProjectName());
         logger.debug("Added project {} to project lists", gerritEvent.getProjectName());
+        snapshotPending.set(true);
     }
 
     /**
-     * Shutdown the thread.
+     * Shutdown the thread, writing the snapshot if projects have been created since it was last written.
      */
-    public synchronized void shutdown() {
-        shutdown = true;
-        notify();
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            notify();
+        }
+        flushSnapshot();
     }
 
     @Override
@@ -154,6 +205,7 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
         if (!getConfig().isEnableProjectAutoCompletion()) {
             return;
         }
+        loadSnapshot();
         if (getConfig().getProjectListFetchDelay() == 0) {
             tryLoadProjectList();
         } else {
@@ -233,20 +285,26 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
             logger.info("Trying to load project list.");
             if (isConnected()) {
                 IGerritHudsonTriggerConfig activeConfig = getConfig();
-                SshConnection sshConnection = SshConnectionFactory.getConnection(
-                        activeConfig.getGerritHostName(),
-                        activeConfig.getGerritSshPort(),
-                        activeConfig.getGerritProxy(),
-                        activeConfig.getGerritAuthentication()
-                );
-                List<String> projects = readProjects(sshConnection.executeCommandReader(GERRIT_LS_PROJECTS));
+                List<String> projects = null;
+                if (activeConfig.isUseRestApi()) {
+                    projects = loadProjectsOverRest(activeConfig);
+                }
+                if (shutdown) {
+                    logger.info("Stopped loading the project list of {}", serverName);
+                    return;
+                }
+                if (projects == null) {
+                    projects = loadProjectsOverSsh(activeConfig);
+                }
                 if (projects.size() > 0) {
-                    setGerritProjects(projects);
                     logger.info("Project list from {} contains {} entries", serverName, projects.size());
+                    if (applyGerritProjects(projects)) {
+                        snapshotPending.set(false);
+                        saveSnapshot();
+                    }
                 } else {
                     logger.warn("Project list from {} contains 0 projects", serverName);
                 }
-                sshConnection.disconnect();
             }
         } catch (SshException ex) {
             logger.warn("Could not connect to Gerrit server when updating Gerrit project list: ", ex);
@@ -255,6 +313,235 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
         }
     }
 
+    /**
+     * Loads the entire project list with gerrit ls-projects over a new SSH connection.
+     *
+     * @param config the server config.
+     * @return the projects.
+     * @throws IOException if the command output could not be read.
+     */
+    private List<String> loadProjectsOverSsh(IGerritHudsonTriggerConfig config) throws IOException {
+        SshConnection sshConnection = SshConnectionFactory.getConnection(
+                config.getGerritHostName(),
+                config.getGerritSshPort(),
+                config.getGerritProxy(),
+                config.getGerritAuthentication()
+        );
+        List<String> projects = readProjects(sshConnection.executeCommandReader(GERRIT_LS_PROJECTS));
+        sshConnection.disconnect();
+        return projects;
+    }
+
+    /**
+     * Loads the entire project list from the REST API, {@link #REST_PAGE_SIZE} projects at a time.
+     * This is a full download on every refresh, there is no filter for what changed since the last one.
+     *
+     * @param config the server config.
+     * @return the projects, or null if they could not be loaded or the updater was shut down while loading.
+     */
+    @CheckForNull
+    private List<String> loadProjectsOverRest(IGerritHudsonTriggerConfig config) {
+        String restUrl = config.getGerritFrontEndUrl();
+        if (restUrl == null || restUrl.isEmpty()) {
+            return null;
+        }
+        if (!restUrl.endsWith("/")) {
+            restUrl = restUrl + "/";
+        }
+        List<String> projects = new ArrayList<String>();
+        while (!shutdown) {
+            List<String> page = loadProjectsPage(config, buildProjectsUrl(restUrl, REST_PAGE_SIZE, projects.size()));
+            if (page == null) {
+                logger.warn("Could not load the project list from {} over REST, will try SSH", serverName);
+                return null;
+            }
+            projects.addAll(page);
+            if (page.size() < REST_PAGE_SIZE) {
+                return projects;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads one page of projects from the REST API.
+     *
+     * @param config the server config.
+     * @param url the url of the page.
+     * @return the project names in the page, or null if the request failed.
+     */
+    @CheckForNull
+    private List<String> loadProjectsPage(IGerritHudsonTriggerConfig config, String url) {
+        logger.debug("({}) Going to GET: {}", serverName, url);
+        HttpResponse execute = null;
+        try {
+            execute = HttpUtils.performHTTPGet(config, url);
+            int statusCode = execute.getStatusLine().getStatusCode();
+            if (statusCode != HttpURLConnection.HTTP_OK) {
+                logger.warn("({}) Listing projects failed with status code {}", serverName, statusCode);
+                return null;
+            }
+            HttpEntity entity = execute.getEntity();
+            if (entity == null) {
+                return null;
+            }
+            return parseRestProjects(EntityUtils.toString(entity, UTF_8));
+        } catch (IOException e) {
+            logger.warn("({}) Listing projects failed: {}", serverName, e.getMessage(), e);
+            return null;
+        } catch (JSONException e) {
+            logger.warn("({}) Could not parse the listed projects: {}", serverName, e.getMessage(), e);
+            return null;
+        } finally {
+            if (execute instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable)execute);
+            }
+        }
+    }
+
+    /**
+     * Builds the url for a page of the REST project list.
+     *
+     * @param restUrl the front end url of the server, ending with a slash.
+     * @param limit the maximum number of projects in the page.
+     * @param skip the number of projects to skip.
+     * @return the url.
+     */
+    public static String buildProjectsUrl(String restUrl, int limit, int skip) {
+        return restUrl + "a/projects/?n=" + limit + "&S=" + skip;
+    }
+
+    /**
+     * Reads the project names from a REST API response listing projects, a JSON object keyed by project name.
+     *
+     * @param body the response body, with or without the XSSI prefix.
+     * @return the project names in the order they were listed.
+     */
+    public static List<String> parseRestProjects(String body) {
+        String json = body.trim();
+        if (json.startsWith(REST_MAGIC_PREFIX)) {
+            json = json.substring(REST_MAGIC_PREFIX.length());
+        }
+        List<String> projects = new ArrayList<String>();
+        Iterator keys = JSONObject.fromObject(json).keys();
+        while (keys.hasNext()) {
+            projects.add(String.valueOf(keys.next()));
+        }
+        return projects;
+    }
+
+    /**
+     * The file where the last known project list of the server is kept.
+     *
+     * @return the file, or null if Jenkins is not available.
+     */
+    @CheckForNull
+    private File getSnapshotFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(new File(jenkins.getRootDir(), SNAPSHOT_DIRECTORY), Util.rawEncode(serverName) + ".txt");
+    }
+
+    /**
+     * Fills the project list with the last known projects of the server, if it is still empty.
+     */
+    private void loadSnapshot() {
+        File file = getSnapshotFile();
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try {
+            List<String> projects = readSnapshot(file);
+            synchronized (this) {
+                if (projectIndex.size() == 0) {
+                    setGerritProjects(projects);
+                }
+            }
+            logger.info("Loaded {} projects of {} from {}", new Object[]{projects.size(), serverName, file});
+        } catch (IOException e) {
+            logger.warn("Could not read the project list snapshot {}", file, e);
+        }
+    }
+
+    /**
+     * Writes the current project list to the snapshot file.
+     *
+     * @return false if it could not be written.
+     */
+    private boolean saveSnapshot() {
+        File file = getSnapshotFile();
+        if (file == null) {
+            return true;
+        }
+        try {
+            writeSnapshot(file, getGerritProjects());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not write the project list snapshot {}", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the snapshot if projects have been created since it was last written.
+     */
+    public void flushSnapshot() {
+        if (snapshotPending.getAndSet(false) && !saveSnapshot()) {
+            snapshotPending.set(true);
+        }
+    }
+
+    /**
+     * If projects have been created since the snapshot was last written.
+     *
+     * @return true if so.
+     */
+    boolean isSnapshotPending() {
+        return snapshotPending.get();
+    }
+
+    /**
+     * Reads a project list snapshot, one project per line.
+     *
+     * @param file the snapshot file.
+     * @return the projects.
+     * @throws IOException if the file could not be read.
+     */
+    public static List<String> readSnapshot(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+        try {
+            return readProjects(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes a project list snapshot, one project per line. The file is replaced atomically.
+     *
+     * @param file the snapshot file.
+     * @param projects the projects.
+     * @throws IOException if the file could not be written.
+     */
+    public static void writeSnapshot(File file, List<String> projects) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(file, UTF_8.name());
+        try {
+            for (String project : projects) {
+                writer.write(project);
+                writer.write('\n');
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
     /**
      * Get the the server config.
      * @return the server config or null if config not found.
@@ -310,11 +597,11 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
     }
 
     /**
-     * Adds a Gerrit project to this.gerritProjects.
+     * Adds a Gerrit project to the project index.
      * @param gerritProject the Gerrit project to add.
      */
     public synchronized void addGerritProject(String gerritProject) {
-        gerritProjects.add(gerritProject);
+        projectIndex = projectIndex.withProject(gerritProject);
     }
 
     /**
@@ -322,18 +609,49 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
      * @param projects The list of projects
      */
     public synchronized void setGerritProjects(List<String> projects) {
-        gerritProjects = projects;
+        projectIndex = ProjectIndex.of(projects);
     }
 
     /**
-     * Returns a string list of Gerrit projects.
-     * @return list of gerrit projects
+     * Replaces the internal Gerrit project list if the given list adds or removes any project.
+     *
+     * @param projects the complete list of projects.
+     * @return true if the list changed.
      */
-    public synchronized List<String> getGerritProjects() {
-        if (gerritProjects == null) {
-            gerritProjects = new ArrayList<String>();
+    public synchronized boolean applyGerritProjects(List<String> projects) {
+        ProjectIndex known = projectIndex;
+        ProjectIndex loaded = ProjectIndex.of(projects);
+        if (loaded.equals(known)) {
+            logger.debug("Project list from {} is unchanged", serverName);
+            return false;
         }
-        return gerritProjects;
+        int added = 0;
+        for (String project : loaded.asList()) {
+            if (!known.contains(project)) {
+                added++;
+            }
+        }
+        int removed = known.size() - (loaded.size() - added);
+        logger.info("Project list from {} has {} new and {} removed projects",
+                new Object[]{serverName, added, removed});
+        projectIndex = loaded;
+        return true;
+    }
+
+    /**
+     * Returns a string list of Gerrit projects.
+     * @return sorted, unmodifiable list of gerrit projects
+     */
+    public List<String> getGerritProjects() {
+        return projectIndex.asList();
+    }
+
+    /**
+     * The sorted index of the Gerrit projects, for finding projects by prefix.
+     * @return the index.
+     */
+    public ProjectIndex getProjectIndex() {
+        return projectIndex;
     }
 
     @Override
@@ -68,6 +68,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.CheckForNull;
 import javax.servlet.ServletException;
 
 import jenkins.model.Jenkins;
@@ -114,6 +115,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritConnec
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritSlave;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.GerritMissedEventsPlaybackManager;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.SupersessionPolicy;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.version.GerritVersionChecker;
 
 /**
@@ -621,6 +623,16 @@ public class GerritServer implements Describable<GerritServer>, Action {
         }
     }
 
+    /**
+     * The project list updater, while the server is started.
+     *
+     * @return the updater or null.
+     */
+    @CheckForNull
+    GerritProjectListUpdater getProjectListUpdater() {
+        return projectListUpdater;
+    }
+
     /**
      * Returns a list of Gerrit projects.
      *
@@ -634,6 +646,19 @@ public class GerritServer implements Describable<GerritServer>, Action {
         }
     }
 
+    /**
+     * Returns the sorted index of the Gerrit projects.
+     *
+     * @return the index of gerrit projects
+     */
+    public ProjectIndex getProjectIndex() {
+        if (projectListUpdater != null) {
+            return projectListUpdater.getProjectIndex();
+        } else {
+            return ProjectIndex.EMPTY;
+        }
+    }
+
     /**
      * Adds the given event to the stream of events.
      * It gets added to the same event queue as any event coming from the stream-events command in Gerrit.
@@ -873,6 +898,19 @@ public class GerritServer implements Describable<GerritServer>, Action {
             }
             return items;
         }
+
+        /**
+         * Fill the dropdown for missed events playback policies.
+         *
+         * @return the values.
+         */
+        public ListBoxModel doFillMissedEventsPlaybackPolicyItems() {
+            ListBoxModel items = new ListBoxModel(SupersessionPolicy.values().length);
+            for (SupersessionPolicy policy : SupersessionPolicy.values()) {
+                items.add(new Option(policy.getDisplayName(), policy.name()));
+            }
+            return items;
+        }
     }
 
     /**
@@ -23,6 +23,9 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +33,7 @@ import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
 import com.sonymobile.tools.gerrit.gerritevents.workers.EventThread;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEventLifecycle;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEventLifecycleListener;
 
 /**
  * Specialization of GerritHandler that supports gerrit event's
@@ -41,6 +45,9 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(JenkinsAwareGerritHandler.class);
 
+    private final List<GerritEventLifecycleListener> triggerScanListeners =
+            new CopyOnWriteArrayList<GerritEventLifecycleListener>();
+
     /**
      * Standard Constructor.
      *
@@ -62,9 +69,53 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
         return new SystemEventThread(this, threadName);
     }
 
+    /**
+     * Adds a listener that is told when the listeners start and are done scanning every event,
+     * regardless of whether the event is a {@link GerritEventLifecycle} or not.
+     * Only {@link GerritEventLifecycleListener#triggerScanStarting(GerritEvent)} and
+     * {@link GerritEventLifecycleListener#triggerScanDone(GerritEvent)} are called.
+     *
+     * @param listener the listener.
+     */
+    public void addTriggerScanListener(GerritEventLifecycleListener listener) {
+        triggerScanListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addTriggerScanListener(GerritEventLifecycleListener)}.
+     *
+     * @param listener the listener.
+     * @return true if it was removed.
+     */
+    public boolean removeTriggerScanListener(GerritEventLifecycleListener listener) {
+        return triggerScanListeners.remove(listener);
+    }
+
     @Override
     public void notifyListeners(GerritEvent event) {
-        // Notify lifecycle listeners.
+        fireTriggerScanStarting(event);
+        try {
+            // The read deal
+            super.notifyListeners(event);
+        } finally {
+            fireTriggerScanDone(event);
+        }
+    }
+
+    /**
+     * Tells the trigger scan listeners and, for lifecycle events, the event's own listeners
+     * that the scan of the event is starting.
+     *
+     * @param event the event.
+     */
+    private void fireTriggerScanStarting(GerritEvent event) {
+        for (GerritEventLifecycleListener listener : triggerScanListeners) {
+            try {
+                listener.triggerScanStarting(event);
+            } catch (Exception ex) {
+                logger.error("Error when notifying trigger scan listeners. ", ex);
+            }
+        }
         if (event instanceof GerritEventLifecycle) {
             try {
                 ((GerritEventLifecycle)event).fireTriggerScanStarting();
@@ -72,11 +123,15 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
                 logger.error("Error when notifying LifecycleListeners. ", ex);
             }
         }
+    }
 
-        // The read deal
-        super.notifyListeners(event);
-
-        // //Notify lifecycle listeners.
+    /**
+     * Tells the lifecycle listeners of the event and the trigger scan listeners
+     * that the scan of the event is done.
+     *
+     * @param event the event.
+     */
+    private void fireTriggerScanDone(GerritEvent event) {
         if (event instanceof GerritEventLifecycle) {
             try {
                 ((GerritEventLifecycle)event).fireTriggerScanDone();
@@ -84,5 +139,12 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
                 logger.error("Error when notifying LifecycleListeners. ", ex);
             }
         }
+        for (GerritEventLifecycleListener listener : triggerScanListeners) {
+            try {
+                listener.triggerScanDone(event);
+            } catch (Exception ex) {
+                logger.error("Error when notifying trigger scan listeners. ", ex);
+            }
+        }
     }
 }
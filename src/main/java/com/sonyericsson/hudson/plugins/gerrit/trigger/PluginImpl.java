@@ -30,8 +30,15 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Config;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.MessageProviderInvoker;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.StartedNotificationCoalescer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.TriggerContextConverter;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.ReplicationQueueTaskDispatcher;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
@@ -569,6 +576,16 @@ public class PluginImpl extends Plugin {
             gerritEventManager = null;
         }
         GerritSendCommandQueue.shutdown();
+        PrioritizedSendQueue.getInstance().clear();
+        StartedNotificationCoalescer.getInstance().clear();
+        SendRateLimiter.getInstance().clear();
+        MessageProviderInvoker.getInstance().shutdown();
+        NotificationLatency.getInstance().clear();
+        HttpUtils.closeClients();
+        ReplicationQueueTaskDispatcher replicationDispatcher = ReplicationQueueTaskDispatcher.getInstance();
+        if (replicationDispatcher != null) {
+            replicationDispatcher.getReplicationCache().close();
+        }
         servers.clear();
     }
 
@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An immutable, sorted and deduplicated list of the project names of a Gerrit server.
+ * Projects starting with a prefix are found with a binary search instead of a scan of the whole list.
+ */
+public final class ProjectIndex {
+
+    /**
+     * The index without any projects.
+     */
+    public static final ProjectIndex EMPTY = new ProjectIndex(new String[0]);
+
+    private final String[] projects;
+
+    /**
+     * Constructor.
+     *
+     * @param projects the sorted and deduplicated projects, not copied.
+     */
+    private ProjectIndex(String[] projects) {
+        this.projects = projects;
+    }
+
+    /**
+     * Creates an index of the projects.
+     *
+     * @param projects the projects, in any order and possibly with duplicates.
+     * @return the index.
+     */
+    public static ProjectIndex of(Collection<String> projects) {
+        if (projects == null || projects.isEmpty()) {
+            return EMPTY;
+        }
+        TreeSet<String> sorted = new TreeSet<String>(projects);
+        sorted.remove(null);
+        return new ProjectIndex(sorted.toArray(new String[sorted.size()]));
+    }
+
+    /**
+     * Creates an index with one more project.
+     *
+     * @param project the project to add.
+     * @return the new index, or this index if the project is already in it.
+     */
+    public ProjectIndex withProject(String project) {
+        int index = Arrays.binarySearch(projects, project);
+        if (index >= 0) {
+            return this;
+        }
+        int insertAt = -index - 1;
+        String[] added = new String[projects.length + 1];
+        System.arraycopy(projects, 0, added, 0, insertAt);
+        added[insertAt] = project;
+        System.arraycopy(projects, insertAt, added, insertAt + 1, projects.length - insertAt);
+        return new ProjectIndex(added);
+    }
+
+    /**
+     * The number of projects.
+     *
+     * @return the size.
+     */
+    public int size() {
+        return projects.length;
+    }
+
+    /**
+     * If the project is in the index.
+     *
+     * @param project the project name.
+     * @return true if so.
+     */
+    public boolean contains(String project) {
+        return project != null && Arrays.binarySearch(projects, project) >= 0;
+    }
+
+    /**
+     * All projects in sorted order.
+     *
+     * @return an unmodifiable view of the projects.
+     */
+    public List<String> asList() {
+        return Collections.unmodifiableList(Arrays.asList(projects));
+    }
+
+    /**
+     * Finds the first projects, in sorted order, starting with the prefix.
+     *
+     * @param prefix the prefix, null or empty for any project.
+     * @param limit  the maximum number of projects to return.
+     * @return the matching projects.
+     */
+    public List<String> find(String prefix, int limit) {
+        List<String> found = new ArrayList<String>(Math.min(Math.max(limit, 0), projects.length));
+        for (int i = firstIndexOf(prefix); i < projects.length && found.size() < limit; i++) {
+            if (prefix != null && !projects[i].startsWith(prefix)) {
+                break;
+            }
+            found.add(projects[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the first projects, in sorted order, starting with the prefix in any of the indexes.
+     *
+     * @param indexes the indexes to search.
+     * @param prefix  the prefix, null or empty for any project.
+     * @param limit   the maximum number of projects to return.
+     * @return the matching projects without duplicates.
+     */
+    public static List<String> find(Collection<ProjectIndex> indexes, String prefix, int limit) {
+        if (indexes.size() == 1) {
+            return indexes.iterator().next().find(prefix, limit);
+        }
+        TreeSet<String> found = new TreeSet<String>();
+        for (ProjectIndex index : indexes) {
+            found.addAll(index.find(prefix, limit));
+        }
+        List<String> list = new ArrayList<String>(Math.min(Math.max(limit, 0), found.size()));
+        for (String project : found) {
+            if (list.size() >= limit) {
+                break;
+            }
+            list.add(project);
+        }
+        return list;
+    }
+
+    /**
+     * The position of the first project that is equal to or sorts after the prefix.
+     *
+     * @param prefix the prefix.
+     * @return the position.
+     */
+    private int firstIndexOf(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(projects, prefix);
+        if (index < 0) {
+            return -index - 1;
+        }
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ProjectIndex)) {
+            return false;
+        }
+        return Arrays.equals(projects, ((ProjectIndex)obj).projects);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(projects);
+    }
+}
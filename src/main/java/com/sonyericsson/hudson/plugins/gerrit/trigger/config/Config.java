@@ -25,6 +25,7 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.config;
 
 import com.google.common.primitives.Ints;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.BuildCancellationPolicy;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.SupersessionPolicy;
 import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
@@ -151,6 +152,46 @@ public class Config implements IGerritHudsonTriggerConfig {
      */
     public static final Notify DEFAULT_NOTIFICATION_LEVEL = Notify.ALL;
 
+    /**
+     * Default share of the send queue this server gets compared to other servers.
+     */
+    public static final int DEFAULT_SEND_QUEUE_WEIGHT = 1;
+
+    /**
+     * Default number of seconds build started notifications are held back to be sent as one, 0 means never.
+     */
+    public static final int DEFAULT_BUILD_STARTED_COALESCE_WINDOW = 0;
+
+    /**
+     * Default number of review commands per minute that may be sent to the server, 0 means no limit.
+     */
+    public static final int DEFAULT_NOTIFICATION_RATE_LIMIT = 0;
+
+    /**
+     * Default number of review commands that may be sent in a burst before the rate limit kicks in.
+     */
+    public static final int DEFAULT_NOTIFICATION_BURST = 10;
+
+    /**
+     * Default length in minutes of each window of missed events fetched from the events-log plugin.
+     */
+    public static final int DEFAULT_MISSED_EVENTS_PLAYBACK_WINDOW = 10;
+
+    /**
+     * Default number of missed events per minute that are played back, 0 means no limit.
+     */
+    public static final int DEFAULT_MISSED_EVENTS_PLAYBACK_RATE = 0;
+
+    /**
+     * Default number of items in the build queue above which playback of missed events waits, 0 means no limit.
+     */
+    public static final int DEFAULT_MISSED_EVENTS_PLAYBACK_MAX_QUEUED = 0;
+
+    /**
+     * Default policy for skipping missed events made outdated by later events.
+     */
+    public static final SupersessionPolicy DEFAULT_MISSED_EVENTS_PLAYBACK_POLICY = SupersessionPolicy.LATEST_PATCHSET;
+
     private static final String GERRIT_CMD_BUILD_STARTED_DEFAULT_VALUE = "gerrit review <CHANGE>,<PATCHSET> --message 'Build Started <BUILDURL> <STARTED_STATS>' "
         + "--verified <VERIFIED> --code-review <CODE_REVIEW> --tag " + Constants.TAG_VALUE;
     private static final String GERRIT_CMD_BUILD_SUCCESSFUL_DEFAULT_VALUE = "gerrit review <CHANGE>,<PATCHSET> --message 'Build Successful <BUILDS_STATS>' "
@@ -221,6 +262,14 @@ public class Config implements IGerritHudsonTriggerConfig {
     private WatchTimeExceptionData watchTimeExceptionData;
     private Notify notificationLevel;
     private BuildCancellationPolicy buildCurrentPatchesOnly;
+    private int sendQueueWeight;
+    private int buildStartedCoalesceWindow;
+    private int notificationRateLimit;
+    private int notificationBurst;
+    private int missedEventsPlaybackWindow;
+    private int missedEventsPlaybackRate;
+    private int missedEventsPlaybackMaxQueued;
+    private SupersessionPolicy missedEventsPlaybackPolicy;
 
 
     /**
@@ -279,6 +328,14 @@ public class Config implements IGerritHudsonTriggerConfig {
         enableProjectAutoCompletion = config.isEnableProjectAutoCompletion();
         projectListFetchDelay = config.getProjectListFetchDelay();
         projectListRefreshInterval = config.getProjectListRefreshInterval();
+        sendQueueWeight = config.getSendQueueWeight();
+        buildStartedCoalesceWindow = config.getBuildStartedCoalesceWindow();
+        notificationRateLimit = config.getNotificationRateLimit();
+        notificationBurst = config.getNotificationBurst();
+        missedEventsPlaybackWindow = config.getMissedEventsPlaybackWindow();
+        missedEventsPlaybackRate = config.getMissedEventsPlaybackRate();
+        missedEventsPlaybackMaxQueued = config.getMissedEventsPlaybackMaxQueued();
+        missedEventsPlaybackPolicy = config.getMissedEventsPlaybackPolicy();
 
         assertDefaultCategories();
 
@@ -416,6 +473,46 @@ public class Config implements IGerritHudsonTriggerConfig {
                 "projectListFetchDelay",
                 DEFAULT_PROJECT_LIST_FETCH_DELAY);
 
+        sendQueueWeight = formData.optInt("sendQueueWeight", DEFAULT_SEND_QUEUE_WEIGHT);
+        if (sendQueueWeight <= 0) {
+            sendQueueWeight = DEFAULT_SEND_QUEUE_WEIGHT;
+        }
+
+        buildStartedCoalesceWindow = formData.optInt("buildStartedCoalesceWindow",
+                DEFAULT_BUILD_STARTED_COALESCE_WINDOW);
+        if (buildStartedCoalesceWindow < 0) {
+            buildStartedCoalesceWindow = DEFAULT_BUILD_STARTED_COALESCE_WINDOW;
+        }
+
+        notificationRateLimit = formData.optInt("notificationRateLimit", DEFAULT_NOTIFICATION_RATE_LIMIT);
+        if (notificationRateLimit < 0) {
+            notificationRateLimit = DEFAULT_NOTIFICATION_RATE_LIMIT;
+        }
+        notificationBurst = formData.optInt("notificationBurst", DEFAULT_NOTIFICATION_BURST);
+        if (notificationBurst <= 0) {
+            notificationBurst = DEFAULT_NOTIFICATION_BURST;
+        }
+        missedEventsPlaybackWindow = formData.optInt("missedEventsPlaybackWindow",
+                DEFAULT_MISSED_EVENTS_PLAYBACK_WINDOW);
+        if (missedEventsPlaybackWindow <= 0) {
+            missedEventsPlaybackWindow = DEFAULT_MISSED_EVENTS_PLAYBACK_WINDOW;
+        }
+        missedEventsPlaybackRate = formData.optInt("missedEventsPlaybackRate", DEFAULT_MISSED_EVENTS_PLAYBACK_RATE);
+        if (missedEventsPlaybackRate < 0) {
+            missedEventsPlaybackRate = DEFAULT_MISSED_EVENTS_PLAYBACK_RATE;
+        }
+        missedEventsPlaybackMaxQueued = formData.optInt("missedEventsPlaybackMaxQueued",
+                DEFAULT_MISSED_EVENTS_PLAYBACK_MAX_QUEUED);
+        if (missedEventsPlaybackMaxQueued < 0) {
+            missedEventsPlaybackMaxQueued = DEFAULT_MISSED_EVENTS_PLAYBACK_MAX_QUEUED;
+        }
+        try {
+            missedEventsPlaybackPolicy = SupersessionPolicy.valueOf(formData.optString("missedEventsPlaybackPolicy",
+                    DEFAULT_MISSED_EVENTS_PLAYBACK_POLICY.name()));
+        } catch (IllegalArgumentException e) {
+            missedEventsPlaybackPolicy = DEFAULT_MISSED_EVENTS_PLAYBACK_POLICY;
+        }
+
         categories = new LinkedList<VerdictCategory>();
         if (formData.has("verdictCategories")) {
             Object cat = formData.get("verdictCategories");
@@ -1099,6 +1196,138 @@ public class Config implements IGerritHudsonTriggerConfig {
         return replicationConfig;
     }
 
+    @Override
+    public int getSendQueueWeight() {
+        if (sendQueueWeight <= 0) {
+            sendQueueWeight = DEFAULT_SEND_QUEUE_WEIGHT;
+        }
+        return sendQueueWeight;
+    }
+
+    /**
+     * Sets the share of the send queue.
+     *
+     * @param sendQueueWeight the weight.
+     * @see #getSendQueueWeight()
+     */
+    public void setSendQueueWeight(int sendQueueWeight) {
+        this.sendQueueWeight = sendQueueWeight;
+    }
+
+    @Override
+    public int getBuildStartedCoalesceWindow() {
+        return Math.max(0, buildStartedCoalesceWindow);
+    }
+
+    /**
+     * Sets the number of seconds build started notifications are held back.
+     *
+     * @param buildStartedCoalesceWindow the window in seconds, 0 to send them right away.
+     * @see #getBuildStartedCoalesceWindow()
+     */
+    public void setBuildStartedCoalesceWindow(int buildStartedCoalesceWindow) {
+        this.buildStartedCoalesceWindow = buildStartedCoalesceWindow;
+    }
+
+    @Override
+    public int getNotificationRateLimit() {
+        return Math.max(0, notificationRateLimit);
+    }
+
+    /**
+     * Sets the number of review commands per minute that may be sent to the server.
+     *
+     * @param notificationRateLimit the rate, 0 for no limit.
+     * @see #getNotificationRateLimit()
+     */
+    public void setNotificationRateLimit(int notificationRateLimit) {
+        this.notificationRateLimit = notificationRateLimit;
+    }
+
+    @Override
+    public int getNotificationBurst() {
+        if (notificationBurst <= 0) {
+            notificationBurst = DEFAULT_NOTIFICATION_BURST;
+        }
+        return notificationBurst;
+    }
+
+    /**
+     * Sets the number of review commands that may be sent in a burst.
+     *
+     * @param notificationBurst the burst size.
+     * @see #getNotificationBurst()
+     */
+    public void setNotificationBurst(int notificationBurst) {
+        this.notificationBurst = notificationBurst;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackWindow() {
+        if (missedEventsPlaybackWindow <= 0) {
+            missedEventsPlaybackWindow = DEFAULT_MISSED_EVENTS_PLAYBACK_WINDOW;
+        }
+        return missedEventsPlaybackWindow;
+    }
+
+    /**
+     * Sets the length of each window of missed events fetched from the events-log plugin.
+     *
+     * @param missedEventsPlaybackWindow the window in minutes.
+     * @see #getMissedEventsPlaybackWindow()
+     */
+    public void setMissedEventsPlaybackWindow(int missedEventsPlaybackWindow) {
+        this.missedEventsPlaybackWindow = missedEventsPlaybackWindow;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackRate() {
+        return Math.max(0, missedEventsPlaybackRate);
+    }
+
+    /**
+     * Sets the number of missed events per minute that are played back.
+     *
+     * @param missedEventsPlaybackRate the rate, 0 for no limit.
+     * @see #getMissedEventsPlaybackRate()
+     */
+    public void setMissedEventsPlaybackRate(int missedEventsPlaybackRate) {
+        this.missedEventsPlaybackRate = missedEventsPlaybackRate;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackMaxQueued() {
+        return Math.max(0, missedEventsPlaybackMaxQueued);
+    }
+
+    /**
+     * Sets the number of items in the build queue above which playback of missed events waits.
+     *
+     * @param missedEventsPlaybackMaxQueued the number of items, 0 for no limit.
+     * @see #getMissedEventsPlaybackMaxQueued()
+     */
+    public void setMissedEventsPlaybackMaxQueued(int missedEventsPlaybackMaxQueued) {
+        this.missedEventsPlaybackMaxQueued = missedEventsPlaybackMaxQueued;
+    }
+
+    @Override
+    public SupersessionPolicy getMissedEventsPlaybackPolicy() {
+        if (missedEventsPlaybackPolicy == null) {
+            return DEFAULT_MISSED_EVENTS_PLAYBACK_POLICY;
+        }
+        return missedEventsPlaybackPolicy;
+    }
+
+    /**
+     * Sets which missed events to skip when they are made outdated by later events.
+     *
+     * @param missedEventsPlaybackPolicy the policy.
+     * @see #getMissedEventsPlaybackPolicy()
+     */
+    public void setMissedEventsPlaybackPolicy(SupersessionPolicy missedEventsPlaybackPolicy) {
+        this.missedEventsPlaybackPolicy = missedEventsPlaybackPolicy;
+    }
+
     @Override
     public int getWatchdogTimeoutSeconds() {
         return (int)TimeUnit.MINUTES.toSeconds(watchdogTimeoutMinutes);
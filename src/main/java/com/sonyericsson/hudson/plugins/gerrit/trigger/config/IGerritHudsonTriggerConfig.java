@@ -24,6 +24,7 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.config;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.BuildCancellationPolicy;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.SupersessionPolicy;
 import com.sonymobile.tools.gerrit.gerritevents.GerritConnectionConfig2;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
@@ -284,6 +285,72 @@ public interface IGerritHudsonTriggerConfig extends GerritConnectionConfig2 {
      */
     ReplicationConfig getReplicationConfig();
 
+    /**
+     * The weight of this server when the send queue picks the next notification to send.
+     * A server with weight 2 gets twice as many commands sent as a server with weight 1
+     * when both have notifications waiting in the same lane.
+     *
+     * @return the weight, always &gt; 0.
+     * @see com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue
+     */
+    int getSendQueueWeight();
+
+    /**
+     * The number of seconds build started notifications for the same event are held back
+     * so that they can be sent to Gerrit as one comment instead of one per triggered job.
+     *
+     * @return the window in seconds, 0 if started notifications should be sent right away.
+     * @see com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.StartedNotificationCoalescer
+     */
+    int getBuildStartedCoalesceWindow();
+
+    /**
+     * The maximum number of review commands per minute sent to this server, over SSH or REST.
+     *
+     * @return the rate, 0 if there is no limit.
+     * @see com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter
+     */
+    int getNotificationRateLimit();
+
+    /**
+     * The number of review commands that may be sent to this server back to back
+     * before {@link #getNotificationRateLimit()} kicks in.
+     *
+     * @return the burst size, always &gt; 0.
+     */
+    int getNotificationBurst();
+
+    /**
+     * The length of each window of missed events that is fetched from the events-log plugin
+     * and played back before the next is fetched.
+     *
+     * @return the window in minutes, always &gt; 0.
+     * @see com.sonyericsson.hudson.plugins.gerrit.trigger.playback.GerritMissedEventsPlaybackManager
+     */
+    int getMissedEventsPlaybackWindow();
+
+    /**
+     * The maximum number of missed events per minute that are played back after a reconnect.
+     *
+     * @return the rate, 0 if there is no limit.
+     */
+    int getMissedEventsPlaybackRate();
+
+    /**
+     * The number of items in the build queue at which playback of missed events waits
+     * for the queue to shrink before the next event is played back.
+     *
+     * @return the number of items, 0 if there is no limit.
+     */
+    int getMissedEventsPlaybackMaxQueued();
+
+    /**
+     * Which missed events to skip when they are made outdated by later events in the same playback window.
+     *
+     * @return the policy, never null.
+     */
+    SupersessionPolicy getMissedEventsPlaybackPolicy();
+
     /**
      * NumberOfSendingWorkerThreads.
      * TODO: Should be removed in future.
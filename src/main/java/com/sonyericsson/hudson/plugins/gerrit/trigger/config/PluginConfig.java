@@ -45,10 +45,29 @@ public class PluginConfig implements GerritWorkersConfig {
      * Default number of sending worker threads.
      */
     public static final int DEFAULT_NR_OF_SENDING_WORKER_THREADS = 1;
+    /**
+     * Default number of seconds a
+     * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.GerritMessageProvider}
+     * may take to provide its messages.
+     */
+    public static final int DEFAULT_MESSAGE_PROVIDER_TIMEOUT = 30;
+    /**
+     * Default maximum number of file comments in one review.
+     */
+    public static final int DEFAULT_MAX_FILE_COMMENTS = 1000;
+    /**
+     * Default maximum total number of characters of the file comments in one review.
+     */
+    public static final int DEFAULT_MAX_FILE_COMMENTS_SIZE = 500000;
 
     private int numberOfReceivingWorkerThreads;
     private int numberOfSendingWorkerThreads;
     private int replicationCacheExpirationInMinutes;
+    private int replicationCacheMaxSize;
+    private boolean replicationCachePersistent;
+    private int messageProviderTimeout;
+    private int maxFileComments;
+    private int maxFileCommentsSize;
 
     /**
      * Constructs a config with default data.
@@ -75,6 +94,11 @@ public class PluginConfig implements GerritWorkersConfig {
         numberOfReceivingWorkerThreads = pluginConfig.getNumberOfReceivingWorkerThreads();
         numberOfSendingWorkerThreads = pluginConfig.getNumberOfSendingWorkerThreads();
         replicationCacheExpirationInMinutes = pluginConfig.getReplicationCacheExpirationInMinutes();
+        replicationCacheMaxSize = pluginConfig.getReplicationCacheMaxSize();
+        replicationCachePersistent = pluginConfig.isReplicationCachePersistent();
+        messageProviderTimeout = pluginConfig.getMessageProviderTimeout();
+        maxFileComments = pluginConfig.getMaxFileComments();
+        maxFileCommentsSize = pluginConfig.getMaxFileCommentsSize();
     }
 
     /**
@@ -112,6 +136,26 @@ public class PluginConfig implements GerritWorkersConfig {
         if (replicationCacheExpirationInMinutes <= 0) {
             replicationCacheExpirationInMinutes = ReplicationCache.DEFAULT_EXPIRATION_IN_MINUTES;
         }
+        replicationCacheMaxSize = formData.optInt("replicationCacheMaxSize", ReplicationCache.DEFAULT_MAX_SIZE);
+        if (replicationCacheMaxSize <= 0) {
+            replicationCacheMaxSize = ReplicationCache.DEFAULT_MAX_SIZE;
+        }
+        replicationCachePersistent = formData.optBoolean("replicationCachePersistent", false);
+
+        messageProviderTimeout = formData.optInt("messageProviderTimeout", DEFAULT_MESSAGE_PROVIDER_TIMEOUT);
+        if (messageProviderTimeout <= 0) {
+            messageProviderTimeout = DEFAULT_MESSAGE_PROVIDER_TIMEOUT;
+        }
+
+        maxFileComments = formData.optInt("maxFileComments", DEFAULT_MAX_FILE_COMMENTS);
+        if (maxFileComments <= 0) {
+            maxFileComments = DEFAULT_MAX_FILE_COMMENTS;
+        }
+
+        maxFileCommentsSize = formData.optInt("maxFileCommentsSize", DEFAULT_MAX_FILE_COMMENTS_SIZE);
+        if (maxFileCommentsSize <= 0) {
+            maxFileCommentsSize = DEFAULT_MAX_FILE_COMMENTS_SIZE;
+        }
     }
 
     /**
@@ -178,4 +222,97 @@ public class PluginConfig implements GerritWorkersConfig {
     public void setReplicationCacheExpirationInMinutes(int replicationCacheExpirationInMinutes) {
         this.replicationCacheExpirationInMinutes = replicationCacheExpirationInMinutes;
     }
+
+    /**
+     * The maximum number of replication events in the replication cache.
+     * @return the max size.
+     */
+    public int getReplicationCacheMaxSize() {
+        if (replicationCacheMaxSize <= 0) {
+            replicationCacheMaxSize = ReplicationCache.DEFAULT_MAX_SIZE;
+        }
+        return replicationCacheMaxSize;
+    }
+
+    /**
+     * The maximum number of replication events in the replication cache.
+     * @param replicationCacheMaxSize the max size.
+     */
+    public void setReplicationCacheMaxSize(int replicationCacheMaxSize) {
+        this.replicationCacheMaxSize = replicationCacheMaxSize;
+    }
+
+    /**
+     * If the replication cache is also kept on disk, so that replication events received before a restart
+     * are still known after it.
+     * @return true if so.
+     */
+    public boolean isReplicationCachePersistent() {
+        return replicationCachePersistent;
+    }
+
+    /**
+     * If the replication cache is also kept on disk.
+     * @param replicationCachePersistent true if so.
+     */
+    public void setReplicationCachePersistent(boolean replicationCachePersistent) {
+        this.replicationCachePersistent = replicationCachePersistent;
+    }
+
+    /**
+     * The number of seconds the message providers may take to provide the messages and file comments for a build.
+     * @return the timeout in seconds.
+     */
+    public int getMessageProviderTimeout() {
+        if (messageProviderTimeout <= 0) {
+            messageProviderTimeout = DEFAULT_MESSAGE_PROVIDER_TIMEOUT;
+        }
+        return messageProviderTimeout;
+    }
+
+    /**
+     * The number of seconds the message providers may take.
+     * @param messageProviderTimeout the timeout in seconds.
+     */
+    public void setMessageProviderTimeout(int messageProviderTimeout) {
+        this.messageProviderTimeout = messageProviderTimeout;
+    }
+
+    /**
+     * The maximum number of file comments sent in one review, the rest are dropped.
+     * @return the maximum number of comments.
+     */
+    public int getMaxFileComments() {
+        if (maxFileComments <= 0) {
+            maxFileComments = DEFAULT_MAX_FILE_COMMENTS;
+        }
+        return maxFileComments;
+    }
+
+    /**
+     * The maximum number of file comments sent in one review.
+     * @param maxFileComments the maximum number of comments.
+     */
+    public void setMaxFileComments(int maxFileComments) {
+        this.maxFileComments = maxFileComments;
+    }
+
+    /**
+     * The maximum total number of characters of the file comments sent in one review, the rest are dropped.
+     * @return the maximum size.
+     */
+    public int getMaxFileCommentsSize() {
+        if (maxFileCommentsSize <= 0) {
+            maxFileCommentsSize = DEFAULT_MAX_FILE_COMMENTS_SIZE;
+        }
+        return maxFileCommentsSize;
+    }
+
+    /**
+     * The maximum total number of characters of the file comments sent in one review.
+     * @param maxFileCommentsSize the maximum size.
+     */
+    public void setMaxFileCommentsSize(int maxFileCommentsSize) {
+        this.maxFileCommentsSize = maxFileCommentsSize;
+    }
 }
@@ -44,6 +44,14 @@ public class BecauseDependentBuildIsBuilding extends CauseOfBlockage {
         this.blockingProject = blockingProject;
     }
 
+    /**
+     * The dependency job that is building.
+     * @return the job.
+     */
+    public Job getBlockingProject() {
+        return blockingProject;
+    }
+
     @Override
     public String getShortDescription() {
         return Messages.DependentBuildIsBuilding(blockingProject.getFullDisplayName());
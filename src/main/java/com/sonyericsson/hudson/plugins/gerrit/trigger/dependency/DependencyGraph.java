@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.dependency;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
+import hudson.model.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The resolved dependency jobs of each job with a {@link GerritTrigger}, so that the
+ * {@link DependencyQueueTaskDispatcher} doesn't parse and look up the dependency job names on every queue
+ * maintenance.
+ *
+ * An entry is resolved again when the dependency job names of the trigger have changed since it was resolved,
+ * or when any job has been created, renamed or deleted since then, see {@link #invalidate()}.
+ */
+public final class DependencyGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraph.class);
+    private static final DependencyGraph INSTANCE = new DependencyGraph();
+
+    private final Map<Job, Entry> entries = Collections.synchronizedMap(new WeakHashMap<Job, Entry>());
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Use {@link #getInstance()} outside of tests.
+     */
+    DependencyGraph() {
+    }
+
+    /**
+     * The singleton instance.
+     *
+     * @return the instance.
+     */
+    @Nonnull
+    public static DependencyGraph getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The jobs the job depends on.
+     *
+     * @param job the job.
+     * @param trigger the trigger of the job.
+     * @return the dependency jobs, null if the trigger has none.
+     * @see DependencyQueueTaskDispatcher#getProjectsFromString(String, hudson.model.Item)
+     */
+    @CheckForNull
+    public List<Job> getDependencies(@Nonnull Job job, @Nonnull GerritTrigger trigger) {
+        String names = trigger.getDependencyJobsNames();
+        long current = generation.get();
+        Entry entry = entries.get(job);
+        if (entry != null && entry.generation == current && equal(entry.names, names)) {
+            return entry.dependencies;
+        }
+        List<Job> dependencies = DependencyQueueTaskDispatcher.getProjectsFromString(names, job);
+        if (dependencies != null) {
+            dependencies = Collections.unmodifiableList(dependencies);
+        }
+        entries.put(job, new Entry(names, current, dependencies));
+        logger.debug("Resolved the dependencies of {}: {}", job, dependencies);
+        return dependencies;
+    }
+
+    /**
+     * Finds a cycle of dependencies that goes through the job.
+     *
+     * @param job the job.
+     * @return a path of dependencies from the job back to itself, or an empty list if there is no cycle.
+     */
+    @Nonnull
+    public List<Job> findCycle(@Nonnull Job job) {
+        Map<Job, Job> reachedFrom = new HashMap<Job, Job>();
+        Set<Job> explored = new HashSet<Job>();
+        LinkedList<Job> toExplore = new LinkedList<Job>();
+        toExplore.add(job);
+        while (!toExplore.isEmpty()) {
+            Job current = toExplore.remove();
+            if (!explored.add(current)) {
+                continue;
+            }
+            GerritTrigger trigger = GerritTrigger.getTrigger(current);
+            if (trigger == null) {
+                continue;
+            }
+            List<Job> dependencies = getDependencies(current, trigger);
+            if (dependencies == null) {
+                continue;
+            }
+            for (Job dependency : dependencies) {
+                if (dependency == job) {
+                    LinkedList<Job> path = new LinkedList<Job>();
+                    path.add(job);
+                    Job step = current;
+                    while (step != job) {
+                        path.addFirst(step);
+                        step = reachedFrom.get(step);
+                    }
+                    path.addFirst(job);
+                    return new ArrayList<Job>(path);
+                }
+                if (!reachedFrom.containsKey(dependency) && !explored.contains(dependency)) {
+                    reachedFrom.put(dependency, current);
+                    toExplore.add(dependency);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Formats a list of jobs, like a cycle from {@link #findCycle(Job)}.
+     *
+     * @param jobs the jobs.
+     * @return the full names of the jobs separated by arrows.
+     */
+    @Nonnull
+    public static String toString(@Nonnull List<Job> jobs) {
+        StringBuilder str = new StringBuilder();
+        for (Job job : jobs) {
+            if (str.length() > 0) {
+                str.append(" -> ");
+            }
+            str.append(job.getFullName());
+        }
+        return str.toString();
+    }
+
+    /**
+     * Makes all entries resolve again the next time they are used.
+     * Called when a job is created, renamed or deleted, since that can change what any name resolves to.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Null safe string equality.
+     *
+     * @param a one string.
+     * @param b another string.
+     * @return true if both are null or equal.
+     */
+    private static boolean equal(String a, String b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * The resolved dependencies of one job.
+     */
+    private static final class Entry {
+        private final String names;
+        private final long generation;
+        private final List<Job> dependencies;
+
+        /**
+         * Constructor.
+         *
+         * @param names the dependency job names they were resolved from.
+         * @param generation the generation when they were resolved.
+         * @param dependencies the dependency jobs.
+         */
+        Entry(String names, long generation, List<Job> dependencies) {
+            this.names = names;
+            this.generation = generation;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -35,12 +35,16 @@ import hudson.model.queue.CauseOfBlockage;
 import jenkins.model.Jenkins;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collections;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -56,7 +60,9 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEve
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritCause;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ToGerritRunListener;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.JenkinsAwareGerritHandler;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.QueueMaintenanceCoalescer;
 
 /**
  * Blocks builds from running until the projects on which they depend have finished building.
@@ -72,28 +78,73 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
 
     private static final Logger logger = LoggerFactory.getLogger(DependencyQueueTaskDispatcher.class);
     private Set<GerritTriggeredEvent> currentlyTriggeringEvents;
+    /**
+     * The events being triggered that queue items have been blocked waiting for.
+     */
+    private final Set<GerritTriggeredEvent> blockedTriggeringEvents = Collections.newSetFromMap(
+            new ConcurrentHashMap<GerritTriggeredEvent, Boolean>());
+    /**
+     * If the handler tells when the scan of every event starts and is done,
+     * so items do not need to wait the build schedule delay.
+     */
+    private final boolean triggerScanBarrier;
+    /**
+     * The queue items blocked by a building dependency, by their id.
+     */
+    private final Map<Long, Waiting> waitingItems = new ConcurrentHashMap<Long, Waiting>();
+    /**
+     * The ids of the queue items waiting for each building dependency. Guarded by itself.
+     */
+    private final Map<Waiting, Set<Long>> dependents = new HashMap<Waiting, Set<Long>>();
+    private final QueueMaintenanceCoalescer queueMaintenance;
+    /**
+     * The number of times a dependency was asked if it is interested in an event.
+     */
+    private final AtomicLong interestingEvaluated = new AtomicLong();
+    /**
+     * The number of times a remembered decision was used instead of asking the dependency again.
+     */
+    private final AtomicLong interestingAvoided = new AtomicLong();
 
     /**
      * Default constructor.
      */
     public DependencyQueueTaskDispatcher() {
-        this(PluginImpl.getHandler_());
+        this(PluginImpl.getHandler_(),
+                new QueueMaintenanceCoalescer(jenkins.util.Timer.get(), QueueMaintenanceCoalescer.DEFAULT_INTERVAL));
     }
 
     /**
-     * Constructor use by default constructor and for unit tests.
+     * Constructor for unit tests, the queue is maintained directly when dependencies complete.
      *
      * @param gerritHandler the handler
      */
     DependencyQueueTaskDispatcher(GerritHandler gerritHandler) {
+        this(gerritHandler, new QueueMaintenanceCoalescer(null, 0));
+    }
+
+    /**
+     * Constructor use by default constructor and for unit tests.
+     *
+     * @param gerritHandler the handler
+     * @param queueMaintenance what maintains the queue when dependencies complete
+     */
+    DependencyQueueTaskDispatcher(GerritHandler gerritHandler, QueueMaintenanceCoalescer queueMaintenance) {
+        this.queueMaintenance = queueMaintenance;
         this.currentlyTriggeringEvents = Collections.newSetFromMap(
                 new ConcurrentHashMap<GerritTriggeredEvent, Boolean>());
         if (gerritHandler == null) {
             logger.error("Gerrit Handler was not available to construct DependencyQueueTaskDispatcher");
+            triggerScanBarrier = false;
+        } else if (gerritHandler instanceof JenkinsAwareGerritHandler) {
+            ((JenkinsAwareGerritHandler)gerritHandler).addTriggerScanListener(this);
+            triggerScanBarrier = true;
+            logger.debug("Registered to trigger scans");
         } else {
             gerritHandler.addListener(this);
+            triggerScanBarrier = false;
+            logger.debug("Registered to gerrit events");
         }
-        logger.debug("Registered to gerrit events");
     }
 
     /**
@@ -124,6 +175,18 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
             return null;
         }
 
+        //Still waiting for the same dependency, no need to evaluate it all again
+        Long itemId = Long.valueOf(item.getId());
+        Waiting waiting = waitingItems.get(itemId);
+        if (waiting != null) {
+            ToGerritRunListener toGerritRunListener = ToGerritRunListener.getInstance();
+            if (!item.isBuildable() && toGerritRunListener != null
+                    && toGerritRunListener.isBuilding(waiting.dependency, waiting.event)) {
+                return waiting.cause;
+            }
+            removeWaiting(itemId);
+        }
+
         GerritCause cause = getGerritCause(item);
         //Not gerrit-triggered
         if (cause == null) {
@@ -152,39 +215,46 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
             return null;
         }
         //Dependency projects in the build queue
-        List<Job> dependencies = getProjectsFromString(trigger.getDependencyJobsNames(), p);
+        List<Job> dependencies = DependencyGraph.getInstance().getDependencies(p, trigger);
         if (dependencies == null || dependencies.isEmpty()) {
             logger.debug("No dependencies on project: {} for event {}", p, event);
             return null;
         }
         //logger.debug("We have dependencies on project {} : {}", p, trigger.getDependencyJobsNames());
 
-        // We ensure that we wait until other jobs have been put into queue.
+        // Without a trigger scan barrier we ensure that we wait until other jobs have been put into queue.
         // We use the default Gerrit Build Schedule Delay value
-        long inQueueSince = item.getInQueueSince();
-        if (System.currentTimeMillis() - inQueueSince < TimeUnit.SECONDS
-                .toMillis(GerritDefaultValues.DEFAULT_BUILD_SCHEDULE_DELAY)) {
-            logger.debug("We need to wait to ensure dependent jobs {} are in queue for {}", event, p);
-            return new BecauseWaitingToEnsureOtherJobsAreInQueue();
+        if (!triggerScanBarrier) {
+            long inQueueSince = item.getInQueueSince();
+            if (System.currentTimeMillis() - inQueueSince < TimeUnit.SECONDS
+                    .toMillis(GerritDefaultValues.DEFAULT_BUILD_SCHEDULE_DELAY)) {
+                logger.debug("We need to wait to ensure dependent jobs {} are in queue for {}", event, p);
+                return new BecauseWaitingToEnsureOtherJobsAreInQueue();
+            }
         }
 
-        /* we really should first check for other projects which will be triggered
-         * for the same event, and haven't yet. Unfortunately, this requires some kind
-         * of event notification - GerritEventLifecycle like - which is not available
-         * at this time. Fortunately, triggering is near instant, and projects are kept
-         * long enough in the queue  for us to not worry too much about this at this time.
-         * We can do this check for the retrigger.all action however, which does not have a quiet
-         * time, because specific code exists for it in GerritTrigger, fortunately.
+        /* Other projects which will be triggered for the same event might not have been
+         * scheduled yet, we wait until all listeners are done scanning the event.
+         * Once the scan is done every dependency that will build the event is in the build memory.
          */
         if (currentlyTriggeringEvents.contains(event)) {
-            logger.debug("We need to wait while {} is being triggered for {}", event, p);
-            return new BecauseWaitingForOtherProjectsToTrigger();
+            blockedTriggeringEvents.add(event);
+            //Checked again so a scan that was done in between is not missed
+            if (currentlyTriggeringEvents.contains(event)) {
+                logger.debug("We need to wait while {} is being triggered for {}", event, p);
+                return new BecauseWaitingForOtherProjectsToTrigger();
+            }
+            blockedTriggeringEvents.remove(event);
         }
 
 
         CauseOfBlockage causeOfBlockage = getCauseOfBlockage(dependencies, event);
 
         if (causeOfBlockage != null) {
+            if (causeOfBlockage instanceof BecauseDependentBuildIsBuilding) {
+                addWaiting(itemId, new Waiting(event,
+                        ((BecauseDependentBuildIsBuilding)causeOfBlockage).getBlockingProject(), causeOfBlockage));
+            }
             return causeOfBlockage;
         } else {
             ToGerritRunListener toGerritRunListener = ToGerritRunListener.getInstance();
@@ -227,6 +297,66 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
     }
 
 
+    /**
+     * Remembers that a queue item is blocked by a building dependency, until the dependency has completed.
+     * @param itemId the id of the queue item.
+     * @param waiting what it is waiting for.
+     */
+    private void addWaiting(Long itemId, Waiting waiting) {
+        synchronized (dependents) {
+            Set<Long> ids = dependents.get(waiting);
+            if (ids == null) {
+                ids = new HashSet<Long>();
+                dependents.put(waiting, ids);
+            }
+            ids.add(itemId);
+            waitingItems.put(itemId, waiting);
+        }
+    }
+
+    /**
+     * Forgets what a queue item was waiting for.
+     * @param itemId the id of the queue item.
+     */
+    private void removeWaiting(Long itemId) {
+        synchronized (dependents) {
+            Waiting waiting = waitingItems.remove(itemId);
+            if (waiting == null) {
+                return;
+            }
+            Set<Long> ids = dependents.get(waiting);
+            if (ids != null) {
+                ids.remove(itemId);
+                if (ids.isEmpty()) {
+                    dependents.remove(waiting);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when a build of a job completes, so that the queue items waiting for it
+     * are evaluated again right away instead of at the next periodic queue maintenance.
+     * @param event the event the build was triggered by.
+     * @param job the job of the build.
+     * @return the number of queue items that were waiting for it.
+     */
+    public int onDependencyCompleted(GerritTriggeredEvent event, Job job) {
+        Set<Long> ids;
+        synchronized (dependents) {
+            ids = dependents.remove(new Waiting(event, job, null));
+            if (ids == null) {
+                return 0;
+            }
+            for (Long id : ids) {
+                waitingItems.remove(id);
+            }
+        }
+        logger.debug("{} queue items were waiting for {} to build {}", new Object[]{ids.size(), job, event});
+        queueMaintenance.request();
+        return ids.size();
+    }
+
     /**
      * Gets the cause of blockage if one of dependant project was not triggered or was not finished yet.
      * @param dependencies The list of projects which need to be checked
@@ -241,17 +371,56 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
                     if (toGerritRunListener.isBuilding(dependency, event)) {
                         return new BecauseDependentBuildIsBuilding(dependency);
                     }
-                } else {
-                    GerritTrigger gerritTrigger = GerritTrigger.getTrigger(dependency);
-                    if (gerritTrigger != null && gerritTrigger.isInteresting(event)) {
-                        return new BecauseWaitingForOtherProjectsToTrigger();
-                    }
+                } else if (isInteresting(toGerritRunListener, dependency, event)) {
+                    return new BecauseWaitingForOtherProjectsToTrigger();
                 }
             }
         }
         return null;
     }
 
+    /**
+     * Checks if the dependency would be triggered by the event. The decision is remembered in the build memory
+     * for as long as the event is there, since asking the trigger might involve a query to Gerrit.
+     *
+     * @param toGerritRunListener the listener holding the build memory.
+     * @param dependency the dependency job.
+     * @param event the event.
+     * @return true if the dependency is interested in the event.
+     */
+    private boolean isInteresting(ToGerritRunListener toGerritRunListener, Job dependency,
+                                  GerritTriggeredEvent event) {
+        Boolean decision = toGerritRunListener.getInterestingDecision(dependency, event);
+        if (decision != null) {
+            interestingAvoided.incrementAndGet();
+            return decision;
+        }
+        GerritTrigger gerritTrigger = GerritTrigger.getTrigger(dependency);
+        boolean interesting = gerritTrigger != null && gerritTrigger.isInteresting(event);
+        interestingEvaluated.incrementAndGet();
+        toGerritRunListener.setInterestingDecision(dependency, event, interesting);
+        return interesting;
+    }
+
+    /**
+     * The number of times a dependency was asked if it is interested in an event.
+     *
+     * @return the number of evaluations.
+     */
+    public long getInterestingEvaluated() {
+        return interestingEvaluated.get();
+    }
+
+    /**
+     * The number of times a remembered decision was used instead of asking a dependency
+     * if it is interested in an event.
+     *
+     * @return the number of avoided evaluations.
+     */
+    public long getInterestingAvoided() {
+        return interestingAvoided.get();
+    }
+
     /**
      * Return the GerritCause of the specific item if any, otherwise return null.
      * @param item The item
@@ -312,6 +481,49 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
     public void onDoneTriggeringAll(GerritTriggeredEvent event) {
         currentlyTriggeringEvents.remove(event);
         logger.debug("Done triggering all projects for {}", event);
+        if (blockedTriggeringEvents.remove(event)) {
+            queueMaintenance.request();
+        }
+    }
+
+    /**
+     * A building dependency that queue items are waiting for.
+     * Equal to other instances for the same event and job, regardless of the cause.
+     */
+    private static final class Waiting {
+        private final GerritTriggeredEvent event;
+        private final Job dependency;
+        private final CauseOfBlockage cause;
+
+        /**
+         * Standard constructor.
+         * @param event the event the items are triggered by.
+         * @param dependency the building dependency.
+         * @param cause the cause of blockage to return while it is building.
+         */
+        Waiting(GerritTriggeredEvent event, Job dependency, CauseOfBlockage cause) {
+            this.event = event;
+            this.dependency = dependency;
+            this.cause = cause;
+        }
+
+        @Override
+        public int hashCode() {
+            //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Hash code.
+            return 31 * event.hashCode() + System.identityHashCode(dependency);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Waiting)) {
+                return false;
+            }
+            Waiting other = (Waiting)obj;
+            return event.equals(other.event) && dependency == other.dependency;
+        }
     }
 
     /*
@@ -326,9 +538,9 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
      */
     @Override
     public void gerritEvent(GerritEvent event) {
-        //we are only interested in the ManualPatchsetCreated events for now
+        //Without the trigger scan barrier we are only interested in the ManualPatchsetCreated events
         //as they are the only ones which have event scanning information.
-        if (event instanceof GerritEventLifecycle) {
+        if (!triggerScanBarrier && event instanceof GerritEventLifecycle) {
             logger.debug("registering to lifecycle");
             // Registering to get the ScanDone event.
             ((GerritEventLifecycle)event).addListener(this);
@@ -352,9 +564,11 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
 
     @Override
     public void triggerScanStarting(GerritEvent event) {
-        // While it would make sense to call the onTriggeringAll, this event (ScanStarting)
-        // is fired before the event even makes it to the gerritEvent above, meaning
-        // nothing here will execute because we aren't registered yet.
+        // Only called by the JenkinsAwareGerritHandler we are a trigger scan listener of,
+        // lifecycle events fire it before the event even makes it to the gerritEvent above.
+        if (triggerScanBarrier && event instanceof GerritTriggeredEvent) {
+            onTriggeringAll((GerritTriggeredEvent)event);
+        }
     }
 
     @Override
@@ -366,8 +580,9 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
         if (event instanceof GerritTriggeredEvent) {
             onDoneTriggeringAll((GerritTriggeredEvent)event);
         }
-        // But, we do know this is a Lifecycle because this method is for lifecyle events
-        ((GerritEventLifecycle)event).removeListener(this);
+        if (!triggerScanBarrier && event instanceof GerritEventLifecycle) {
+            ((GerritEventLifecycle)event).removeListener(this);
+        }
     }
 
     @Override
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyGraph;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyQueueTaskDispatcher;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
+import hudson.model.Job;
+import hudson.model.ModelObject;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link Diagnostics} page showing the jobs that wait for other jobs to build the same event,
+ * as resolved by the {@link DependencyGraph}.
+ */
+public class DependencyGraphReport implements ModelObject {
+
+    private final List<Node> nodes;
+    private final long interestingEvaluated;
+    private final long interestingAvoided;
+
+    /**
+     * The constructor.
+     *
+     * @param nodes the jobs with dependencies.
+     * @param interestingEvaluated the number of times a dependency was asked if it is interested in an event.
+     * @param interestingAvoided the number of times a remembered decision was used instead.
+     */
+    /*package*/ DependencyGraphReport(List<Node> nodes, long interestingEvaluated, long interestingAvoided) {
+        this.nodes = nodes;
+        this.interestingEvaluated = interestingEvaluated;
+        this.interestingAvoided = interestingAvoided;
+    }
+
+    /**
+     * The jobs with dependencies, sorted by name.
+     *
+     * @return the nodes.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The number of times a dependency was asked if it is interested in an event.
+     *
+     * @return the number of evaluations.
+     */
+    public long getInterestingEvaluated() {
+        return interestingEvaluated;
+    }
+
+    /**
+     * The number of times a remembered decision was used instead of asking a dependency again.
+     *
+     * @return the number of avoided evaluations.
+     */
+    public long getInterestingAvoided() {
+        return interestingAvoided;
+    }
+
+    /**
+     * Produces a report of all jobs with dependency jobs.
+     *
+     * @return the report.
+     */
+    public static DependencyGraphReport report() {
+        List<Node> nodes = new ArrayList<Node>();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null) {
+            DependencyGraph graph = DependencyGraph.getInstance();
+            for (Job job : jenkins.getAllItems(Job.class)) {
+                GerritTrigger trigger = GerritTrigger.getTrigger(job);
+                if (trigger == null) {
+                    continue;
+                }
+                List<Job> dependencies = graph.getDependencies(job, trigger);
+                if (dependencies == null || dependencies.isEmpty()) {
+                    continue;
+                }
+                List<String> names = new ArrayList<String>(dependencies.size());
+                for (Job dependency : dependencies) {
+                    names.add(dependency.getFullName());
+                }
+                List<Job> cycle = graph.findCycle(job);
+                String cycleString = null;
+                if (!cycle.isEmpty()) {
+                    cycleString = DependencyGraph.toString(cycle);
+                }
+                nodes.add(new Node(job.getFullName(), names, cycleString));
+            }
+        }
+        Collections.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        long evaluated = 0;
+        long avoided = 0;
+        DependencyQueueTaskDispatcher dispatcher = DependencyQueueTaskDispatcher.getInstance();
+        if (dispatcher != null) {
+            evaluated = dispatcher.getInterestingEvaluated();
+            avoided = dispatcher.getInterestingAvoided();
+        }
+        return new DependencyGraphReport(Collections.unmodifiableList(nodes), evaluated, avoided);
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.DependencyGraphReport_DisplayName();
+    }
+
+    /**
+     * A job and the jobs it depends on.
+     */
+    public static class Node {
+        private final String name;
+        private final List<String> dependencies;
+        private final String cycle;
+
+        /**
+         * The constructor.
+         *
+         * @param name the full name of the job.
+         * @param dependencies the full names of the jobs it depends on.
+         * @param cycle the cycle the job is part of, or null.
+         */
+        /*package*/ Node(String name, List<String> dependencies, String cycle) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.cycle = cycle;
+        }
+
+        /**
+         * The full name of the job.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The full names of the jobs it depends on.
+         *
+         * @return the names.
+         */
+        public List<String> getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * The cycle of dependencies the job is part of.
+         *
+         * @return the cycle or null if there is none.
+         */
+        public String getCycle() {
+            return cycle;
+        }
+    }
+}
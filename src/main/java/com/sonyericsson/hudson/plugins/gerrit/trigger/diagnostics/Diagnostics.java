@@ -87,6 +87,31 @@ public class Diagnostics implements ModelObjectWithChildren, ModelObjectWithCont
                          .withUrl(url)
                          .withStockIcon("clipboard.png")
                          .withDisplayName(Messages.EventListenersReport_DisplayName()));
+        url = makeRelativeUrl(context, "sendQueue");
+        menu.add(new MenuItem()
+                         .withUrl(url)
+                         .withStockIcon("clipboard.png")
+                         .withDisplayName(Messages.SendQueueReport_DisplayName()));
+        url = makeRelativeUrl(context, "messageProviders");
+        menu.add(new MenuItem()
+                         .withUrl(url)
+                         .withStockIcon("clipboard.png")
+                         .withDisplayName(Messages.MessageProvidersReport_DisplayName()));
+        url = makeRelativeUrl(context, "notificationLatency");
+        menu.add(new MenuItem()
+                         .withUrl(url)
+                         .withStockIcon("clipboard.png")
+                         .withDisplayName(Messages.NotificationLatencyReport_DisplayName()));
+        url = makeRelativeUrl(context, "replication");
+        menu.add(new MenuItem()
+                         .withUrl(url)
+                         .withStockIcon("clipboard.png")
+                         .withDisplayName(Messages.ReplicationReport_DisplayName()));
+        url = makeRelativeUrl(context, "dependencyGraph");
+        menu.add(new MenuItem()
+                         .withUrl(url)
+                         .withStockIcon("clipboard.png")
+                         .withDisplayName(Messages.DependencyGraphReport_DisplayName()));
         if (isDebugMode()) {
             menu.add("triggerDebugEvent", "warning.png", "Trigger Debug", false, true);
         }
@@ -153,6 +178,67 @@ public class Diagnostics implements ModelObjectWithChildren, ModelObjectWithCont
         return EventListenersReport.report();
     }
 
+    /**
+     * A report of the notifications waiting to be sent to Gerrit.
+     *
+     * Intended to be accessed via Stapler URL mapping.
+     *
+     * @return the send queue report.
+     */
+    @Nonnull
+    public SendQueueReport getSendQueue() {
+        return SendQueueReport.report();
+    }
+
+    /**
+     * How long the {@link com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.GerritMessageProvider}s
+     * take to provide their messages.
+     *
+     * Intended to be accessed via Stapler URL mapping.
+     *
+     * @return the message providers report.
+     */
+    @Nonnull
+    public MessageProvidersReport getMessageProviders() {
+        return MessageProvidersReport.report();
+    }
+
+    /**
+     * How long it takes from a build starting or completing until Gerrit has the notification.
+     *
+     * Intended to be accessed via Stapler URL mapping.
+     *
+     * @return the notification latency report.
+     */
+    @Nonnull
+    public NotificationLatencyReport getNotificationLatency() {
+        return NotificationLatencyReport.report();
+    }
+
+    /**
+     * The builds waiting for replication and the replication cache.
+     *
+     * Intended to be accessed via Stapler URL mapping.
+     *
+     * @return the replication report.
+     */
+    @Nonnull
+    public ReplicationReport getReplication() {
+        return ReplicationReport.report();
+    }
+
+    /**
+     * The jobs that wait for other jobs to build the same event.
+     *
+     * Intended to be accessed via Stapler URL mapping.
+     *
+     * @return the dependency graph report.
+     */
+    @Nonnull
+    public DependencyGraphReport getDependencyGraph() {
+        return DependencyGraphReport.report();
+    }
+
     @Override
     public ContextMenu doContextMenu(StaplerRequest request, StaplerResponse response) throws Exception {
         return getContextMenu(null);
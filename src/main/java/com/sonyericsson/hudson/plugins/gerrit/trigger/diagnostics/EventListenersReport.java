@@ -28,6 +28,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.NamedGerritEventListener;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.EventListener;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.StartupRegistration;
 import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import hudson.model.ModelObject;
@@ -82,6 +83,15 @@ public class EventListenersReport implements ModelObject {
         return others;
     }
 
+    /**
+     * How long registering the listeners took when Jenkins started.
+     *
+     * @return the startup timings.
+     */
+    public StartupRegistration getStartup() {
+        return StartupRegistration.getInstance();
+    }
+
     /**
      * A shorter/more descriptive name to display for any other listener than {@link EventListener}s.
      * The default is to use {@link Class#getSimpleName()} but for some can contain a bit more information
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies in milliseconds with fixed, roughly exponential, buckets.
+ * Cheap enough to be updated on every notification and safe to read from the diagnostic pages at any time.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class LatencyHistogram {
+
+    //CS IGNORE MagicNumber FOR NEXT 5 LINES. REASON: Bucket bounds.
+    /**
+     * The upper bounds (inclusive) of the buckets in milliseconds, the last bucket catches everything above.
+     */
+    private static final long[] BOUNDS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000,
+        300000, 600000, 1800000, };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one measurement.
+     *
+     * @param millis the latency in milliseconds, negative values are recorded as 0.
+     */
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Finds the bucket index for a value.
+     *
+     * @param value the value
+     * @return the index in {@link #buckets}.
+     */
+    private static int indexOf(long value) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (value <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+
+    /**
+     * The number of recorded measurements.
+     *
+     * @return the count.
+     */
+    @Exported
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * The mean of all recorded measurements.
+     *
+     * @return the mean in milliseconds or 0 if nothing is recorded.
+     */
+    @Exported
+    public long getMean() {
+        long c = count.get();
+        if (c <= 0) {
+            return 0;
+        }
+        return sum.get() / c;
+    }
+
+    /**
+     * The largest recorded measurement.
+     *
+     * @return the max in milliseconds.
+     */
+    @Exported
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * An estimate of the given percentile, the upper bound of the bucket the percentile falls in.
+     *
+     * @param percentile the percentile 0-100.
+     * @return the estimated value in milliseconds, or 0 if nothing is recorded.
+     */
+    public long getPercentile(double percentile) {
+        long c = count.get();
+        if (c <= 0) {
+            return 0;
+        }
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Percent.
+        long threshold = (long)Math.ceil(c * (percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return Math.min(BOUNDS[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * The estimated median.
+     *
+     * @return the 50th percentile.
+     * @see #getPercentile(double)
+     */
+    @Exported
+    public long getP50() {
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Percentile.
+        return getPercentile(50);
+    }
+
+    /**
+     * The estimated 95th percentile.
+     *
+     * @return the 95th percentile.
+     * @see #getPercentile(double)
+     */
+    @Exported
+    public long getP95() {
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Percentile.
+        return getPercentile(95);
+    }
+
+    /**
+     * The estimated 99th percentile.
+     *
+     * @return the 99th percentile.
+     * @see #getPercentile(double)
+     */
+    @Exported
+    public long getP99() {
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Percentile.
+        return getPercentile(99);
+    }
+
+    /**
+     * A snapshot of all buckets.
+     *
+     * @return the buckets in ascending order.
+     */
+    @Exported
+    public List<Bucket> getBuckets() {
+        List<Bucket> list = new ArrayList<Bucket>(BOUNDS.length + 1);
+        for (int i = 0; i < BOUNDS.length; i++) {
+            list.add(new Bucket(BOUNDS[i], buckets.get(i)));
+        }
+        list.add(new Bucket(Long.MAX_VALUE, buckets.get(BOUNDS.length)));
+        return list;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * One bucket in the histogram.
+     */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class Bucket {
+        private final long upperBound;
+        private final long count;
+
+        /**
+         * Constructor.
+         *
+         * @param upperBound the inclusive upper bound in milliseconds.
+         * @param count      the number of measurements in the bucket.
+         */
+        Bucket(long upperBound, long count) {
+            this.upperBound = upperBound;
+            this.count = count;
+        }
+
+        /**
+         * The inclusive upper bound in milliseconds, {@link Long#MAX_VALUE} for the last bucket.
+         *
+         * @return the bound.
+         */
+        @Exported
+        public long getUpperBound() {
+            return upperBound;
+        }
+
+        /**
+         * The number of measurements in the bucket.
+         *
+         * @return the count.
+         */
+        @Exported
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * A human readable label for the bucket.
+         *
+         * @return the label, for example "&lt;= 500 ms".
+         */
+        public String getLabel() {
+            if (upperBound == Long.MAX_VALUE) {
+                return "> " + BOUNDS[BOUNDS.length - 1] + " ms";
+            }
+            return "<= " + upperBound + " ms";
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.MessageProviderInvoker;
+import hudson.model.ModelObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Diagnostics} page showing how long each
+ * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.GerritMessageProvider}
+ * takes to provide its messages and file comments.
+ */
+public class MessageProvidersReport implements ModelObject {
+
+    private final List<ProviderReport> providers;
+
+    /**
+     * The constructor.
+     *
+     * @param providers the providers.
+     */
+    /*package*/ MessageProvidersReport(List<ProviderReport> providers) {
+        this.providers = providers;
+    }
+
+    /**
+     * The providers that have been called, sorted by class name.
+     *
+     * @return the providers.
+     */
+    public List<ProviderReport> getProviders() {
+        return providers;
+    }
+
+    /**
+     * Produces a report from the {@link MessageProviderInvoker}.
+     *
+     * @return the report.
+     */
+    public static MessageProvidersReport report() {
+        MessageProviderInvoker invoker = MessageProviderInvoker.getInstance();
+        List<ProviderReport> providers = new ArrayList<ProviderReport>();
+        for (Map.Entry<String, LatencyHistogram> entry : invoker.getTimings().entrySet()) {
+            providers.add(new ProviderReport(entry.getKey(), entry.getValue(),
+                                             invoker.getTimeouts(entry.getKey()),
+                                             invoker.getFailures(entry.getKey()),
+                                             invoker.getRejections(entry.getKey())));
+        }
+        return new MessageProvidersReport(Collections.unmodifiableList(providers));
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.MessageProvidersReport_DisplayName();
+    }
+
+    /**
+     * The timings of one provider.
+     */
+    public static class ProviderReport {
+        private final String name;
+        private final LatencyHistogram latency;
+        private final long timeouts;
+        private final long failures;
+        private final long rejections;
+
+        /**
+         * The constructor.
+         *
+         * @param name the class name of the provider.
+         * @param latency the time the calls took.
+         * @param timeouts the number of calls that didn't finish in time.
+         * @param failures the number of calls that threw an exception.
+         * @param rejections the number of calls skipped because too many calls were waiting.
+         */
+        /*package*/ ProviderReport(String name, LatencyHistogram latency, long timeouts, long failures,
+                                   long rejections) {
+            this.name = name;
+            this.latency = latency;
+            this.timeouts = timeouts;
+            this.failures = failures;
+            this.rejections = rejections;
+        }
+
+        /**
+         * The class name of the provider.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The time the calls took.
+         *
+         * @return the histogram.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * The number of calls that didn't finish in time.
+         *
+         * @return the count.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * The number of calls that threw an exception.
+         *
+         * @return the count.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * The number of calls skipped because too many calls were waiting.
+         *
+         * @return the count.
+         */
+        public long getRejections() {
+            return rejections;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency.Series;
+import hudson.model.Api;
+import hudson.model.ModelObject;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Diagnostics} page showing how long it takes from a build starting or completing
+ * until the notification has been acknowledged by Gerrit, per server and transport.
+ * Also available as JSON or XML through {@link #getApi()}.
+ */
+@ExportedBean
+public class NotificationLatencyReport implements ModelObject {
+
+    private final List<Series> series;
+
+    /**
+     * The constructor.
+     *
+     * @param series the series.
+     */
+    /*package*/ NotificationLatencyReport(List<Series> series) {
+        this.series = series;
+    }
+
+    /**
+     * The latencies per kind of notification, server and transport.
+     *
+     * @return the series.
+     */
+    @Exported(inline = true)
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    /**
+     * Gets the remote API.
+     *
+     * @return the api.
+     */
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Produces a report from the {@link NotificationLatency}.
+     *
+     * @return the report.
+     */
+    public static NotificationLatencyReport report() {
+        return new NotificationLatencyReport(
+                Collections.unmodifiableList(NotificationLatency.getInstance().getSeries()));
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.NotificationLatencyReport_DisplayName();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import com.google.common.cache.CacheStats;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.ReplicationCache;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.ReplicationQueueTaskDispatcher;
+import hudson.model.ModelObject;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * A {@link Diagnostics} page showing how the {@link ReplicationQueueTaskDispatcher} and its
+ * {@link ReplicationCache} are doing.
+ */
+public class ReplicationReport implements ModelObject {
+
+    private final boolean active;
+    private final int blockedItems;
+    private final int notBlockedItems;
+    private final long cacheSize;
+    private final long cacheMaxSize;
+    private final long cacheExpirationInMinutes;
+    private final boolean cachePersistent;
+    private final CacheStats cacheStats;
+    private final long maintenanceRequested;
+    private final long maintenancePerformed;
+
+    /**
+     * The constructor.
+     *
+     * @param dispatcher the dispatcher, or null if it isn't running.
+     */
+    /*package*/ ReplicationReport(@CheckForNull ReplicationQueueTaskDispatcher dispatcher) {
+        active = dispatcher != null;
+        if (dispatcher != null) {
+            ReplicationCache cache = dispatcher.getReplicationCache();
+            blockedItems = dispatcher.getBlockedItemCount();
+            notBlockedItems = dispatcher.getNotBlockedItemCount();
+            cacheSize = cache.size();
+            cacheMaxSize = cache.getMaxSize();
+            cacheExpirationInMinutes = cache.getExpirationInMinutes();
+            cachePersistent = cache.isPersistent();
+            cacheStats = cache.getStats();
+            maintenanceRequested = dispatcher.getQueueMaintenance().getRequested();
+            maintenancePerformed = dispatcher.getQueueMaintenance().getPerformed();
+        } else {
+            blockedItems = 0;
+            notBlockedItems = 0;
+            cacheSize = 0;
+            cacheMaxSize = 0;
+            cacheExpirationInMinutes = 0;
+            cachePersistent = false;
+            cacheStats = null;
+            maintenanceRequested = 0;
+            maintenancePerformed = 0;
+        }
+    }
+
+    /**
+     * If the dispatcher is running.
+     *
+     * @return true if so.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * The number of queue items waiting for replication.
+     *
+     * @return the count.
+     */
+    public int getBlockedItems() {
+        return blockedItems;
+    }
+
+    /**
+     * The number of queue items known not to wait for replication, which are not evaluated again.
+     *
+     * @return the count.
+     */
+    public int getNotBlockedItems() {
+        return notBlockedItems;
+    }
+
+    /**
+     * The approximate number of replication events in the cache.
+     *
+     * @return the size.
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * The maximum number of replication events in the cache.
+     *
+     * @return the max size.
+     */
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    /**
+     * How long replication events are kept in the cache.
+     *
+     * @return the expiration in minutes.
+     */
+    public long getCacheExpirationInMinutes() {
+        return cacheExpirationInMinutes;
+    }
+
+    /**
+     * If the cache is also kept on disk.
+     *
+     * @return true if so.
+     */
+    public boolean isCachePersistent() {
+        return cachePersistent;
+    }
+
+    /**
+     * The hit, miss and eviction counts of the cache.
+     *
+     * @return the statistics or null if the cache isn't initialized.
+     */
+    @CheckForNull
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    /**
+     * The number of queue maintenance passes requested since replication unblocked items.
+     *
+     * @return the count.
+     */
+    public long getMaintenanceRequested() {
+        return maintenanceRequested;
+    }
+
+    /**
+     * The number of queue maintenance passes performed, requests close in time share one pass.
+     *
+     * @return the count.
+     */
+    public long getMaintenancePerformed() {
+        return maintenancePerformed;
+    }
+
+    /**
+     * Produces a report from the registered {@link ReplicationQueueTaskDispatcher}.
+     *
+     * @return the report.
+     */
+    public static ReplicationReport report() {
+        return new ReplicationReport(ReplicationQueueTaskDispatcher.getInstance());
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.ReplicationReport_DisplayName();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter;
+import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
+import hudson.model.ModelObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Diagnostics} page showing the lanes of the {@link PrioritizedSendQueue}
+ * and how long notifications have been waiting in them and for the {@link SendRateLimiter}.
+ */
+public class SendQueueReport implements ModelObject {
+
+    private final List<LaneReport> lanes;
+    private final int sendQueueSize;
+    private final Map<String, LatencyHistogram> throttledWaits;
+
+    /**
+     * The constructor.
+     *
+     * @param lanes the lanes.
+     * @param sendQueueSize the size of the underlying {@link GerritSendCommandQueue}.
+     * @param throttledWaits the time spent waiting for the rate limit per server.
+     */
+    /*package*/ SendQueueReport(List<LaneReport> lanes, int sendQueueSize,
+                                Map<String, LatencyHistogram> throttledWaits) {
+        this.lanes = lanes;
+        this.sendQueueSize = sendQueueSize;
+        this.throttledWaits = throttledWaits;
+    }
+
+    /**
+     * The lanes in priority order.
+     *
+     * @return the lanes.
+     */
+    public List<LaneReport> getLanes() {
+        return lanes;
+    }
+
+    /**
+     * The number of jobs waiting for a send worker thread.
+     *
+     * @return the size of the send queue.
+     */
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    /**
+     * The time notifications have waited for the rate limit, per server sorted by name.
+     *
+     * @return server name to histogram.
+     */
+    public Map<String, LatencyHistogram> getThrottledWaits() {
+        return throttledWaits;
+    }
+
+    /**
+     * Produces a report from the {@link PrioritizedSendQueue}.
+     *
+     * @return the report.
+     */
+    public static SendQueueReport report() {
+        PrioritizedSendQueue queue = PrioritizedSendQueue.getInstance();
+        List<LaneReport> lanes = new ArrayList<LaneReport>();
+        for (Lane lane : Lane.values()) {
+            lanes.add(new LaneReport(lane, queue.size(lane),
+                                     new TreeMap<String, Integer>(queue.getServerSizes(lane)),
+                                     queue.getLatency(lane)));
+        }
+        return new SendQueueReport(Collections.unmodifiableList(lanes), GerritSendCommandQueue.getQueueSize(),
+                                   SendRateLimiter.getInstance().getThrottledWaits());
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.SendQueueReport_DisplayName();
+    }
+
+    /**
+     * A snapshot of one lane.
+     */
+    public static class LaneReport {
+        private final Lane lane;
+        private final int size;
+        private final Map<String, Integer> servers;
+        private final LatencyHistogram latency;
+
+        /**
+         * The constructor.
+         *
+         * @param lane the lane.
+         * @param size the number of waiting notifications.
+         * @param servers the number of waiting notifications per server.
+         * @param latency the time notifications waited in the lane before being sent.
+         */
+        /*package*/ LaneReport(Lane lane, int size, Map<String, Integer> servers, LatencyHistogram latency) {
+            this.lane = lane;
+            this.size = size;
+            this.servers = servers;
+            this.latency = latency;
+        }
+
+        /**
+         * The lane.
+         *
+         * @return the lane.
+         */
+        public Lane getLane() {
+            return lane;
+        }
+
+        /**
+         * The number of waiting notifications.
+         *
+         * @return the size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * The number of waiting notifications per server, sorted by server name.
+         *
+         * @return server name to size.
+         */
+        public Map<String, Integer> getServers() {
+            return servers;
+        }
+
+        /**
+         * The time notifications waited in the lane before being sent.
+         *
+         * @return the histogram.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.LatencyHistogram;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.CommentedFile;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.LineComment;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calls the {@link GerritMessageProvider}s in parallel on a thread pool of their own,
+ * giving each call at most {@link PluginConfig#getMessageProviderTimeout()} seconds from when it starts
+ * so that one slow provider can't hold back the vote for the whole change.
+ * The pool and its queue are bounded, so a provider that hangs and ignores being interrupted
+ * can't make it grow without limit. When both are full the call is skipped and counted as rejected.
+ * Records how long each provider takes, for the diagnostics page.
+ */
+public final class MessageProviderInvoker {
+
+    /**
+     * The maximum number of threads calling providers at the same time.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int MAX_THREADS =
+            Integer.getInteger(MessageProviderInvoker.class.getName() + ".maxThreads", 16);
+    /**
+     * The maximum number of calls waiting for a thread.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int QUEUE_CAPACITY =
+            Integer.getInteger(MessageProviderInvoker.class.getName() + ".queueCapacity", 64);
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageProviderInvoker.class);
+    private static final MessageProviderInvoker INSTANCE = new MessageProviderInvoker();
+
+    private final Map<String, ProviderStats> stats = new TreeMap<String, ProviderStats>();
+    private final int maxThreads;
+    private final int queueCapacity;
+    private ExecutorService executor;
+
+    /**
+     * Gets the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static MessageProviderInvoker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor, use {@link #getInstance()} outside of tests.
+     */
+    MessageProviderInvoker() {
+        this(MAX_THREADS, QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor for tests.
+     *
+     * @param maxThreads    the maximum number of threads.
+     * @param queueCapacity the maximum number of calls waiting for a thread.
+     */
+    MessageProviderInvoker(int maxThreads, int queueCapacity) {
+        this.maxThreads = maxThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * The executor, created on first use.
+     *
+     * @return the executor.
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 1, TimeUnit.MINUTES,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit message provider"));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Gets the build completed messages of all providers for the builds, all called at the same time.
+     *
+     * @param providers the providers.
+     * @param builds    the builds.
+     * @return the messages that were provided in time for each build, in provider order and without nulls.
+     */
+    public Map<Run, List<String>> getBuildCompletedMessages(List<GerritMessageProvider> providers,
+                                                            Collection<Run> builds) {
+        List<String> names = new ArrayList<String>();
+        List<Run> callBuilds = new ArrayList<Run>();
+        List<Callable<String>> calls = new ArrayList<Callable<String>>();
+        for (final Run build : builds) {
+            for (final GerritMessageProvider provider : providers) {
+                names.add(provider.getClass().getName());
+                callBuilds.add(build);
+                calls.add(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return provider.getBuildCompletedMessage(build);
+                    }
+                });
+            }
+        }
+        Map<Run, List<String>> messages = new HashMap<Run, List<String>>();
+        for (Run build : builds) {
+            messages.put(build, new ArrayList<String>());
+        }
+        List<String> results = invokeAll(names, calls, null);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) != null) {
+                messages.get(callBuilds.get(i)).add(results.get(i));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Gets the file comments of all providers for all the builds, in provider and build order,
+     * capped to {@link PluginConfig#getMaxFileComments()} comments
+     * and {@link PluginConfig#getMaxFileCommentsSize()} characters.
+     *
+     * @param providers the providers.
+     * @param builds    the builds.
+     * @param listener  where to report failures and dropped comments, may be null.
+     * @return the file comments.
+     */
+    public Collection<CommentedFile> getFileComments(List<GerritMessageProvider> providers,
+                                                     Collection<Run> builds, TaskListener listener) {
+        List<String> names = new ArrayList<String>();
+        List<Callable<Collection<CommentedFile>>> calls = new ArrayList<Callable<Collection<CommentedFile>>>();
+        for (final GerritMessageProvider provider : providers) {
+            for (final Run build : builds) {
+                names.add(provider.getClass().getName());
+                calls.add(new Callable<Collection<CommentedFile>>() {
+                    @Override
+                    public Collection<CommentedFile> call() throws Exception {
+                        return provider.getFileComments(build);
+                    }
+                });
+            }
+        }
+        List<CommentedFile> files = new ArrayList<CommentedFile>();
+        for (Collection<CommentedFile> result : invokeAll(names, calls, listener)) {
+            if (result != null) {
+                files.addAll(result);
+            }
+        }
+        PluginConfig config = PluginImpl.getPluginConfig_();
+        int maxCount = PluginConfig.DEFAULT_MAX_FILE_COMMENTS;
+        int maxSize = PluginConfig.DEFAULT_MAX_FILE_COMMENTS_SIZE;
+        if (config != null) {
+            maxCount = config.getMaxFileComments();
+            maxSize = config.getMaxFileCommentsSize();
+        }
+        return cap(files, maxCount, maxSize, listener);
+    }
+
+    /**
+     * Drops the comments that don't fit within the limits.
+     *
+     * @param files    the file comments.
+     * @param maxCount the maximum number of line comments.
+     * @param maxSize  the maximum total length of the line comment messages.
+     * @param listener where to report dropped comments, may be null.
+     * @return the file comments that fit.
+     */
+    static Collection<CommentedFile> cap(Collection<CommentedFile> files, int maxCount, int maxSize,
+                                         TaskListener listener) {
+        List<CommentedFile> kept = new ArrayList<CommentedFile>();
+        int count = 0;
+        long size = 0;
+        int dropped = 0;
+        for (CommentedFile file : files) {
+            List<LineComment> keptComments = new ArrayList<LineComment>();
+            for (LineComment comment : file.getLineComments()) {
+                int length = 0;
+                if (comment.getMessage() != null) {
+                    length = comment.getMessage().length();
+                }
+                if (count < maxCount && size + length <= maxSize) {
+                    keptComments.add(comment);
+                    count++;
+                    size += length;
+                } else {
+                    dropped++;
+                }
+            }
+            if (!keptComments.isEmpty()) {
+                kept.add(new CommentedFile(file.getFileName(), keptComments));
+            }
+        }
+        if (dropped > 0) {
+            logger.warn("Dropped {} file comments exceeding the limit of {} comments or {} characters.",
+                    dropped, maxCount, maxSize);
+            if (listener != null) {
+                listener.getLogger().println("Gerrit Trigger: dropped " + dropped + " file comments exceeding the "
+                        + "limit of " + maxCount + " comments or " + maxSize + " characters.");
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Runs the calls in parallel and waits for each of them until its timeout.
+     *
+     * @param names    the provider name of each call.
+     * @param calls    the calls.
+     * @param listener where to report failures, may be null.
+     * @param <T>      the result type.
+     * @return the results in the order of the calls, null for calls that failed or didn't finish in time.
+     */
+    private <T> List<T> invokeAll(List<String> names, List<Callable<T>> calls, TaskListener listener) {
+        if (calls.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PluginConfig config = PluginImpl.getPluginConfig_();
+        int timeout = PluginConfig.DEFAULT_MESSAGE_PROVIDER_TIMEOUT;
+        if (config != null) {
+            timeout = config.getMessageProviderTimeout();
+        }
+        final Authentication auth = Jenkins.getAuthentication();
+        List<Future<T>> futures = new ArrayList<Future<T>>(calls.size());
+        List<AtomicLong> starts = new ArrayList<AtomicLong>(calls.size());
+        long submitted = System.currentTimeMillis();
+        for (int i = 0; i < calls.size(); i++) {
+            AtomicLong started = new AtomicLong();
+            starts.add(started);
+            Future<T> future = null;
+            try {
+                future = getExecutor().submit(timed(getStats(names.get(i)), auth, started, calls.get(i)));
+            } catch (RejectedExecutionException e) {
+                getStats(names.get(i)).rejections.incrementAndGet();
+                logger.warn("Too many message provider calls are waiting, skipping {}.", names.get(i));
+                if (listener != null) {
+                    listener.error("Message provider " + names.get(i) + " skipped, too many calls are waiting.");
+                }
+            }
+            futures.add(future);
+        }
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(timeout);
+        List<T> results = new ArrayList<T>(calls.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<T> future = futures.get(i);
+            T result = null;
+            if (future == null) {
+                results.add(null);
+                continue;
+            }
+            try {
+                result = await(future, starts.get(i), submitted, timeoutMillis);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                getStats(names.get(i)).timeouts.incrementAndGet();
+                logger.warn("Message provider {} did not answer within {} seconds, skipping it.",
+                        names.get(i), timeout);
+                if (listener != null) {
+                    listener.error("Message provider " + names.get(i) + " timed out.");
+                }
+            } catch (ExecutionException e) {
+                getStats(names.get(i)).failures.incrementAndGet();
+                logger.warn("Message provider " + names.get(i) + " failed.", e.getCause());
+                if (listener != null) {
+                    listener.error(String.valueOf(e.getCause().getMessage()));
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for the message providers.");
+                Thread.currentThread().interrupt();
+                for (Future<T> f : futures) {
+                    if (f != null) {
+                        f.cancel(true);
+                    }
+                }
+                break;
+            }
+            results.add(result);
+        }
+        while (results.size() < futures.size()) {
+            results.add(null);
+        }
+        return results;
+    }
+
+    /**
+     * Waits for a call until the timeout has passed since it started,
+     * or since it was submitted if it is still waiting for a thread.
+     *
+     * @param future    the call.
+     * @param started   when the call started, 0 until it has.
+     * @param submitted when the call was submitted.
+     * @param timeout   the timeout in milliseconds.
+     * @param <T>       the result type.
+     * @return the result.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ExecutionException   if the call failed.
+     * @throws TimeoutException     if the call didn't finish in time.
+     */
+    private static <T> T await(Future<T> future, AtomicLong started, long submitted, long timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long start = Math.max(started.get(), submitted);
+        return future.get(Math.max(0, start + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wraps a call so that it runs as the caller and records when it started and how long it took.
+     *
+     * @param providerStats where to record the time.
+     * @param auth          the authentication of the caller, may be null.
+     * @param started       where to record when the call started.
+     * @param call          the call.
+     * @param <T>           the result type.
+     * @return the wrapped call.
+     */
+    private static <T> Callable<T> timed(final ProviderStats providerStats, final Authentication auth,
+                                         final AtomicLong started, final Callable<T> call) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                SecurityContext old = null;
+                if (auth != null) {
+                    old = ACL.impersonate(auth);
+                }
+                long start = System.currentTimeMillis();
+                started.set(start);
+                try {
+                    return call.call();
+                } finally {
+                    providerStats.latency.record(System.currentTimeMillis() - start);
+                    if (old != null) {
+                        SecurityContextHolder.setContext(old);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets or creates the stats of a provider.
+     *
+     * @param name the class name of the provider.
+     * @return the stats.
+     */
+    private synchronized ProviderStats getStats(String name) {
+        ProviderStats providerStats = stats.get(name);
+        if (providerStats == null) {
+            providerStats = new ProviderStats();
+            stats.put(name, providerStats);
+        }
+        return providerStats;
+    }
+
+    /**
+     * How long each provider has taken, by provider class name.
+     *
+     * @return the timings.
+     */
+    public synchronized Map<String, LatencyHistogram> getTimings() {
+        Map<String, LatencyHistogram> timings = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, ProviderStats> entry : stats.entrySet()) {
+            timings.put(entry.getKey(), entry.getValue().latency);
+        }
+        return timings;
+    }
+
+    /**
+     * The number of calls to a provider that didn't finish in time.
+     *
+     * @param name the class name of the provider.
+     * @return the count.
+     */
+    public synchronized long getTimeouts(String name) {
+        ProviderStats providerStats = stats.get(name);
+        if (providerStats == null) {
+            return 0;
+        }
+        return providerStats.timeouts.get();
+    }
+
+    /**
+     * The number of calls to a provider that threw an exception.
+     *
+     * @param name the class name of the provider.
+     * @return the count.
+     */
+    public synchronized long getFailures(String name) {
+        ProviderStats providerStats = stats.get(name);
+        if (providerStats == null) {
+            return 0;
+        }
+        return providerStats.failures.get();
+    }
+
+    /**
+     * The number of calls to a provider that were skipped because too many calls were waiting.
+     *
+     * @param name the class name of the provider.
+     * @return the count.
+     */
+    public synchronized long getRejections(String name) {
+        ProviderStats providerStats = stats.get(name);
+        if (providerStats == null) {
+            return 0;
+        }
+        return providerStats.rejections.get();
+    }
+
+    /**
+     * Stops the thread pool. Called when the plugin is stopped.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Timings and counters of one provider.
+     */
+    private static final class ProviderStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong rejections = new AtomicLong();
+    }
+}
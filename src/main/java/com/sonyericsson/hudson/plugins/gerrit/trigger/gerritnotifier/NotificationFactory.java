@@ -26,13 +26,16 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
 
 import com.sonymobile.tools.gerrit.gerritevents.GerritCmdRunner;
-import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Kind;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Transport;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.ssh.BuildCompletedCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.BuildCompletedRestCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.ssh.BuildStartedCommandJob;
@@ -44,6 +47,8 @@ import hudson.model.TaskListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A factory for creating notification entities.
  * This factory is mainly created and used to ease unit testing.
@@ -105,27 +110,39 @@ public class NotificationFactory {
         return new GerritNotifier(config, cmdRunner);
     }
 
-    //CS IGNORE LineLength FOR NEXT 8 LINES. REASON: Javadoc
+    //CS IGNORE LineLength FOR NEXT 11 LINES. REASON: Javadoc
 
     /**
-     * Queues a build completed command on the send-command queue.
+     * Queues a build completed command on the send-command queue, in the lane with the highest priority.
+     * A build started notification for the same event still held back by the
+     * {@link StartedNotificationCoalescer} is dropped.
      *
      * @param memoryImprint the memory of the builds.
      * @param listener      a listener.
-     * @see GerritSendCommandQueue#queue(com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob)
+     * @see PrioritizedSendQueue#queue(Lane, String, IGerritHudsonTriggerConfig, AbstractSendCommandJob)
      * @see BuildCompletedCommandJob
      */
     public void queueBuildCompleted(BuildMemory.MemoryImprint memoryImprint, TaskListener listener) {
         String serverName = getServerName(memoryImprint);
+        if (memoryImprint != null && memoryImprint.getEvent() != null) {
+            StartedNotificationCoalescer.getInstance().cancel(memoryImprint.getEvent());
+        }
         if (serverName != null) {
             IGerritHudsonTriggerConfig config = getConfig(serverName);
             if (config != null) {
+                AbstractSendCommandJob job;
+                Transport transport;
                 if (config.isUseRestApi()
                         && memoryImprint.getEvent() instanceof ChangeBasedEvent) {
-                    GerritSendCommandQueue.queue(new BuildCompletedRestCommandJob(config, memoryImprint, listener));
+                    job = new BuildCompletedRestCommandJob(config, memoryImprint, listener);
+                    transport = Transport.REST;
                 } else {
-                    GerritSendCommandQueue.queue(new BuildCompletedCommandJob(config, memoryImprint, listener));
+                    job = new BuildCompletedCommandJob(config, memoryImprint, listener);
+                    transport = Transport.SSH;
                 }
+                ((TracedJob)job).setTrace(new NotificationTrace(Kind.COMPLETED, serverName, transport,
+                        getLastCompletedTimestamp(memoryImprint)));
+                PrioritizedSendQueue.getInstance().queue(Lane.COMPLETED, serverName, config, job);
             } else {
                 logger.warn("Nothing queued since there is no configuration for serverName: {}", serverName);
             }
@@ -134,6 +151,26 @@ public class NotificationFactory {
         }
     }
 
+    /**
+     * When the last build of the memory completed, i.e. when the build listener was told.
+     *
+     * @param memoryImprint the memory of the builds.
+     * @return the timestamp, or now if no build has a completed timestamp.
+     */
+    private static long getLastCompletedTimestamp(BuildMemory.MemoryImprint memoryImprint) {
+        long last = 0;
+        for (BuildMemory.MemoryImprint.Entry entry : memoryImprint.getEntries()) {
+            Long completed = entry.getCompletedTimestamp();
+            if (completed != null && completed > last) {
+                last = completed;
+            }
+        }
+        if (last <= 0) {
+            return System.currentTimeMillis();
+        }
+        return last;
+    }
+
     /**
      * Get the server name from the event provider.
      *
@@ -178,17 +215,16 @@ public class NotificationFactory {
     }
 
 
-    //CS IGNORE LineLength FOR NEXT 10 LINES. REASON: Javadoc
-
     /**
-     * Queues a build started command on the send-command queue.
+     * Queues a build started command on the send-command queue, after any waiting build completed commands.
+     * If the server has a coalesce window configured the notification is held back
+     * by the {@link StartedNotificationCoalescer} instead.
      *
      * @param build    the build.
      * @param listener a listener.
      * @param event    the event.
      * @param stats    the started stats.
-     * @see GerritSendCommandQueue#queue(com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob)
-     * @see BuildStartedCommandJob
+     * @see #sendBuildStarted(Run, TaskListener, GerritTriggeredEvent, BuildsStartedStats, long)
      */
     public void queueBuildStarted(Run build, TaskListener listener,
                                   GerritTriggeredEvent event, BuildsStartedStats stats) {
@@ -196,12 +232,51 @@ public class NotificationFactory {
         if (serverName != null) {
             IGerritHudsonTriggerConfig config = getConfig(serverName);
             if (config != null) {
+                int window = config.getBuildStartedCoalesceWindow();
+                if (window > 0) {
+                    StartedNotificationCoalescer.getInstance().add(build, listener, event, stats,
+                            TimeUnit.SECONDS.toMillis(window));
+                } else {
+                    sendBuildStarted(build, listener, event, stats, System.currentTimeMillis());
+                }
+            } else {
+                logger.warn("Nothing queued since there is no configuration for serverName: {}", serverName);
+            }
+        } else {
+            logger.warn("Nothing queued since the event contained no serverName: {}", event);
+        }
+    }
+
+    //CS IGNORE LineLength FOR NEXT 11 LINES. REASON: Javadoc
+
+    /**
+     * Puts a build started command on the send-command queue right away, after any waiting build completed commands.
+     *
+     * @param build     the build.
+     * @param listener  a listener.
+     * @param event     the event.
+     * @param stats     the started stats.
+     * @param triggered when the build listener was told that the (first) build started.
+     * @see PrioritizedSendQueue#queue(Lane, String, IGerritHudsonTriggerConfig, AbstractSendCommandJob)
+     * @see BuildStartedCommandJob
+     */
+    public void sendBuildStarted(Run build, TaskListener listener,
+                                 GerritTriggeredEvent event, BuildsStartedStats stats, long triggered) {
+        String serverName = getServerName(event);
+        if (serverName != null) {
+            IGerritHudsonTriggerConfig config = getConfig(serverName);
+            if (config != null) {
+                AbstractSendCommandJob job;
+                Transport transport;
                 if (config.isUseRestApi() && event instanceof ChangeBasedEvent) {
-                    GerritSendCommandQueue.queue(new BuildStartedRestCommandJob(config, build, listener,
-                            (ChangeBasedEvent)event, stats));
+                    job = new BuildStartedRestCommandJob(config, build, listener, (ChangeBasedEvent)event, stats);
+                    transport = Transport.REST;
                 } else {
-                    GerritSendCommandQueue.queue(new BuildStartedCommandJob(config, build, listener, event, stats));
+                    job = new BuildStartedCommandJob(config, build, listener, event, stats);
+                    transport = Transport.SSH;
                 }
+                ((TracedJob)job).setTrace(new NotificationTrace(Kind.STARTED, serverName, transport, triggered));
+                PrioritizedSendQueue.getInstance().queue(Lane.STARTED, serverName, config, job);
             } else {
                 logger.warn("Nothing queued since there is no configuration for serverName: {}", serverName);
             }
@@ -0,0 +1,303 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.LatencyHistogram;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Kind;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Transport;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates {@link NotificationTrace}s into histograms per kind of notification, server and transport,
+ * one histogram per {@link Stage}.
+ */
+public final class NotificationLatency {
+
+    /**
+     * The stages of a notification.
+     */
+    public enum Stage {
+        /**
+         * From the build listener call until the notification is queued.
+         */
+        QUEUEING,
+        /**
+         * From queued until a send worker takes it.
+         */
+        WAITING,
+        /**
+         * From taken by a send worker until sent, includes rate limiting and building the message.
+         */
+        PREPARING,
+        /**
+         * From sent until acknowledged by Gerrit.
+         */
+        SENDING,
+        /**
+         * From the build listener call until acknowledged by Gerrit.
+         */
+        TOTAL
+    }
+
+    private static final NotificationLatency INSTANCE = new NotificationLatency();
+
+    private final Map<String, Series> series = new HashMap<String, Series>();
+
+    /**
+     * Gets the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static NotificationLatency getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor, use {@link #getInstance()} outside of tests.
+     */
+    NotificationLatency() {
+    }
+
+    /**
+     * Records an acknowledged notification.
+     *
+     * @param trace the trace.
+     * @param acked when it was acknowledged.
+     */
+    void record(NotificationTrace trace, long acked) {
+        Series s = getSeries(trace);
+        long dequeued = trace.getDequeued();
+        if (dequeued <= 0) {
+            dequeued = trace.getQueued();
+        }
+        long sent = trace.getSent();
+        if (sent <= 0) {
+            sent = dequeued;
+        }
+        s.get(Stage.QUEUEING).record(trace.getQueued() - trace.getTriggered());
+        s.get(Stage.WAITING).record(dequeued - trace.getQueued());
+        s.get(Stage.PREPARING).record(sent - dequeued);
+        s.get(Stage.SENDING).record(acked - sent);
+        s.get(Stage.TOTAL).record(acked - trace.getTriggered());
+    }
+
+    /**
+     * Records a notification that Gerrit didn't accept.
+     *
+     * @param trace the trace.
+     */
+    void recordFailure(NotificationTrace trace) {
+        getSeries(trace).failures.incrementAndGet();
+    }
+
+    /**
+     * Gets or creates the series for the trace.
+     *
+     * @param trace the trace.
+     * @return the series.
+     */
+    private synchronized Series getSeries(NotificationTrace trace) {
+        String key = trace.getKind() + "/" + trace.getTransport() + "/" + trace.getServerName();
+        Series s = series.get(key);
+        if (s == null) {
+            s = new Series(trace.getKind(), trace.getServerName(), trace.getTransport());
+            series.put(key, s);
+        }
+        return s;
+    }
+
+    /**
+     * All series, sorted by kind, server and transport.
+     *
+     * @return the series.
+     */
+    public synchronized List<Series> getSeries() {
+        List<Series> list = new ArrayList<Series>(series.values());
+        Collections.sort(list, new Comparator<Series>() {
+            @Override
+            public int compare(Series o1, Series o2) {
+                int c = o1.getKind().compareTo(o2.getKind());
+                if (c == 0) {
+                    c = String.valueOf(o1.getServerName()).compareTo(String.valueOf(o2.getServerName()));
+                }
+                if (c == 0) {
+                    c = o1.getTransport().compareTo(o2.getTransport());
+                }
+                return c;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Forgets everything recorded.
+     */
+    public synchronized void clear() {
+        series.clear();
+    }
+
+    /**
+     * The histograms of one kind of notification to one server over one transport.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Series {
+        private final Kind kind;
+        private final String serverName;
+        private final Transport transport;
+        private final Map<Stage, LatencyHistogram> stages = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+        private final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Constructor.
+         *
+         * @param kind       the kind of notification.
+         * @param serverName the server.
+         * @param transport  the transport.
+         */
+        private Series(Kind kind, String serverName, Transport transport) {
+            this.kind = kind;
+            this.serverName = serverName;
+            this.transport = transport;
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, new LatencyHistogram());
+            }
+        }
+
+        /**
+         * The histogram of a stage.
+         *
+         * @param stage the stage.
+         * @return the histogram.
+         */
+        public LatencyHistogram get(Stage stage) {
+            return stages.get(stage);
+        }
+
+        /**
+         * From the build listener call until the notification is queued.
+         *
+         * @return the histogram.
+         * @see Stage#QUEUEING
+         */
+        @Exported
+        public LatencyHistogram getQueueing() {
+            return get(Stage.QUEUEING);
+        }
+
+        /**
+         * From queued until a send worker takes it.
+         *
+         * @return the histogram.
+         * @see Stage#WAITING
+         */
+        @Exported
+        public LatencyHistogram getWaiting() {
+            return get(Stage.WAITING);
+        }
+
+        /**
+         * From taken by a send worker until sent.
+         *
+         * @return the histogram.
+         * @see Stage#PREPARING
+         */
+        @Exported
+        public LatencyHistogram getPreparing() {
+            return get(Stage.PREPARING);
+        }
+
+        /**
+         * From sent until acknowledged by Gerrit.
+         *
+         * @return the histogram.
+         * @see Stage#SENDING
+         */
+        @Exported
+        public LatencyHistogram getSending() {
+            return get(Stage.SENDING);
+        }
+
+        /**
+         * From the build listener call until acknowledged by Gerrit.
+         *
+         * @return the histogram.
+         * @see Stage#TOTAL
+         */
+        @Exported
+        public LatencyHistogram getTotal() {
+            return get(Stage.TOTAL);
+        }
+
+        /**
+         * The kind of notification.
+         *
+         * @return the kind.
+         */
+        @Exported
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The server.
+         *
+         * @return the server name.
+         */
+        @Exported
+        public String getServerName() {
+            return serverName;
+        }
+
+        /**
+         * The transport.
+         *
+         * @return the transport.
+         */
+        @Exported
+        public Transport getTransport() {
+            return transport;
+        }
+
+        /**
+         * The number of notifications Gerrit didn't accept.
+         *
+         * @return the count.
+         */
+        @Exported
+        public long getFailures() {
+            return failures.get();
+        }
+    }
+}
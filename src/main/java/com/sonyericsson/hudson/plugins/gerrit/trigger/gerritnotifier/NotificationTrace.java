@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+/**
+ * The timestamps of one notification on its way to Gerrit.
+ * Created when the notification is queued and reported to {@link NotificationLatency} when Gerrit has acknowledged it.
+ *
+ * @see NotificationLatency.Stage
+ */
+public class NotificationTrace {
+
+    /**
+     * The kind of notification.
+     */
+    public enum Kind {
+        /**
+         * Build started.
+         */
+        STARTED,
+        /**
+         * Build(s) completed, i.e. the vote.
+         */
+        COMPLETED
+    }
+
+    /**
+     * How the notification is sent.
+     */
+    public enum Transport {
+        /**
+         * The gerrit review command over SSH.
+         */
+        SSH,
+        /**
+         * The REST API.
+         */
+        REST
+    }
+
+    private final Kind kind;
+    private final String serverName;
+    private final Transport transport;
+    private final long triggered;
+    private final long queued;
+    private volatile long dequeued;
+    private volatile long sent;
+
+    /**
+     * Constructor, the notification is considered queued when this is called.
+     *
+     * @param kind       the kind of notification.
+     * @param serverName the server it is for.
+     * @param transport  how it will be sent.
+     * @param triggered  when the build listener got the started or completed call that caused the notification.
+     */
+    public NotificationTrace(Kind kind, String serverName, Transport transport, long triggered) {
+        this.kind = kind;
+        this.serverName = serverName;
+        this.transport = transport;
+        this.queued = System.currentTimeMillis();
+        this.triggered = Math.min(triggered, queued);
+    }
+
+    /**
+     * Marks that a send worker has taken the notification from the queue.
+     */
+    public void markDequeued() {
+        dequeued = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks that the command or request is being sent to Gerrit.
+     */
+    public void markSent() {
+        sent = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks that Gerrit has acknowledged the notification and records the trace.
+     */
+    public void markAcked() {
+        NotificationLatency.getInstance().record(this, System.currentTimeMillis());
+    }
+
+    /**
+     * Marks that Gerrit didn't accept the notification.
+     */
+    public void markFailed() {
+        NotificationLatency.getInstance().recordFailure(this);
+    }
+
+    /**
+     * The kind of notification.
+     *
+     * @return the kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The server the notification is for.
+     *
+     * @return the server name.
+     */
+    public String getServerName() {
+        return serverName;
+    }
+
+    /**
+     * How the notification is sent.
+     *
+     * @return the transport.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * When the build listener got the started or completed call.
+     *
+     * @return the timestamp.
+     */
+    public long getTriggered() {
+        return triggered;
+    }
+
+    /**
+     * When the notification was queued.
+     *
+     * @return the timestamp.
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * When a send worker took the notification from the queue.
+     *
+     * @return the timestamp or 0 if not yet.
+     */
+    public long getDequeued() {
+        return dequeued;
+    }
+
+    /**
+     * When the notification was sent.
+     *
+     * @return the timestamp or 0 if not yet.
+     */
+    public long getSent() {
+        return sent;
+    }
+}
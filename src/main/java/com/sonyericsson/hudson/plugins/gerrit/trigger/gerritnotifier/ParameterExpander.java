@@ -43,10 +43,12 @@ import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -128,6 +130,9 @@ public class ParameterExpander {
         if (stats.getTotalBuildsToStart() > 1) {
             startedStats.append(stats.toString());
         }
+        for (Run other : stats.getCoalescedBuilds()) {
+            startedStats.append("\n").append(jenkins.getRootUrl()).append(other.getUrl());
+        }
         String buildStartMessage = trigger.getBuildStartMessage();
         if (buildStartMessage != null && !buildStartMessage.isEmpty()) {
             startedStats.append("\n\n").append(expandParameters(buildStartMessage, r, taskListener, parameters));
@@ -762,6 +767,20 @@ public class ParameterExpander {
          */
         Arrays.sort(entries, EntryByBuildResultComparator.DESCENDING);
 
+        Map<Run, List<String>> pluginMessages = Collections.emptyMap();
+        if (config.isEnablePluginMessages()) {
+            List<GerritMessageProvider> providers = GerritMessageProvider.all();
+            if (providers != null && !providers.isEmpty()) {
+                List<Run> builds = new ArrayList<Run>();
+                for (Entry entry : entries) {
+                    if (entry != null && entry.getBuild() != null) {
+                        builds.add(entry.getBuild());
+                    }
+                }
+                pluginMessages = MessageProviderInvoker.getInstance().getBuildCompletedMessages(providers, builds);
+            }
+        }
+
         // In Gerrit, all lines before the first empty line are used as the summary.
         // For the summary all single linefeeds will be removed (only in Gerrit, not sent mails).
         // Hence, for the multi-builds, we will add a double linefeed before actually listing
@@ -829,12 +848,10 @@ public class ParameterExpander {
                         }
                     }
 
-                    if (config.isEnablePluginMessages()) {
-                        for (GerritMessageProvider messageProvider : emptyIfNull(GerritMessageProvider.all())) {
-                            String extensionMessage = messageProvider.getBuildCompletedMessage(build);
-                            if (extensionMessage != null) {
-                                str.append("\n\n").append(extensionMessage);
-                            }
+                    List<String> extensionMessages = pluginMessages.get(build);
+                    if (extensionMessages != null) {
+                        for (String extensionMessage : extensionMessages) {
+                            str.append("\n\n").append(extensionMessage);
                         }
                     }
                 }
@@ -0,0 +1,581 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.LatencyHistogram;
+import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
+import com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob;
+import jenkins.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders the notifications waiting to be sent to Gerrit.
+ *
+ * The {@link GerritSendCommandQueue} is a plain FIFO, so during a retrigger storm thousands of
+ * "Build Started" comments can end up in front of the vote that someone is waiting for.
+ * Instead of putting the real jobs on that queue this class keeps them in {@link Lane}s
+ * and puts one placeholder job per notification on the send queue.
+ * When a send worker runs a placeholder it takes the most important notification available at that time,
+ * so the thread pool, its configuration and the queue size monitoring stays the same.
+ *
+ * Lanes are served in priority order. Within a lane the servers take turns,
+ * each getting as many commands per turn as its {@link IGerritHudsonTriggerConfig#getSendQueueWeight()},
+ * so one noisy server can't starve the others.
+ * Notifications that have waited longer than {@link #STARVATION_THRESHOLD} are served before anything else
+ * so a lower lane is never blocked forever.
+ *
+ * Servers that are out of tokens in the {@link SendRateLimiter} are skipped when choosing what to send,
+ * so a throttled server doesn't hold up the send workers for everyone else.
+ * A placeholder that finds only throttled work is put back on the send queue when the first token is due.
+ */
+public final class PrioritizedSendQueue {
+
+    /**
+     * The lanes, in priority order.
+     */
+    public enum Lane {
+        /**
+         * Build completed notifications, i.e. the votes.
+         */
+        COMPLETED,
+        /**
+         * Build started notifications.
+         */
+        STARTED
+    }
+
+    /**
+     * How long a notification can wait in a lower lane before it is sent regardless of priority.
+     */
+    public static final long STARVATION_THRESHOLD = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Logger logger = LoggerFactory.getLogger(PrioritizedSendQueue.class);
+    private static final PrioritizedSendQueue INSTANCE = new PrioritizedSendQueue();
+
+    private final Map<Lane, LaneQueue> lanes;
+    private final SendRateLimiter limiter;
+    @CheckForNull
+    private final ScheduledExecutorService scheduler;
+    private long throttledFor;
+
+    /**
+     * Gets the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static PrioritizedSendQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor, use {@link #getInstance()} outside of tests.
+     */
+    PrioritizedSendQueue() {
+        this(SendRateLimiter.getInstance(), null);
+    }
+
+    /**
+     * Constructor for tests.
+     *
+     * @param limiter   the rate limiter to take tokens from.
+     * @param scheduler where to schedule throttled placeholders, null for {@link Timer#get()}.
+     */
+    PrioritizedSendQueue(SendRateLimiter limiter, @CheckForNull ScheduledExecutorService scheduler) {
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+        lanes = new EnumMap<Lane, LaneQueue>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneQueue());
+        }
+    }
+
+    /**
+     * Queues a job to be sent in the given lane.
+     *
+     * @param lane       the lane.
+     * @param serverName the name of the server the job is for.
+     * @param config     the config of the server.
+     * @param job        the job.
+     */
+    public void queue(Lane lane, String serverName, IGerritHudsonTriggerConfig config, AbstractSendCommandJob job) {
+        add(lane, serverName, config.getSendQueueWeight(), job);
+        GerritSendCommandQueue.queue(new SendSlot(this, config));
+    }
+
+    /**
+     * Queues a job again after a delay, for when Gerrit has asked us to come back later.
+     *
+     * @param lane       the lane.
+     * @param serverName the name of the server the job is for.
+     * @param config     the config of the server.
+     * @param job        the job.
+     * @param delay      milliseconds to wait before queueing.
+     */
+    public void queueLater(final Lane lane, final String serverName, final IGerritHudsonTriggerConfig config,
+                           final AbstractSendCommandJob job, long delay) {
+        logger.debug("Queueing a command to {} again in {} ms", serverName, delay);
+        getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                queue(lane, serverName, config, job);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the job to the lane without scheduling it for sending.
+     *
+     * @param lane       the lane.
+     * @param serverName the name of the server the job is for.
+     * @param weight     the weight of the server.
+     * @param job        the job.
+     */
+    synchronized void add(Lane lane, String serverName, int weight, AbstractSendCommandJob job) {
+        lanes.get(lane).add(serverName, Math.max(1, weight), new Entry(job, serverName, System.currentTimeMillis()));
+    }
+
+    /**
+     * Takes the next job to send and records how long it waited.
+     *
+     * @return the job or null if all lanes are empty or throttled.
+     */
+    synchronized AbstractSendCommandJob poll() {
+        Entry entry = pollEntry(System.currentTimeMillis());
+        if (entry == null) {
+            return null;
+        }
+        return entry.getJob();
+    }
+
+    /**
+     * Takes the next entry that the {@link SendRateLimiter} lets through and records how long it waited.
+     * When everything waiting is throttled {@link #getThrottledFor()} tells when the first token is due.
+     *
+     * @param now the current time.
+     * @return the entry or null if all lanes are empty or throttled.
+     */
+    private synchronized Entry pollEntry(long now) {
+        throttledFor = 0;
+        for (LaneQueue lane : lanes.values()) {
+            Long oldest = lane.getOldestTimestamp();
+            if (oldest != null && now - oldest > STARVATION_THRESHOLD) {
+                Entry entry = pollLane(lane, now);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        for (LaneQueue lane : lanes.values()) {
+            if (!lane.isEmpty()) {
+                Entry entry = pollLane(lane, now);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the next entry from a lane that isn't throttled.
+     *
+     * @param lane the lane.
+     * @param now  the current time.
+     * @return the entry or null if all servers in the lane are throttled.
+     */
+    private Entry pollLane(LaneQueue lane, long now) {
+        Entry entry = lane.poll(limiter, now);
+        if (entry == null) {
+            if (throttledFor <= 0 || lane.getThrottledFor() < throttledFor) {
+                throttledFor = lane.getThrottledFor();
+            }
+            return null;
+        }
+        throttledFor = 0;
+        lane.getLatency().record(now - entry.getTimestamp());
+        return entry;
+    }
+
+    /**
+     * How long until the first token is due, when the last poll found only throttled entries.
+     *
+     * @return milliseconds, 0 if the last poll wasn't throttled.
+     */
+    synchronized long getThrottledFor() {
+        return throttledFor;
+    }
+
+    /**
+     * Sends the most important notification that isn't throttled.
+     * If everything waiting is throttled the placeholder is put back on the send queue
+     * when the first token is due instead of waiting for it on the send worker.
+     *
+     * @param slot the placeholder being run.
+     */
+    void sendNext(SendSlot slot) {
+        Entry entry;
+        long delay;
+        synchronized (this) {
+            entry = pollEntry(System.currentTimeMillis());
+            delay = throttledFor;
+        }
+        if (entry == null) {
+            if (delay > 0) {
+                requeue(slot, delay);
+            } else {
+                logger.debug("Nothing to send, the queue was cleared.");
+            }
+            return;
+        }
+        AbstractSendCommandJob job = entry.getJob();
+        if (job instanceof TracedJob && ((TracedJob)job).getTrace() != null) {
+            ((TracedJob)job).getTrace().markDequeued();
+        }
+        job.run();
+    }
+
+    /**
+     * Puts a placeholder back on the send queue after a delay.
+     *
+     * @param slot  the placeholder.
+     * @param delay milliseconds to wait.
+     */
+    private void requeue(final SendSlot slot, long delay) {
+        logger.debug("Everything waiting is throttled, sending again in {} ms", delay);
+        getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                GerritSendCommandQueue.queue(slot);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The scheduler for throttled placeholders and jobs queued later.
+     *
+     * @return the injected scheduler or {@link Timer#get()}.
+     */
+    private ScheduledExecutorService getScheduler() {
+        if (scheduler != null) {
+            return scheduler;
+        }
+        return Timer.get();
+    }
+
+    /**
+     * The number of jobs waiting in a lane.
+     *
+     * @param lane the lane.
+     * @return the size.
+     */
+    public synchronized int size(Lane lane) {
+        return lanes.get(lane).size();
+    }
+
+    /**
+     * The number of jobs waiting in a lane for each server.
+     *
+     * @param lane the lane.
+     * @return server name to size.
+     */
+    public synchronized Map<String, Integer> getServerSizes(Lane lane) {
+        return lanes.get(lane).getServerSizes();
+    }
+
+    /**
+     * How long jobs have waited in a lane before being sent.
+     *
+     * @param lane the lane.
+     * @return the histogram.
+     */
+    public LatencyHistogram getLatency(Lane lane) {
+        return lanes.get(lane).getLatency();
+    }
+
+    /**
+     * Throws away everything that is waiting. Called when the plugin is stopped.
+     */
+    public synchronized void clear() {
+        for (LaneQueue lane : lanes.values()) {
+            lane.clear();
+        }
+    }
+
+    /**
+     * The placeholder put on the {@link GerritSendCommandQueue}, runs whatever is most important when it runs.
+     * See {@link #sendNext(SendSlot)}.
+     */
+    static class SendSlot extends AbstractSendCommandJob {
+        private final PrioritizedSendQueue queue;
+
+        /**
+         * Constructor.
+         *
+         * @param queue  the queue to take the notification from.
+         * @param config the config of the server the notification was queued for.
+         */
+        SendSlot(PrioritizedSendQueue queue, IGerritHudsonTriggerConfig config) {
+            super(config);
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            queue.sendNext(this);
+        }
+    }
+
+    /**
+     * A queued job, who it is for and when it was queued.
+     */
+    private static final class Entry {
+        private final AbstractSendCommandJob job;
+        private final String serverName;
+        private final long timestamp;
+
+        /**
+         * Constructor.
+         *
+         * @param job        the job.
+         * @param serverName the name of the server the job is for.
+         * @param timestamp  when it was queued.
+         */
+        private Entry(AbstractSendCommandJob job, String serverName, long timestamp) {
+            this.job = job;
+            this.serverName = serverName;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * The name of the server the job is for.
+         *
+         * @return the server name.
+         */
+        String getServerName() {
+            return serverName;
+        }
+
+        /**
+         * The job.
+         *
+         * @return the job.
+         */
+        AbstractSendCommandJob getJob() {
+            return job;
+        }
+
+        /**
+         * When it was queued.
+         *
+         * @return the timestamp.
+         */
+        long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * The jobs of one server in a lane.
+     */
+    private static final class ServerQueue {
+        private final String name;
+        private final LinkedList<Entry> entries = new LinkedList<Entry>();
+        private IGerritHudsonTriggerConfig config;
+        private int weight;
+        private int credits;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the server.
+         */
+        private ServerQueue(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * One lane with weighted round robin between the servers.
+     * Not thread safe on its own, guarded by the enclosing queue.
+     */
+    private static final class LaneQueue {
+        private final Map<String, ServerQueue> servers = new HashMap<String, ServerQueue>();
+        private final LinkedList<ServerQueue> rotation = new LinkedList<ServerQueue>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private int size;
+        private long throttledFor;
+
+        /**
+         * Adds an entry.
+         *
+         * @param serverName the server.
+         * @param weight     its weight.
+         * @param entry      the entry.
+         */
+        void add(String serverName, int weight, Entry entry) {
+            ServerQueue server = servers.get(serverName);
+            if (server == null) {
+                server = new ServerQueue(serverName);
+                servers.put(serverName, server);
+            }
+            if (server.entries.isEmpty()) {
+                rotation.addLast(server);
+            }
+            server.weight = weight;
+            if (entry.getJob().getConfig() instanceof IGerritHudsonTriggerConfig) {
+                server.config = (IGerritHudsonTriggerConfig)entry.getJob().getConfig();
+            }
+            server.entries.addLast(entry);
+            size++;
+        }
+
+        /**
+         * Takes the next entry from the first server in turn that the limiter lets through.
+         *
+         * @param limiter the rate limiter.
+         * @param now     the current time.
+         * @return the entry, or null if empty or all servers are throttled.
+         */
+        Entry poll(SendRateLimiter limiter, long now) {
+            throttledFor = 0;
+            ListIterator<ServerQueue> it = rotation.listIterator();
+            while (it.hasNext()) {
+                ServerQueue server = it.next();
+                long wait = limiter.tryAcquire(server.name, server.config, now);
+                if (wait > 0) {
+                    if (throttledFor <= 0 || wait < throttledFor) {
+                        throttledFor = wait;
+                    }
+                    continue;
+                }
+                if (server.credits <= 0) {
+                    server.credits = server.weight;
+                }
+                Entry entry = server.entries.removeFirst();
+                server.credits--;
+                size--;
+                if (server.entries.isEmpty()) {
+                    it.remove();
+                    servers.remove(server.name);
+                    server.credits = 0;
+                } else if (server.credits <= 0) {
+                    it.remove();
+                    rotation.addLast(server);
+                }
+                return entry;
+            }
+            return null;
+        }
+
+        /**
+         * How long until the first token is due, when the last poll found all servers throttled.
+         *
+         * @return milliseconds.
+         */
+        long getThrottledFor() {
+            return throttledFor;
+        }
+
+        /**
+         * When the oldest entry in the lane was queued.
+         *
+         * @return the timestamp or null if empty.
+         */
+        Long getOldestTimestamp() {
+            Long oldest = null;
+            for (ServerQueue server : rotation) {
+                long ts = server.entries.getFirst().getTimestamp();
+                if (oldest == null || ts < oldest) {
+                    oldest = ts;
+                }
+            }
+            return oldest;
+        }
+
+        /**
+         * If there is nothing in the lane.
+         *
+         * @return true if so.
+         */
+        boolean isEmpty() {
+            return size <= 0;
+        }
+
+        /**
+         * The number of entries.
+         *
+         * @return the size.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * The size per server.
+         *
+         * @return server name to size.
+         */
+        Map<String, Integer> getServerSizes() {
+            if (servers.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<String, Integer> sizes = new HashMap<String, Integer>();
+            for (ServerQueue server : servers.values()) {
+                sizes.put(server.name, server.entries.size());
+            }
+            return sizes;
+        }
+
+        /**
+         * The wait time histogram.
+         *
+         * @return the histogram.
+         */
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Removes everything.
+         */
+        void clear() {
+            servers.clear();
+            rotation.clear();
+            size = 0;
+        }
+    }
+}
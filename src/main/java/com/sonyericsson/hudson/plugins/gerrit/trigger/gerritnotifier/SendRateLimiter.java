@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.LatencyHistogram;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of review commands sent to each Gerrit server with a token bucket.
+ *
+ * Every server gets a bucket holding up to {@link IGerritHudsonTriggerConfig#getNotificationBurst()} tokens
+ * that is refilled with {@link IGerritHudsonTriggerConfig#getNotificationRateLimit()} tokens per minute.
+ * Each command takes one token, and while the bucket of a server is empty {@link PrioritizedSendQueue}
+ * sends the commands of other servers instead of waiting for it.
+ * A server that has answered with HTTP 429 or 503 and a Retry-After header
+ * is not sent anything until that time has passed, see {@link #backOff(String, HttpResponse)}.
+ */
+public final class SendRateLimiter {
+
+    /**
+     * HTTP Too Many Requests, missing in {@link java.net.HttpURLConnection}.
+     */
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final Logger logger = LoggerFactory.getLogger(SendRateLimiter.class);
+    private static final SendRateLimiter INSTANCE = new SendRateLimiter();
+
+    private final Map<String, TokenBucket> buckets = new HashMap<String, TokenBucket>();
+
+    /**
+     * Gets the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static SendRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor, use {@link #getInstance()} outside of tests.
+     */
+    SendRateLimiter() {
+    }
+
+    /**
+     * Gets or creates the bucket of a server.
+     *
+     * @param serverName the name of the server.
+     * @return the bucket.
+     */
+    synchronized TokenBucket getBucket(String serverName) {
+        TokenBucket bucket = buckets.get(serverName);
+        if (bucket == null) {
+            bucket = new TokenBucket();
+            buckets.put(serverName, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Takes a token for a command to the server if there is one, without waiting.
+     *
+     * @param serverName the name of the server.
+     * @param config     the config of the server, null for no rate limit.
+     * @param now        the current time.
+     * @return 0 if a token was taken, otherwise how many milliseconds until there is one.
+     */
+    public long tryAcquire(String serverName, IGerritHudsonTriggerConfig config, long now) {
+        TokenBucket bucket = getBucket(serverName);
+        int rate = 0;
+        int burst = 1;
+        if (config != null) {
+            rate = config.getNotificationRateLimit();
+            burst = config.getNotificationBurst();
+        }
+        long wait = bucket.tryTake(rate, burst, now);
+        if (wait > 0) {
+            logger.debug("Command to {} is throttled for {} ms", serverName, wait);
+        }
+        return wait;
+    }
+
+    /**
+     * Stops sending to the server for as long as the response asks for,
+     * if it is a 429 or 503 with a Retry-After header.
+     *
+     * @param serverName the name of the server.
+     * @param response   the response from the server.
+     * @return true if the server asked us to back off.
+     */
+    public boolean backOff(String serverName, HttpResponse response) {
+        if (response == null || response.getStatusLine() == null) {
+            return false;
+        }
+        int status = response.getStatusLine().getStatusCode();
+        if (status != HTTP_TOO_MANY_REQUESTS && status != HttpURLConnection.HTTP_UNAVAILABLE) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long delay = getRetryAfter(response, now);
+        if (delay <= 0) {
+            return false;
+        }
+        logger.warn("Gerrit server {} answered {}, not sending anything for {} ms", serverName, status, delay);
+        getBucket(serverName).blockUntil(now + delay);
+        return true;
+    }
+
+    /**
+     * Reads the Retry-After header, either in seconds or as an HTTP date.
+     *
+     * @param response the response.
+     * @param now      the current time.
+     * @return the number of milliseconds to wait or -1 if there is no usable header.
+     */
+    public static long getRetryAfter(HttpResponse response, long now) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            if (date != null) {
+                return date.getTime() - now;
+            }
+        }
+        logger.debug("Unparseable Retry-After: {}", value);
+        return -1;
+    }
+
+    /**
+     * The time commands have waited for each server, sorted by server name.
+     *
+     * @return server name to histogram.
+     */
+    public synchronized Map<String, LatencyHistogram> getThrottledWaits() {
+        if (buckets.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, LatencyHistogram> waits = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+            waits.put(entry.getKey(), entry.getValue().getThrottledWait());
+        }
+        return waits;
+    }
+
+    /**
+     * Forgets all buckets. Called when the plugin is stopped.
+     */
+    public synchronized void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * The token bucket of one server.
+     */
+    static final class TokenBucket {
+        private final LatencyHistogram throttledWait = new LatencyHistogram();
+        private boolean filled;
+        private double tokens;
+        private long lastRefill;
+        private long blockedUntil;
+        private long throttledSince = -1;
+
+        /**
+         * Takes a token only if there is one.
+         * When a token is taken after the bucket has been empty, the time it was empty is recorded
+         * in {@link #getThrottledWait()}.
+         *
+         * @param ratePerMinute the refill rate, 0 or less for no limit.
+         * @param burst         the size of the bucket.
+         * @param now           the current time.
+         * @return 0 if a token was taken, otherwise how many milliseconds until there is one.
+         */
+        synchronized long tryTake(int ratePerMinute, int burst, long now) {
+            long wait = blockedUntil - now;
+            if (wait <= 0 && ratePerMinute > 0) {
+                double millisPerToken = refill(ratePerMinute, burst, now);
+                if (tokens >= 1) {
+                    tokens -= 1;
+                } else {
+                    wait = Math.max(1, (long)Math.ceil((1 - tokens) * millisPerToken));
+                }
+            }
+            if (wait > 0) {
+                if (throttledSince < 0) {
+                    throttledSince = now;
+                }
+                return wait;
+            }
+            if (throttledSince >= 0) {
+                throttledWait.record(now - throttledSince);
+                throttledSince = -1;
+            } else {
+                throttledWait.record(0);
+            }
+            return 0;
+        }
+
+        /**
+         * Adds the tokens earned since the last refill.
+         *
+         * @param ratePerMinute the refill rate, more than 0.
+         * @param burst         the size of the bucket.
+         * @param now           the current time.
+         * @return the number of milliseconds per token.
+         */
+        private double refill(int ratePerMinute, int burst, long now) {
+            double capacity = Math.max(1, burst);
+            double millisPerToken = TimeUnit.MINUTES.toMillis(1) / (double)ratePerMinute;
+            if (!filled) {
+                tokens = capacity;
+                filled = true;
+            } else {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) / millisPerToken);
+            }
+            lastRefill = now;
+            return millisPerToken;
+        }
+
+        /**
+         * Stops handing out tokens until the given time.
+         *
+         * @param timestamp when to start again.
+         */
+        synchronized void blockUntil(long timestamp) {
+            blockedUntil = Math.max(blockedUntil, timestamp);
+        }
+
+        /**
+         * The time callers have been told to wait.
+         *
+         * @return the histogram.
+         */
+        LatencyHistogram getThrottledWait() {
+            return throttledWait;
+        }
+    }
+}
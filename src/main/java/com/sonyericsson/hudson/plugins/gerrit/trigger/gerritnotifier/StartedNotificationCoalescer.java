@@ -0,0 +1,223 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+//CS IGNORE LineLength FOR NEXT 7 LINES. REASON: JavaDoc
+
+/**
+ * Holds back build started notifications so that one event triggering many jobs
+ * results in one "Build Started" comment in Gerrit instead of one per job.
+ *
+ * The first started build of an event opens a window, see
+ * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig#getBuildStartedCoalesceWindow()}.
+ * Builds that start within the window replace the pending notification with their newer
+ * {@link BuildsStartedStats}, and when the window closes the latest one is sent
+ * with the other builds of the window as {@link BuildsStartedStats#getCoalescedBuilds()}.
+ * If the build completed notification is queued before that, the started notification is dropped
+ * since it would be outdated by the time it reaches Gerrit anyway.
+ */
+public final class StartedNotificationCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartedNotificationCoalescer.class);
+    private static StartedNotificationCoalescer instance;
+
+    private final Map<GerritTriggeredEvent, Pending> pending = new HashMap<GerritTriggeredEvent, Pending>();
+    private final ScheduledExecutorService scheduler;
+    private final Sender sender;
+
+    /**
+     * Gets the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static synchronized StartedNotificationCoalescer getInstance() {
+        if (instance == null) {
+            instance = new StartedNotificationCoalescer(jenkins.util.Timer.get(), new Sender() {
+                @Override
+                public void send(Run build, TaskListener listener, GerritTriggeredEvent event,
+                                 BuildsStartedStats stats, long triggered) {
+                    NotificationFactory.getInstance().sendBuildStarted(build, listener, event, stats, triggered);
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor, use {@link #getInstance()} outside of tests.
+     *
+     * @param scheduler where to schedule the end of the windows.
+     * @param sender    what sends the notification when a window ends.
+     */
+    StartedNotificationCoalescer(ScheduledExecutorService scheduler, Sender sender) {
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    /**
+     * Adds a build started notification, opening a window for the event if there is none.
+     *
+     * @param build        the build that started.
+     * @param listener     the listener of the build.
+     * @param event        the event that triggered the build.
+     * @param stats        the started stats at the time the build started.
+     * @param windowMillis how long to wait before sending if this opens a new window.
+     */
+    public synchronized void add(Run build, TaskListener listener, final GerritTriggeredEvent event,
+                                 BuildsStartedStats stats, long windowMillis) {
+        Pending current = pending.get(event);
+        if (current == null) {
+            current = new Pending();
+            current.triggered = System.currentTimeMillis();
+            pending.put(event, current);
+            current.future = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(event);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            logger.debug("Coalescing build started notification for {} into the pending one.", build);
+        }
+        current.builds.add(build);
+        if (current.stats == null || stats == null
+                || stats.getStartedBuilds() >= current.stats.getStartedBuilds()) {
+            current.build = build;
+            current.listener = listener;
+            current.stats = stats;
+        }
+    }
+
+    /**
+     * Drops the pending notification for the event, if any.
+     * Called when the build completed notification for the event is queued.
+     *
+     * @param event the event.
+     * @return true if a pending notification was dropped.
+     */
+    public boolean cancel(GerritTriggeredEvent event) {
+        Pending dropped;
+        synchronized (this) {
+            dropped = pending.remove(event);
+        }
+        if (dropped == null) {
+            return false;
+        }
+        if (dropped.future != null) {
+            dropped.future.cancel(false);
+        }
+        logger.debug("Dropped the pending build started notification for {} since it has completed.", event);
+        return true;
+    }
+
+    /**
+     * Sends the pending notification for the event, if it wasn't dropped or sent already.
+     *
+     * @param event the event.
+     */
+    void flush(GerritTriggeredEvent event) {
+        Pending toSend;
+        synchronized (this) {
+            toSend = pending.remove(event);
+        }
+        if (toSend != null) {
+            if (toSend.stats != null && toSend.builds.size() > 1) {
+                List<Run> others = new ArrayList<Run>(toSend.builds);
+                others.remove(toSend.build);
+                toSend.stats.setCoalescedBuilds(others);
+            }
+            sender.send(toSend.build, toSend.listener, event, toSend.stats, toSend.triggered);
+        }
+    }
+
+    /**
+     * The number of events with a pending notification.
+     *
+     * @return the size.
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Drops everything that is pending. Called when the plugin is stopped.
+     */
+    public void clear() {
+        Map<GerritTriggeredEvent, Pending> dropped;
+        synchronized (this) {
+            dropped = new HashMap<GerritTriggeredEvent, Pending>(pending);
+            pending.clear();
+        }
+        for (Pending p : dropped.values()) {
+            if (p.future != null) {
+                p.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Sends the notification when a window ends.
+     */
+    interface Sender {
+        /**
+         * Sends a build started notification.
+         *
+         * @param build     the latest build that started.
+         * @param listener  its listener.
+         * @param event     the event.
+         * @param stats     the latest started stats.
+         * @param triggered when the first build in the window started.
+         */
+        void send(Run build, TaskListener listener, GerritTriggeredEvent event, BuildsStartedStats stats,
+                  long triggered);
+    }
+
+    /**
+     * The latest notification for an event within a window.
+     */
+    private static final class Pending {
+        private final List<Run> builds = new ArrayList<Run>();
+        private Run build;
+        private TaskListener listener;
+        private BuildsStartedStats stats;
+        private long triggered;
+        private ScheduledFuture<?> future;
+    }
+}
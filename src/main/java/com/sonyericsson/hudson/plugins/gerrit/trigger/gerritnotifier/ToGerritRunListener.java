@@ -30,6 +30,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.Build
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritCause;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyQueueTaskDispatcher;
 
 import hudson.EnvVars;
 import hudson.Extension;
@@ -161,6 +162,10 @@ public final class ToGerritRunListener extends RunListener<Run> {
                 updateTriggerContexts(r);
                 allBuildsCompleted(event, cause, listener);
             }
+            DependencyQueueTaskDispatcher dependencyDispatcher = DependencyQueueTaskDispatcher.getInstance();
+            if (dependencyDispatcher != null) {
+                dependencyDispatcher.onDependencyCompleted(event, r.getParent());
+            }
         }
     }
 
@@ -412,6 +417,39 @@ public final class ToGerritRunListener extends RunListener<Run> {
         }
     }
 
+    /**
+     * Gets the remembered decision if the project is interested in the event.
+     *
+     * @param project the project.
+     * @param event the event.
+     * @return the decision or null if none is remembered.
+     *
+     * @see BuildMemory#getInterestingDecision(GerritTriggeredEvent, Job)
+     */
+    @CheckForNull
+    public Boolean getInterestingDecision(Job project, GerritTriggeredEvent event) {
+        if (project == null || event == null) {
+            return null;
+        } else {
+            return memory.getInterestingDecision(event, project);
+        }
+    }
+
+    /**
+     * Remembers if the project is interested in the event for as long as the event is in memory.
+     *
+     * @param project the project.
+     * @param event the event.
+     * @param interesting the decision.
+     *
+     * @see BuildMemory#setInterestingDecision(GerritTriggeredEvent, Job, boolean)
+     */
+    public void setInterestingDecision(Job project, GerritTriggeredEvent event, boolean interesting) {
+        if (project != null && event != null) {
+            memory.setInterestingDecision(event, project, interesting);
+        }
+    }
+
     /**
      * Sets the memory of the project to buildCompleted. Used when the entry is canceled in the Queue.
      *
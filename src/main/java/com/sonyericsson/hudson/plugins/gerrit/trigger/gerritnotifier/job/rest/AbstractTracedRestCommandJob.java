@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest;
+
+import com.google.gson.Gson;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.TracedJob;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Change;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.ReviewInput;
+import com.sonymobile.tools.gerrit.gerritevents.workers.rest.AbstractRestCommandJob;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A REST command job that posts the review itself instead of leaving it to {@link AbstractRestCommandJob},
+ * so that the response is seen.
+ * The trace is marked acknowledged or failed depending on the response.
+ * HTTP 429 or 503 makes the {@link SendRateLimiter} back off from the server, and the same review is queued
+ * on the {@link PrioritizedSendQueue} again when the Retry-After has passed, up to {@link #MAX_ATTEMPTS} times.
+ */
+public abstract class AbstractTracedRestCommandJob extends AbstractRestCommandJob implements TracedJob {
+
+    /**
+     * How many times a review is posted before it is given up when Gerrit keeps asking us to come back later.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int MAX_ATTEMPTS =
+            Integer.getInteger(AbstractTracedRestCommandJob.class.getName() + ".maxAttempts", 5);
+    /**
+     * How long to wait before posting again when Gerrit is busy and doesn't say for how long.
+     */
+    static final long DEFAULT_RETRY_AFTER = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractTracedRestCommandJob.class);
+    private static final Gson GSON = new Gson();
+
+    private final IGerritHudsonTriggerConfig config;
+    private final PrintStream altLogger;
+    private NotificationTrace trace;
+    private ReviewInput review;
+    private int attempts;
+
+    /**
+     * Constructor.
+     *
+     * @param config    config
+     * @param altLogger alternative logger, e.g. the build log, can be null.
+     * @param event     event
+     */
+    protected AbstractTracedRestCommandJob(IGerritHudsonTriggerConfig config, PrintStream altLogger,
+                                           ChangeBasedEvent event) {
+        super(config, altLogger, event);
+        this.config = config;
+        this.altLogger = altLogger;
+    }
+
+    @Override
+    public NotificationTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    public void setTrace(NotificationTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * The lane the job is queued in.
+     *
+     * @return the lane.
+     */
+    protected abstract Lane getLane();
+
+    /**
+     * Posts the review and records the outcome in the trace.
+     * The review is only created the first time, a retry posts the same review again.
+     */
+    @Override
+    public void run() {
+        if (review == null) {
+            review = createReview();
+        }
+        attempts++;
+        boolean accepted = false;
+        long retryAfter = -1;
+        try {
+            CloseableHttpResponse response = HttpUtils.performHTTPPost(config, getReviewUrl(), GSON.toJson(review));
+            try {
+                int status = response.getStatusLine().getStatusCode();
+                if (status == HttpURLConnection.HTTP_OK) {
+                    accepted = true;
+                } else {
+                    logError("Gerrit response: " + response.getStatusLine().getReasonPhrase(), null);
+                    if (status == SendRateLimiter.HTTP_TOO_MANY_REQUESTS
+                            || status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                        retryAfter = getRetryAfter(response);
+                    }
+                }
+                EntityUtils.consume(response.getEntity());
+            } finally {
+                response.close();
+            }
+        } catch (IOException e) {
+            logError("Failed to submit result to Gerrit", e);
+        }
+        if (retryAfter > 0 && queueAgain(retryAfter)) {
+            return;
+        }
+        if (trace != null) {
+            if (accepted) {
+                trace.markAcked();
+            } else {
+                trace.markFailed();
+            }
+        }
+    }
+
+    /**
+     * How long Gerrit asks us to wait, making the {@link SendRateLimiter} hold back other commands to the server.
+     *
+     * @param response the 429 or 503 response.
+     * @return milliseconds to wait.
+     */
+    private long getRetryAfter(CloseableHttpResponse response) {
+        if (event.getProvider() != null) {
+            SendRateLimiter.getInstance().backOff(event.getProvider().getName(), response);
+        }
+        long retryAfter = SendRateLimiter.getRetryAfter(response, System.currentTimeMillis());
+        if (retryAfter <= 0) {
+            retryAfter = DEFAULT_RETRY_AFTER;
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Queues this job again after the delay, unless it has been posted too many times.
+     *
+     * @param delay milliseconds to wait.
+     * @return true if queued.
+     */
+    private boolean queueAgain(long delay) {
+        if (attempts >= MAX_ATTEMPTS || event.getProvider() == null) {
+            logError("Giving up on the review after " + attempts + " attempts", null);
+            return false;
+        }
+        try {
+            PrioritizedSendQueue.getInstance().queueLater(getLane(), event.getProvider().getName(), config, this,
+                    delay);
+        } catch (RejectedExecutionException e) {
+            logError("Could not queue the review again", e);
+            return false;
+        }
+        logger.info("Gerrit is busy, posting the review again in {} ms", delay);
+        if (altLogger != null) {
+            altLogger.println("Gerrit is busy, posting the review again in " + delay + " ms");
+        }
+        return true;
+    }
+
+    /**
+     * The review endpoint of the patch set of the event.
+     *
+     * @return the URL.
+     * @throws UnsupportedEncodingException if UTF-8 is missing.
+     */
+    String getReviewUrl() throws UnsupportedEncodingException {
+        String frontEndUrl = config.getGerritFrontEndUrl();
+        if (!frontEndUrl.endsWith("/")) {
+            frontEndUrl = frontEndUrl + "/";
+        }
+        Change change = event.getChange();
+        String changeId = URLEncoder.encode(change.getProject(), "UTF-8")
+                + "~" + URLEncoder.encode(change.getBranch(), "UTF-8")
+                + "~" + change.getId();
+        return frontEndUrl + "a/changes/" + changeId + "/revisions/" + event.getPatchSet().getRevision() + "/review";
+    }
+
+    /**
+     * Logs an error to the log and the alternative logger.
+     *
+     * @param message the message.
+     * @param e       the cause, can be null.
+     */
+    private void logError(String message, Exception e) {
+        logger.error(message, e);
+        if (altLogger != null) {
+            altLogger.println("ERROR " + message);
+        }
+    }
+}
@@ -26,17 +26,19 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Config;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
-import com.sonymobile.tools.gerrit.gerritevents.workers.rest.AbstractRestCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Constants;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.GerritMessageProvider;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.MessageProviderInvoker;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ParameterExpander;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.CommentedFile;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.ReviewInput;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.ReviewLabel;
 
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.security.ACL;
 
@@ -51,7 +53,7 @@ import org.acegisecurity.context.SecurityContextHolder;
 * A job for the {@link com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue} that
 * sends a build completed message.
 */
-public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
+public class BuildCompletedRestCommandJob extends AbstractTracedRestCommandJob {
 
     private final BuildMemory.MemoryImprint memoryImprint;
     private final TaskListener listener;
@@ -75,6 +77,11 @@ public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
         this.config = config;
     }
 
+    @Override
+    protected Lane getLane() {
+        return Lane.COMPLETED;
+    }
+
     @Override
     protected ReviewInput createReview() {
         SecurityContext old = ACL.impersonate(ACL.SYSTEM);
@@ -102,19 +109,20 @@ public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
             Notify notificationLevel = parameterExpander.getHighestNotificationLevel(memoryImprint, true);
             List<GerritMessageProvider> gerritMessageProviders = GerritMessageProvider.all();
             Collection<CommentedFile> commentedFiles = new ArrayList<CommentedFile>();
-            if (gerritMessageProviders != null) {
-                for (GerritMessageProvider gerritMessageProvider : gerritMessageProviders) {
-                    for (BuildMemory.MemoryImprint.Entry e : memoryImprint.getEntries()) {
-                        try {
-                            commentedFiles.addAll(gerritMessageProvider.getFileComments(e.getBuild()));
-                        } catch (Exception ef) {
-                            listener.error(ef.getMessage());
-
-                        }
+            if (gerritMessageProviders != null && !gerritMessageProviders.isEmpty()) {
+                List<Run> builds = new ArrayList<Run>();
+                for (BuildMemory.MemoryImprint.Entry e : memoryImprint.getEntries()) {
+                    if (e.getBuild() != null) {
+                        builds.add(e.getBuild());
                     }
                 }
+                commentedFiles = MessageProviderInvoker.getInstance()
+                        .getFileComments(gerritMessageProviders, builds, listener);
             }
 
+            if (getTrace() != null) {
+                getTrace().markSent();
+            }
             return new ReviewInput(message, scoredLabels, commentedFiles).setNotify(notificationLevel)
                 .setTag(Constants.TAG_VALUE);
         } finally {
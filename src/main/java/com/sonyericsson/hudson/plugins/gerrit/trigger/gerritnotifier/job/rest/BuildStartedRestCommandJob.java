@@ -25,10 +25,10 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest;
 
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
-import com.sonymobile.tools.gerrit.gerritevents.workers.rest.AbstractRestCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Constants;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ParameterExpander;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
@@ -40,7 +40,7 @@ import hudson.model.TaskListener;
  * A job for the {@link com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue} that
  * sends a build started message.
  */
-public class BuildStartedRestCommandJob extends AbstractRestCommandJob {
+public class BuildStartedRestCommandJob extends AbstractTracedRestCommandJob {
 
     private final Run build;
     private final BuildsStartedStats stats;
@@ -71,6 +71,11 @@ public class BuildStartedRestCommandJob extends AbstractRestCommandJob {
      *
      * @return ReviewInput
      */
+    @Override
+    protected Lane getLane() {
+        return Lane.STARTED;
+    }
+
     @Override
     protected ReviewInput createReview() {
         String message = parameterExpander.getBuildStartedMessage(build, listener, event, stats);
@@ -79,7 +84,9 @@ public class BuildStartedRestCommandJob extends AbstractRestCommandJob {
         if (trigger != null) {
             notificationLevel = parameterExpander.getNotificationLevel(trigger);
         }
+        if (getTrace() != null) {
+            getTrace().markSent();
+        }
         return new ReviewInput(message).setNotify(notificationLevel).setTag(Constants.TAG_VALUE);
     }
-
 }
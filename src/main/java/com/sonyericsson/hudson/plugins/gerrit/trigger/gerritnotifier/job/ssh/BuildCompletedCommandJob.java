@@ -32,6 +32,8 @@ import com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJ
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.GerritNotifier;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationFactory;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.TracedJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory;
 
 import hudson.model.TaskListener;
@@ -42,10 +44,11 @@ import hudson.security.ACL;
  *
  * @author Robert Sandell &lt;robert.sandell@sonyericsson.com&gt;
  */
-public class BuildCompletedCommandJob extends AbstractSendCommandJob {
+public class BuildCompletedCommandJob extends AbstractSendCommandJob implements TracedJob {
 
     private BuildMemory.MemoryImprint memoryImprint;
     private TaskListener listener;
+    private NotificationTrace trace;
 
     /**
      * Standard constructor with all the needed data for the job to perform.
@@ -73,4 +76,35 @@ public class BuildCompletedCommandJob extends AbstractSendCommandJob {
             SecurityContextHolder.setContext(old);
         }
     }
+
+    @Override
+    public NotificationTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    public void setTrace(NotificationTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Sends the command, recording when it was sent and acknowledged in the trace.
+     *
+     * @param command the command.
+     * @return true if successful.
+     */
+    @Override
+    public boolean sendCommand(String command) {
+        if (trace == null) {
+            return super.sendCommand(command);
+        }
+        trace.markSent();
+        boolean success = super.sendCommand(command);
+        if (success) {
+            trace.markAcked();
+        } else {
+            trace.markFailed();
+        }
+        return success;
+    }
 }
@@ -45,6 +45,7 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -352,6 +353,42 @@ public class BuildMemory {
         }
     }
 
+    /**
+     * Gets the remembered decision if the project is interested in the event,
+     * as previously evaluated by {@link GerritTrigger#isInteresting(GerritTriggeredEvent)}.
+     * The decision is forgotten together with the memory of the event.
+     *
+     * @param event   the event.
+     * @param project the project.
+     * @return the decision, or null if none is remembered.
+     * @see #setInterestingDecision(GerritTriggeredEvent, Job, boolean)
+     */
+    @CheckForNull
+    public synchronized Boolean getInterestingDecision(@Nonnull GerritTriggeredEvent event, @Nonnull Job project) {
+        MemoryImprint pb = memory.get(event);
+        if (pb == null) {
+            return null;
+        } else {
+            return pb.getInterestingDecision(project.getFullName());
+        }
+    }
+
+    /**
+     * Remembers if the project is interested in the event for as long as the event is in memory.
+     * Nothing is remembered if the event is not in memory.
+     *
+     * @param event       the event.
+     * @param project     the project.
+     * @param interesting the decision.
+     */
+    public synchronized void setInterestingDecision(@Nonnull GerritTriggeredEvent event, @Nonnull Job project,
+                                                    boolean interesting) {
+        MemoryImprint pb = memory.get(event);
+        if (pb != null) {
+            pb.setInterestingDecision(project.getFullName(), interesting);
+        }
+    }
+
     /**
      * Checks in memory if the project is building the event.
      *
@@ -500,6 +537,7 @@ public class BuildMemory {
 
         private GerritTriggeredEvent event;
         private List<Entry> list = new ArrayList<Entry>();
+        private Map<String, Boolean> interesting;
 
         /**
          * Constructor.
@@ -590,6 +628,9 @@ public class BuildMemory {
          * @param project the project to removeProject.
          */
         private synchronized void removeProject(String project) {
+            if (interesting != null) {
+                interesting.remove(project);
+            }
             Iterator<Entry> iterator = list.iterator();
             while (iterator.hasNext()) {
                 Entry entry = iterator.next();
@@ -679,6 +720,32 @@ public class BuildMemory {
             return str.toString();
         }
 
+        /**
+         * The remembered decision if the project is interested in the event.
+         *
+         * @param project the full name of the project.
+         * @return the decision or null if none is remembered.
+         */
+        private synchronized Boolean getInterestingDecision(String project) {
+            if (interesting == null) {
+                return null;
+            }
+            return interesting.get(project);
+        }
+
+        /**
+         * Remembers if the project is interested in the event.
+         *
+         * @param project  the full name of the project.
+         * @param decision the decision.
+         */
+        private synchronized void setInterestingDecision(String project, boolean decision) {
+            if (interesting == null) {
+                interesting = new HashMap<String, Boolean>();
+            }
+            interesting.put(project, decision);
+        }
+
         /**
          * Searches the internal list for an entry with the specified project.
          *
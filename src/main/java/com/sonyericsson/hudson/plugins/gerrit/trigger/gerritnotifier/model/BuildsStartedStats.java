@@ -26,6 +26,10 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model;
 
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import hudson.model.Run;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Bean for holding statistics of started builds for a specific event.
@@ -35,6 +39,7 @@ public class BuildsStartedStats {
     private GerritTriggeredEvent event;
     private int totalBuildsToStart;
     private int startedBuilds;
+    private List<Run> coalescedBuilds = Collections.emptyList();
 
     /**
      * The Constructor.
@@ -96,6 +101,22 @@ public class BuildsStartedStats {
         this.totalBuildsToStart = totalBuildsToStart;
     }
 
+    /**
+     * The other builds that started within the same coalescing window and are reported together with this one.
+     * @return the other builds, empty if the notification is not coalesced.
+     */
+    public List<Run> getCoalescedBuilds() {
+        return coalescedBuilds;
+    }
+
+    /**
+     * The other builds that started within the same coalescing window and are reported together with this one.
+     * @param coalescedBuilds the other builds.
+     */
+    public void setCoalescedBuilds(List<Run> coalescedBuilds) {
+        this.coalescedBuilds = coalescedBuilds;
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder("(");
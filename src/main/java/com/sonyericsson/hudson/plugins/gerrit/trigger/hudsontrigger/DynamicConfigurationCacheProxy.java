@@ -1,54 +1,107 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritDynamicUrlProcessor.FetchResult;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
-import hudson.util.TimeUnit2;
+import hudson.Util;
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Keeps map between url and dynamic trigger configuration.
  * It's used to speed up execution time during updating
  * trigger jobs and reduce number of connections for the duplicated configs.
+ *
+ * Each url is fetched by one thread at a time, with a conditional request when the server sent validators.
+ * The cache has no schedule of its own, the urls of registered triggers are refreshed by {@link GerritTriggerTimer}
+ * through {@link #refresh(String)}, so that each url has only one schedule.
+ *
+ * The last parsed configuration of each url is stored with its validators, so after a restart triggers
+ * get their projects without fetching, and the first fetch is a conditional request that is rarely parsed.
  */
 final class DynamicConfigurationCacheProxy {
-    private static final DynamicConfigurationCacheProxy CACHE_PROXY = new DynamicConfigurationCacheProxy();
-    private final Map<String, List<GerritProject>> cache = new HashMap<String, List<GerritProject>>();
+    /**
+     * The directory in JENKINS_HOME where the parsed configurations are stored.
+     */
+    static final String STORAGE_DIRECTORY = "gerrit-trigger-dynamic-configs";
     private static final Logger logger = LoggerFactory.getLogger(DynamicConfigurationCacheProxy.class);
-    private final Map<String, Long> ttl = new HashMap<String, Long>();
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+    private final File storageDirectory;
 
     /**
-     * Private constructor.
+     * Constructor.
+     *
+     * @param storageDirectory where to store the parsed configurations, null to not store them.
      */
-    private DynamicConfigurationCacheProxy() {
+    DynamicConfigurationCacheProxy(@CheckForNull File storageDirectory) {
+        this.storageDirectory = storageDirectory;
     }
 
     /**
-     * Returns dynamic trigger config from the cache if it's available.
-     * Otherwise send query.
+     * Fetches the dynamic trigger config now, conditionally if it has been fetched before.
      *
      * @param url url to dynamic trigger config.
      * @return list of gerrit projects.
      * @throws IOException if so.
      * @throws ParseException if so.
      */
-    synchronized List<GerritProject> fetchThroughCache(String url) throws IOException, ParseException {
-        if (cache.containsKey(url) && !isExpired(url)) {
-            logger.debug("Get dynamic projects from cache for URL: " + url);
-            return cache.get(url);
+    List<GerritProject> refresh(String url) throws IOException, ParseException {
+        return getEntry(url).refresh();
+    }
+
+    /**
+     * Forgets the dynamic trigger config of a url that is no longer used, including the stored one.
+     *
+     * @param url url to dynamic trigger config.
+     */
+    void remove(String url) {
+        Entry entry = cache.remove(url);
+        if (entry == null) {
+            entry = new Entry(url);
         }
+        entry.delete();
+    }
 
-        logger.info("Get dynamic projects directly for URL: {}", url);
-        List<GerritProject> gerritProjects = GerritDynamicUrlProcessor.fetch(url);
-        ttl.put(url, System.currentTimeMillis());
-        cache.put(url, gerritProjects);
+    /**
+     * Returns the dynamic trigger config that is cached or was stored by an earlier run, without fetching it.
+     *
+     * @param url url to dynamic trigger config.
+     * @return list of gerrit projects, or null if there is none yet.
+     */
+    @CheckForNull
+    List<GerritProject> getWithoutFetching(String url) {
+        if (StringUtils.isEmpty(url)) {
+            return null;
+        }
+        return getEntry(url).peek();
+    }
 
-        return gerritProjects;
+    /**
+     * Gets or creates the cache entry of a url.
+     *
+     * @param url the url.
+     * @return the entry.
+     */
+    private Entry getEntry(String url) {
+        Entry entry = cache.get(url);
+        if (entry == null) {
+            Entry created = new Entry(url);
+            entry = cache.putIfAbsent(url, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
     }
 
     /**
@@ -57,30 +110,244 @@ final class DynamicConfigurationCacheProxy {
      * @return cache proxy object.
      */
     static DynamicConfigurationCacheProxy getInstance() {
-        return CACHE_PROXY;
+        return Holder.CACHE_PROXY;
     }
 
     /**
-     * Check the need to update specified url.
+     * Creates the global cache proxy when it is first used.
+     */
+    private static final class Holder {
+        private static final DynamicConfigurationCacheProxy CACHE_PROXY =
+                new DynamicConfigurationCacheProxy(getStorageDirectory());
+
+        /**
+         * Utility class.
+         */
+        private Holder() {
+        }
+    }
+
+    /**
+     * The directory in JENKINS_HOME where the parsed configurations are stored.
      *
-     * @param url url.
-     * @return true if cached value is expired.
+     * @return the directory, or null if Jenkins is not running.
      */
-    private boolean isExpired(String url) {
-        Long lastTimeUpdated = ttl.get(url);
-        if (lastTimeUpdated == null) {
-            lastTimeUpdated = System.currentTimeMillis();
+    @CheckForNull
+    private static File getStorageDirectory() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
         }
+        return new File(jenkins.getRootDir(), STORAGE_DIRECTORY);
+    }
 
-        long updateInterval = GerritTriggerTimer.getInstance().calculateAverageDynamicConfigRefreshInterval();
-        return TimeUnit2.MILLISECONDS.toSeconds(System.currentTimeMillis() - lastTimeUpdated) > updateInterval;
+    /**
+     * The file a configuration is stored in.
+     *
+     * @param url the url of the configuration.
+     * @return the file, or null if configurations are not stored.
+     */
+    @CheckForNull
+    private XmlFile getStorageFile(String url) {
+        if (storageDirectory == null) {
+            return null;
+        }
+        return new XmlFile(Jenkins.XSTREAM, new File(storageDirectory, Util.getDigestOf(url) + ".xml"));
     }
 
     /**
      * Clears the cache.
      */
     void clear() {
-        ttl.clear();
         cache.clear();
     }
+
+    /**
+     * The cached configuration of one url.
+     */
+    private final class Entry {
+        private final String url;
+        private volatile List<GerritProject> projects;
+        private boolean revalidated;
+        private boolean deleted;
+        private String etag;
+        private String lastModified;
+        /**
+         * Guards reading the stored configuration, never held while fetching.
+         */
+        private final Object storedLock = new Object();
+        private boolean storedRead;
+        private StoredConfiguration stored;
+
+        /**
+         * Standard constructor.
+         *
+         * @param url the url.
+         */
+        Entry(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Fetches the configuration now, loading the stored configuration first if this is the first fetch.
+         *
+         * @return the projects.
+         * @throws IOException if so.
+         * @throws ParseException if so.
+         */
+        synchronized List<GerritProject> refresh() throws IOException, ParseException {
+            if (!revalidated) {
+                restore();
+            }
+            logger.debug("Refreshing dynamic projects for URL: {}", url);
+            fetch();
+            return projects;
+        }
+
+        /**
+         * Fetches the configuration, sending the validators of the last fetch. Only called when holding the lock.
+         *
+         * @throws IOException if so.
+         * @throws ParseException if so.
+         */
+        private void fetch() throws IOException, ParseException {
+            FetchResult result = GerritDynamicUrlProcessor.fetchIfModified(url, etag, lastModified);
+            boolean modified = result.getProjects() != null;
+            if (modified || projects == null) {
+                projects = result.getProjects();
+            }
+            etag = result.getEtag();
+            lastModified = result.getLastModified();
+            revalidated = true;
+            if (modified) {
+                store();
+            }
+        }
+
+        /**
+         * The cached configuration or, if nothing is cached yet, the stored one.
+         * Does not wait for a fetch in progress.
+         *
+         * @return the projects, or null if there are none.
+         */
+        @CheckForNull
+        List<GerritProject> peek() {
+            List<GerritProject> current = projects;
+            if (current != null) {
+                return current;
+            }
+            StoredConfiguration configuration = readStored();
+            if (configuration == null) {
+                return null;
+            }
+            return configuration.projects;
+        }
+
+        /**
+         * Loads the stored configuration with its validators if nothing is cached yet.
+         * Only called when holding the lock.
+         */
+        private void restore() {
+            if (projects != null) {
+                return;
+            }
+            StoredConfiguration configuration = readStored();
+            if (configuration != null) {
+                logger.debug("Restored dynamic projects for URL: {}", url);
+                etag = configuration.etag;
+                lastModified = configuration.lastModified;
+                projects = configuration.projects;
+            }
+        }
+
+        /**
+         * Reads the stored configuration the first time it is asked for.
+         *
+         * @return the stored configuration, or null if there is none.
+         */
+        @CheckForNull
+        private StoredConfiguration readStored() {
+            synchronized (storedLock) {
+                if (!storedRead) {
+                    storedRead = true;
+                    stored = load();
+                }
+                return stored;
+            }
+        }
+
+        /**
+         * Reads the stored configuration from disk.
+         *
+         * @return the stored configuration, or null if there is none or it could not be read.
+         */
+        @CheckForNull
+        private StoredConfiguration load() {
+            XmlFile file = getStorageFile(url);
+            if (file == null || !file.exists()) {
+                return null;
+            }
+            try {
+                Object read = file.read();
+                if (read instanceof StoredConfiguration && url.equals(((StoredConfiguration)read).url)) {
+                    return (StoredConfiguration)read;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read the stored dynamic trigger configuration {}", file, e);
+            }
+            return null;
+        }
+
+        /**
+         * Stores the configuration, unless it has been deleted. Only called when holding the lock.
+         */
+        private void store() {
+            XmlFile file = getStorageFile(url);
+            if (file == null || deleted) {
+                return;
+            }
+            try {
+                file.write(new StoredConfiguration(url, etag, lastModified, projects));
+            } catch (IOException e) {
+                logger.warn("Could not store the dynamic trigger configuration {}", url, e);
+            }
+        }
+
+        /**
+         * Deletes the stored configuration, after a fetch in progress, and stops storing it.
+         */
+        synchronized void delete() {
+            deleted = true;
+            XmlFile file = getStorageFile(url);
+            if (file != null && file.exists() && !file.getFile().delete()) {
+                logger.warn("Could not delete the stored dynamic trigger configuration {}", file);
+            }
+        }
+    }
+
+    /**
+     * A parsed configuration with its validators as stored on disk.
+     */
+    static final class StoredConfiguration {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final List<GerritProject> projects;
+
+        /**
+         * Standard constructor.
+         *
+         * @param url the url.
+         * @param etag the ETag of the fetch, or null.
+         * @param lastModified the Last-Modified of the fetch, or null.
+         * @param projects the parsed projects.
+         */
+        StoredConfiguration(String url, @CheckForNull String etag, @CheckForNull String lastModified,
+                            List<GerritProject> projects) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.projects = projects;
+        }
+    }
 }
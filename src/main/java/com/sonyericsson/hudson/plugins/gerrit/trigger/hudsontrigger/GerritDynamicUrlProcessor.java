@@ -35,10 +35,12 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -66,6 +68,10 @@ public final class GerritDynamicUrlProcessor {
     private static final String SHORTNAME_FILE = "f";
     private static final String SHORTNAME_FORBIDDEN_FILE = "o";
     private static final int SOCKET_READ_TIMEOUT = 10000;
+    /**
+     * The pattern every line of a configuration must match, compiled once.
+     */
+    private static final Pattern LINE_PATTERN = buildLinePattern();
 
     /**
      * Private constructor.
@@ -136,8 +142,6 @@ public final class GerritDynamicUrlProcessor {
      */
     private static List<GerritProject> readAndParseTriggerConfig(BufferedReader reader)
             throws IOException, ParseException {
-      Pattern linePattern = buildLinePattern();
-
       List<GerritProject> dynamicGerritProjects = new ArrayList<GerritProject>();
       List<Branch> branches = null;
       List<Topic> topics = null;
@@ -167,7 +171,7 @@ public final class GerritDynamicUrlProcessor {
           continue;
         }
 
-        Matcher matcher = linePattern.matcher(line);
+        Matcher matcher = LINE_PATTERN.matcher(line);
         if (!matcher.matches()) {
           throw new ParseException("Line " + lineNr + ": cannot parse '" + line + "'", lineNr);
         }
@@ -236,16 +240,33 @@ public final class GerritDynamicUrlProcessor {
 
     /**
      * This is where the actual fetching is done. If everything goes well,
-     * it returns a list of GerritProjects. If the fetched content hasn't changed
-     * since the last fetch, it returns null.
+     * it returns a list of GerritProjects.
      *
      * @param gerritTriggerConfigUrl the URL to fetch
-     * @return a list of GerritProjects if successful, or null if no change
+     * @return a list of GerritProjects
      * @throws ParseException when the fetched content couldn't be parsed
      * @throws IOException for all other kinds of fetch errors
+     * @see #fetchIfModified(String, String, String)
      */
     public static List<GerritProject> fetch(String gerritTriggerConfigUrl)
             throws IOException, ParseException {
+        return fetchIfModified(gerritTriggerConfigUrl, null, null).getProjects();
+    }
+
+    /**
+     * Fetches the URL with a conditional request if validators from an earlier fetch are given.
+     * If the server tells the content has not changed, nothing is read or parsed and the result has no projects.
+     *
+     * @param gerritTriggerConfigUrl the URL to fetch
+     * @param etag the ETag of the last fetch, or null
+     * @param lastModified the Last-Modified of the last fetch, or null
+     * @return the result, with the projects or null if the content is not modified
+     * @throws ParseException when the fetched content couldn't be parsed
+     * @throws IOException for all other kinds of fetch errors
+     */
+    public static FetchResult fetchIfModified(String gerritTriggerConfigUrl,
+                                              @CheckForNull String etag, @CheckForNull String lastModified)
+            throws IOException, ParseException {
 
         if (gerritTriggerConfigUrl == null) {
           throw new MalformedURLException("The gerritTriggerConfigUrl is null");
@@ -259,13 +280,27 @@ public final class GerritDynamicUrlProcessor {
         URLConnection connection = url.openConnection();
         connection.setReadTimeout(SOCKET_READ_TIMEOUT);
         connection.setDoInput(true);
+        if (connection instanceof HttpURLConnection) {
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            if (((HttpURLConnection)connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                logger.debug("Dynamic trigger configuration {} is not modified", gerritTriggerConfigUrl);
+                ((HttpURLConnection)connection).disconnect();
+                return new FetchResult(null, etag, lastModified);
+            }
+        }
 
         InputStream instream = null;
         BufferedReader reader = null;
         try {
           instream = connection.getInputStream();
           reader = new BufferedReader(new InputStreamReader(instream, Charset.forName("UTF-8")));
-          return readAndParseTriggerConfig(reader);
+          return new FetchResult(readAndParseTriggerConfig(reader),
+                  connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
         } finally {
             try {
                 if (reader != null) {
@@ -278,4 +313,57 @@ public final class GerritDynamicUrlProcessor {
             }
         }
     }
+
+    /**
+     * The result of a conditional fetch.
+     */
+    public static final class FetchResult {
+        private final List<GerritProject> projects;
+        private final String etag;
+        private final String lastModified;
+
+        /**
+         * Standard constructor.
+         *
+         * @param projects the fetched projects, or null if not modified
+         * @param etag the ETag to send with the next fetch, or null
+         * @param lastModified the Last-Modified to send with the next fetch, or null
+         */
+        public FetchResult(@CheckForNull List<GerritProject> projects,
+                           @CheckForNull String etag, @CheckForNull String lastModified) {
+            this.projects = projects;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * The fetched projects.
+         *
+         * @return the projects, or null if the content was not modified.
+         */
+        @CheckForNull
+        public List<GerritProject> getProjects() {
+            return projects;
+        }
+
+        /**
+         * The ETag of the fetched content.
+         *
+         * @return the ETag or null if the server did not send one.
+         */
+        @CheckForNull
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * The Last-Modified of the fetched content.
+         *
+         * @return the Last-Modified or null if the server did not send one.
+         */
+        @CheckForNull
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
 }
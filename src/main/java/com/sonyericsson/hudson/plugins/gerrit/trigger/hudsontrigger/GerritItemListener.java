@@ -23,6 +23,7 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyGraph;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ToGerritRunListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +38,8 @@ import hudson.model.listeners.ItemListener;
 
 /**
  * Listens for onDeleted and onLoaded events.
- * If the deleted project has a Gerrit trigger, it will be stopped
+ * If the deleted project has a Gerrit trigger, it will be stopped.
+ * Creating, renaming and deleting jobs also refreshes the {@link DependencyGraph}.
  * If all project have been loaded, start the connections to Gerrit servers.
  * Since this class has no member variables, and doesn't need any
  * initialization, there is no constructor.
@@ -65,6 +67,7 @@ public class GerritItemListener extends ItemListener {
      */
     @Override
     public void onDeleted(Item item) {
+        DependencyGraph.getInstance().invalidate();
         if (item instanceof Job<?, ?>) {
             Job<?, ?> project = (Job<?, ?>)item;
             GerritTrigger gerritTrigger = GerritTrigger.getTrigger(project);
@@ -91,6 +94,7 @@ public class GerritItemListener extends ItemListener {
      */
     @Override
     public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        DependencyGraph.getInstance().invalidate();
         if (item instanceof Job<?, ?>) {
             Job<?, ?> project = (Job<?, ?>)item;
             GerritTrigger gerritTrigger = GerritTrigger.getTrigger(project);
@@ -100,16 +104,31 @@ public class GerritItemListener extends ItemListener {
         }
     }
 
+    /**
+     * A new job can be what a dependency job name now resolves to.
+     *
+     * @param item the created item.
+     */
+    @Override
+    public void onCreated(Item item) {
+        DependencyGraph.getInstance().invalidate();
+    }
+
     /**
      * Called by Jenkins when all items are loaded.
+     * Registers the listeners of all loaded triggers at once before connecting to the servers.
      */
     @Override
     public void onLoaded() {
+        StartupRegistration startup = StartupRegistration.getInstance();
+        startup.registerCollected();
+        long started = System.nanoTime();
         for (GerritServer s : PluginImpl.getServers_()) {
             if (!s.isNoConnectionOnStartup()) {
                 s.startConnection();
             }
         }
+        startup.connectionsStarted(System.nanoTime() - started);
         super.onLoaded();
     }
 }
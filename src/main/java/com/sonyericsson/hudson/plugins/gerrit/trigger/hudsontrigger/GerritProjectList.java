@@ -30,8 +30,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * A sigleton class that keeps list of Jenkin's Gerrit projects.
@@ -52,6 +55,12 @@ public final class GerritProjectList {
      */
     private Map<String, ArrayList<GerritTrigger>> projectList = new HashMap<String, ArrayList<GerritTrigger>>();
 
+    /**
+     * The keys of {@link #projectList} each trigger is added to,
+     * so that removing a trigger does not need to walk the whole list.
+     */
+    private Map<GerritTrigger, Set<String>> keysByTrigger = new IdentityHashMap<GerritTrigger, Set<String>>();
+
     /**
      * A private Constructor prevents any other class from instantiating.
      */
@@ -87,24 +96,24 @@ public final class GerritProjectList {
      */
     public static void removeTriggerFromProjectList(GerritTrigger trigger) {
         GerritProjectList inst = getInstance();
-        Iterator entries = inst.projectList.entrySet().iterator();
-        while (entries.hasNext()) {
-            Map.Entry entry = (Map.Entry)entries.next();
-            String projectName = (String)entry.getKey();
-            ArrayList<GerritTrigger> triggers = (ArrayList<GerritTrigger>)entry.getValue();
-            if (triggers == null || projectName == null || projectName.isEmpty()) {
+        Set<String> keys = inst.keysByTrigger.remove(trigger);
+        if (keys == null) {
+            return;
+        }
+        for (String projectName : keys) {
+            ArrayList<GerritTrigger> triggers = inst.projectList.get(projectName);
+            if (triggers == null || projectName.isEmpty()) {
                 logger.warn("Invalid parameters: Triggers: " + triggers + " ProjectName: " + projectName);
                 continue;
             }
 
-            for (Iterator i = triggers.iterator(); i.hasNext();) {
-                GerritTrigger trig = (GerritTrigger)i.next();
-                if (trig == trigger) {
+            for (Iterator<GerritTrigger> i = triggers.iterator(); i.hasNext();) {
+                if (i.next() == trigger) {
                    i.remove();
                 }
             }
-            if (triggers == null || triggers.isEmpty()) {
-                entries.remove();
+            if (triggers.isEmpty()) {
+                inst.projectList.remove(projectName);
             }
         }
     }
@@ -122,6 +131,12 @@ public final class GerritProjectList {
                 inst.projectList.put(key, new ArrayList<GerritTrigger>());
             }
             inst.projectList.get(key).add(trigger);
+            Set<String> keys = inst.keysByTrigger.get(trigger);
+            if (keys == null) {
+                keys = new HashSet<String>();
+                inst.keysByTrigger.put(trigger, keys);
+            }
+            keys.add(key);
         }
     }
 
@@ -124,6 +124,7 @@ import org.kohsuke.stapler.QueryParameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -173,6 +174,10 @@ public class GerritTrigger extends Trigger<Job> {
     private boolean dynamicTriggerConfiguration;
     private String triggerConfigURL;
 
+    /**
+     * Never used, only kept so that configurations saved with it still load.
+     */
+    @Deprecated
     private GerritTriggerTimerTask gerritTriggerTimerTask;
     private GerritTriggerInformationAction triggerInformationAction;
 
@@ -542,31 +547,28 @@ public class GerritTrigger extends Trigger<Job> {
     }
 
     /**
-     * Cancels the timerTask, if it exists.
+     * Stops refreshing the dynamic trigger configuration of this trigger.
      */
     public void cancelTimer() {
-        if (gerritTriggerTimerTask != null) {
-            String name = "N/A";
-            if (job != null) {
-                name = job.getName();
-            }
-            logger.trace("GerritTrigger.cancelTimer(): {}", name);
-            gerritTriggerTimerTask.cancel();
-            gerritTriggerTimerTask = null;
-        }
+        GerritTriggerTimer.getInstance().unregister(this);
     }
 
     /**
-    * Adds this trigger as listener to the Gerrit server.
+    * Adds this trigger as listener to the Gerrit server,
+    * or leaves it to {@link StartupRegistration} while Jenkins is loading its jobs.
     *
     * @param project the project associated with the trigger.
     */
     private void addThisTriggerAsListener(Job project) {
+        EventListener listener = createListener(project);
+        if (StartupRegistration.getInstance().collect(listener)) {
+            return;
+        }
         PluginImpl plugin = PluginImpl.getInstance();
         if (plugin != null) {
             GerritHandler handler = plugin.getHandler();
             if (handler != null) {
-                handler.addListener(createListener(project));
+                handler.addListener(listener);
             } else {
                 logger.warn("The plugin has no handler instance (BUG)! Project {} will not be triggered!",
                         project.getFullDisplayName());
@@ -598,6 +600,7 @@ public class GerritTrigger extends Trigger<Job> {
     @Override
     public void start(Job project, boolean newInstance) {
         logger.debug("Start project: {}", project);
+        long started = System.nanoTime();
         super.start(project, newInstance);
         initializeServerName();
         initializeTriggerOnEvents();
@@ -607,12 +610,18 @@ public class GerritTrigger extends Trigger<Job> {
             logger.error("I am too early!", e);
         }
 
-        // Create a new timer task if there is a URL
+        // Refresh the configuration together with all triggers using the same URL
         if (dynamicTriggerConfiguration) {
-            gerritTriggerTimerTask = new GerritTriggerTimerTask(this);
+            List<GerritProject> stored = DynamicConfigurationCacheProxy.getInstance()
+                    .getWithoutFetching(triggerConfigURL);
+            if (stored != null) {
+                dynamicGerritProjects = stored;
+            }
+            GerritTriggerTimer.getInstance().register(this);
         }
 
         GerritProjectList.removeTriggerFromProjectList(this);
+        StartupRegistration.getInstance().triggerStarted(System.nanoTime() - started);
     }
 
     @Override
@@ -633,6 +642,9 @@ public class GerritTrigger extends Trigger<Job> {
      * Removes listener from the server.
      */
     private void removeListener() {
+        if (job != null && StartupRegistration.getInstance().discard(createListener())) {
+            return;
+        }
         GerritHandler handler = PluginImpl.getHandler_();
         if (handler != null) {
             if (job != null) {
@@ -1779,51 +1791,58 @@ public class GerritTrigger extends Trigger<Job> {
     }
 
     /**
-     * This method is called by the timer thread at regular intervals. It fetches the URL,
-     * determines if the result is different than from the last fetch, and if so, replaces
-     * the current URL trigger configuration with the fetched one.
+     * Fetches the URL, conditionally if it has been fetched before,
+     * and replaces the current URL trigger configuration with the fetched one.
+     * The periodic refresh is done by {@link GerritTriggerTimer} once per URL for all triggers using it.
      */
     public void updateTriggerConfigURL() {
-        if (triggerInformationAction == null) {
-            triggerInformationAction = new GerritTriggerInformationAction();
-        }
-        triggerInformationAction.setErrorMessage("");
+        List<GerritProject> projects = null;
+        Exception failure = null;
         try {
-            dynamicGerritProjects = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache(triggerConfigURL);
+            projects = DynamicConfigurationCacheProxy.getInstance().refresh(triggerConfigURL);
         } catch (ParseException pe) {
-            String logErrorMessage = MessageFormat.format(
-                    "ParseException for project: {0} and URL: {1} Message: {2}",
-                    job.getName(), triggerConfigURL, pe.getMessage());
-            logger.error(logErrorMessage, pe);
-            String triggerInformationMessage = MessageFormat.format(
-                    "ParseException when fetching dynamic trigger url: {0}", pe.getMessage());
-            triggerInformationAction.setErrorMessage(triggerInformationMessage);
-        } catch (MalformedURLException mue) {
-            String logErrorMessage = MessageFormat.format(
-                    "MalformedURLException for project: {0} and URL: {1} Message: {2}",
-                    job.getName(), triggerConfigURL, mue.getMessage());
-            logger.error(logErrorMessage, mue);
-            String triggerInformationMessage = MessageFormat.format(
-                    "MalformedURLException when fetching dynamic trigger url: {0}", mue.getMessage());
-            triggerInformationAction.setErrorMessage(triggerInformationMessage);
-        } catch (SocketTimeoutException ste) {
-            String logErrorMessage = MessageFormat.format(
-                    "SocketTimeoutException for project: {0} and URL: {1} Message: {2}",
-                    job.getName(), triggerConfigURL, ste.getMessage());
-            logger.error(logErrorMessage, ste);
-            String triggerInformationMessage = MessageFormat.format(
-                    "SocketTimeoutException when fetching dynamic trigger url: {0}", ste.getMessage());
-            triggerInformationAction.setErrorMessage(triggerInformationMessage);
-
+            failure = pe;
         } catch (IOException ioe) {
-            String logErrorMessage = MessageFormat.format(
-                    "IOException for project: {0} and URL: {1} Message: {2}",
-                    job.getName(), triggerConfigURL, ioe.getMessage());
-            logger.error(logErrorMessage, ioe);
-            String triggerInformationMessage = MessageFormat.format(
-                    "IOException when fetching dynamic trigger url: {0}", ioe.getMessage());
-            triggerInformationAction.setErrorMessage(triggerInformationMessage);
+            failure = ioe;
+        }
+        updateTriggerConfigURL(projects, failure);
+    }
+
+    /**
+     * Applies the outcome of fetching the dynamic trigger configuration,
+     * either fetched by this trigger or once for all triggers sharing the URL.
+     *
+     * @param projects the fetched projects, ignored if the fetch failed.
+     * @param failure  why the fetch failed, a {@link ParseException} or an {@link IOException}, null on success.
+     * @see GerritTriggerTimer
+     */
+    /*package*/ void updateTriggerConfigURL(@CheckForNull List<GerritProject> projects,
+                                            @CheckForNull Exception failure) {
+        if (triggerInformationAction == null) {
+            triggerInformationAction = new GerritTriggerInformationAction();
         }
+        triggerInformationAction.setErrorMessage("");
+        if (failure == null) {
+            dynamicGerritProjects = projects;
+            return;
+        }
+        String type;
+        if (failure instanceof ParseException) {
+            type = "ParseException";
+        } else if (failure instanceof MalformedURLException) {
+            type = "MalformedURLException";
+        } else if (failure instanceof SocketTimeoutException) {
+            type = "SocketTimeoutException";
+        } else {
+            type = "IOException";
+        }
+        String logErrorMessage = MessageFormat.format(
+                "{0} for project: {1} and URL: {2} Message: {3}",
+                type, job.getName(), triggerConfigURL, failure.getMessage());
+        logger.error(logErrorMessage, failure);
+        String triggerInformationMessage = MessageFormat.format(
+                "{0} when fetching dynamic trigger url: {1}", type, failure.getMessage());
+        triggerInformationAction.setErrorMessage(triggerInformationMessage);
     }
 
     /**
@@ -25,18 +25,40 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
 import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
+import hudson.model.Job;
 import hudson.util.TimeUnit2;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Manages the timer that is used for each GerritTrigger TimerTask that
- * is active.
+ * Refreshes the dynamic trigger configurations of all active GerritTriggers.
+ *
+ * The triggers are grouped by URL, each URL is fetched once per refresh interval and the result is handed to every
+ * trigger using it. The interval is the shortest one among the servers of those triggers.
+ * A URL without a cached or stored configuration is fetched at once, the first refresh of the other URLs
+ * is delayed by a random part of the interval, so that a restart with many dynamic configurations
+ * does not fetch all of them at the same moment.
  *
  * @author Fredrik Abrahamson &lt;fredrik.abrahamson@sonymobile.com&gt;
  */
@@ -45,7 +67,7 @@ public final class GerritTriggerTimer {
     /**
      * Wait this many milliseconds before the first call to a TimerTask
      */
-    private static final long DELAY_MILLISECONDS  =  5000;
+    static final long DELAY_MILLISECONDS  =  5000;
     private static final Logger logger = LoggerFactory.getLogger(GerritTriggerTimer.class);
 
     /**
@@ -53,12 +75,36 @@ public final class GerritTriggerTimer {
      */
     private static GerritTriggerTimer instance = null;
 
+    private final ScheduledExecutorService scheduler;
+    private final DynamicConfigurationCacheProxy proxy;
+    private final Random random = new Random();
+    /**
+     * The registered triggers and the URL they were registered with. Guarded by this.
+     * Identity based since the old and the new trigger of a reconfigured job are equal.
+     */
+    private final Map<GerritTrigger, String> registeredUrls = new IdentityHashMap<GerritTrigger, String>();
+    /**
+     * The scheduled refresh of each URL. Guarded by this.
+     */
+    private final Map<String, UrlRefresh> refreshes = new HashMap<String, UrlRefresh>();
 
     /**
      * The private constructor (this is a singleton class).
      */
     private GerritTriggerTimer() {
+        this(null, null);
+    }
 
+    /**
+     * Constructor for tests.
+     *
+     * @param scheduler where to schedule the refreshes, null to use {@link jenkins.util.Timer}.
+     * @param proxy the cache of the configurations, null to use {@link DynamicConfigurationCacheProxy#getInstance()}.
+     */
+    GerritTriggerTimer(@CheckForNull ScheduledExecutorService scheduler,
+                       @CheckForNull DynamicConfigurationCacheProxy proxy) {
+        this.scheduler = scheduler;
+        this.proxy = proxy;
     }
 
     /**
@@ -73,55 +119,140 @@ public final class GerritTriggerTimer {
         return instance;
     }
 
-    //CS IGNORE LineLength FOR NEXT 5 LINES. REASON: JavaDoc
+    /**
+     * The scheduler to run the refreshes on.
+     *
+     * @return the scheduler.
+     */
+    private ScheduledExecutorService getScheduler() {
+        if (scheduler != null) {
+            return scheduler;
+        }
+        return jenkins.util.Timer.get();
+    }
 
     /**
-     * Figures out what
-     * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig#getDynamicConfigRefreshInterval()}
-     * to use.
+     * The cache of the configurations.
      *
-     * @param trigger the trigger that needs a refresh interval.
+     * @return the cache.
+     */
+    private DynamicConfigurationCacheProxy getProxy() {
+        if (proxy != null) {
+            return proxy;
+        }
+        return DynamicConfigurationCacheProxy.getInstance();
+    }
+
+    /**
+     * Starts refreshing the dynamic trigger configuration of the trigger,
+     * together with all other triggers using the same URL.
+     * Registering a trigger again moves it to its current URL.
      *
-     * @return the refresh interval in ms.
-     * @see #calculateAverageDynamicConfigRefreshInterval()
-     */
-    private long calculateDynamicConfigRefreshInterval(@Nonnull GerritTrigger trigger) {
-        if (trigger.isAnyServer()) {
-            List<GerritServer> servers = PluginImpl.getServers_();
-            if (servers.isEmpty()) {
-                return GerritDefaultValues.DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL;
-            } else {
-                //Do an average just for giggles
-                return calculateAverageDynamicConfigRefreshInterval();
+     * @param trigger the trigger.
+     */
+    public synchronized void register(@Nonnull GerritTrigger trigger) {
+        unregister(trigger);
+        String url = trigger.getTriggerConfigURL();
+        if (StringUtils.isEmpty(url)) {
+            return;
+        }
+        UrlRefresh refresh = refreshes.get(url);
+        if (refresh == null) {
+            refresh = new UrlRefresh(url);
+            refresh.triggers.add(trigger);
+            if (!refresh.schedule()) {
+                return;
             }
+            refreshes.put(url, refresh);
         } else {
-            //get the actual if it exists.
-            GerritServer server = PluginImpl.getServer_(trigger.getServerName());
-            if (server != null) {
-                return server.getConfig().getDynamicConfigRefreshInterval();
+            refresh.triggers.add(trigger);
+            refresh.reschedule();
+        }
+        registeredUrls.put(trigger, url);
+    }
+
+    /**
+     * Stops refreshing the dynamic trigger configuration of the trigger,
+     * the URL itself is no longer fetched when no other trigger uses it.
+     *
+     * @param trigger the trigger.
+     */
+    public synchronized void unregister(@Nonnull GerritTrigger trigger) {
+        String url = registeredUrls.remove(trigger);
+        if (url == null) {
+            return;
+        }
+        UrlRefresh refresh = refreshes.get(url);
+        if (refresh != null) {
+            refresh.triggers.remove(trigger);
+            if (refresh.triggers.isEmpty()) {
+                logger.debug("No more triggers use the dynamic trigger configuration {}", url);
+                refresh.cancel();
+                refreshes.remove(url);
+                getProxy().remove(url);
             } else {
-                //Do an average just for giggles
-                return calculateAverageDynamicConfigRefreshInterval();
+                refresh.reschedule();
             }
         }
     }
 
+    /**
+     * The number of distinct URLs currently refreshed.
+     *
+     * @return the count.
+     */
+    synchronized int getRefreshedUrlCount() {
+        return refreshes.size();
+    }
+
+    /**
+     * The triggers registered for a URL.
+     *
+     * @param url the URL.
+     * @return a copy of the registered triggers, empty if none.
+     */
+    private synchronized List<GerritTrigger> getTriggers(String url) {
+        UrlRefresh refresh = refreshes.get(url);
+        if (refresh == null) {
+            return new ArrayList<GerritTrigger>();
+        }
+        return new ArrayList<GerritTrigger>(refresh.triggers);
+    }
+
     //CS IGNORE LineLength FOR NEXT 5 LINES. REASON: JavaDoc
 
     /**
-     * Calculates the average
+     * Finds the shortest
      * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig#getDynamicConfigRefreshInterval()}
-     * among the configured GerritServers.
+     * among the servers of the triggers. A trigger for any server, or for a server that is gone, counts all servers.
      *
-     * @return the average value.
+     * @param triggers the triggers that share a refresh interval.
+     *
+     * @return the refresh interval in seconds.
      */
-    long calculateAverageDynamicConfigRefreshInterval() {
-        long total = 0;
-        for (GerritServer server : PluginImpl.getServers_()) {
-            total += server.getConfig().getDynamicConfigRefreshInterval();
+    private long calculateShortestDynamicConfigRefreshInterval(@Nonnull Collection<GerritTrigger> triggers) {
+        long interval = Long.MAX_VALUE;
+        boolean allServers = false;
+        for (GerritTrigger trigger : triggers) {
+            GerritServer server = null;
+            if (!trigger.isAnyServer()) {
+                server = PluginImpl.getServer_(trigger.getServerName());
+            }
+            if (server != null) {
+                interval = Math.min(interval, server.getConfig().getDynamicConfigRefreshInterval());
+            } else {
+                allServers = true;
+            }
+        }
+        if (allServers) {
+            for (GerritServer server : PluginImpl.getServers_()) {
+                interval = Math.min(interval, server.getConfig().getDynamicConfigRefreshInterval());
+            }
         }
-        long average = total / Math.max(1, PluginImpl.getServers_().size()); //Avoid division by 0
-        return Math.max(GerritDefaultValues.MINIMUM_DYNAMIC_CONFIG_REFRESH_INTERVAL, average);
+        if (interval == Long.MAX_VALUE) {
+            return GerritDefaultValues.DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL;
+        }
+        return Math.max(GerritDefaultValues.MINIMUM_DYNAMIC_CONFIG_REFRESH_INTERVAL, interval);
     }
 
     /**
@@ -129,9 +260,12 @@ public final class GerritTriggerTimer {
      *
      * @param trigger the trigger associated with the task
      * @param timerTask the TimerTask to be scheduled
+     * @deprecated use {@link #register(GerritTrigger)}, which fetches each URL only once.
      */
+    @Deprecated
     public void schedule(GerritTriggerTimerTask timerTask, @Nonnull GerritTrigger trigger) {
-        long timerPeriod = TimeUnit2.SECONDS.toMillis(calculateDynamicConfigRefreshInterval(trigger));
+        long timerPeriod = TimeUnit2.SECONDS.toMillis(
+                calculateShortestDynamicConfigRefreshInterval(Collections.singleton(trigger)));
         try {
             logger.debug("Schedule task " + timerTask + " for every " + timerPeriod + "ms");
             jenkins.util.Timer.get().scheduleWithFixedDelay(timerTask, DELAY_MILLISECONDS, timerPeriod,
@@ -142,4 +276,119 @@ public final class GerritTriggerTimer {
             logger.error("Attempted re-use of TimerTask", ise);
         }
     }
+
+    /**
+     * The periodic refresh of one URL.
+     */
+    private final class UrlRefresh implements Runnable {
+        private final String url;
+        private final Set<GerritTrigger> triggers =
+                Collections.newSetFromMap(new IdentityHashMap<GerritTrigger, Boolean>());
+        private ScheduledFuture<?> future;
+        private long period;
+
+        /**
+         * Standard constructor.
+         *
+         * @param url the URL.
+         */
+        UrlRefresh(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Schedules the refresh at the interval of the current triggers. It starts at once if there is
+         * no cached or stored configuration to use meanwhile, else with a random delay within one interval.
+         *
+         * @return true if scheduled.
+         */
+        boolean schedule() {
+            period = TimeUnit2.SECONDS.toMillis(calculateShortestDynamicConfigRefreshInterval(triggers));
+            long delay = 0;
+            if (getProxy().getWithoutFetching(url) != null) {
+                delay = DELAY_MILLISECONDS + (long)(random.nextDouble() * period);
+            }
+            return schedule(delay);
+        }
+
+        /**
+         * Schedules the refresh again if the interval of the current triggers differs from the scheduled one.
+         * The next refresh is not postponed beyond what was scheduled.
+         */
+        void reschedule() {
+            long current = TimeUnit2.SECONDS.toMillis(calculateShortestDynamicConfigRefreshInterval(triggers));
+            if (future == null || current == period) {
+                return;
+            }
+            long delay = Math.max(0, Math.min(current, future.getDelay(TimeUnit.MILLISECONDS)));
+            future.cancel(false);
+            period = current;
+            schedule(delay);
+        }
+
+        /**
+         * Schedules the refresh at the current period.
+         *
+         * @param delay the delay of the first refresh in milliseconds.
+         * @return true if scheduled.
+         */
+        private boolean schedule(long delay) {
+            try {
+                logger.debug("Schedule refresh of {} every {}ms, starting in {}ms", url, period, delay);
+                future = getScheduler().scheduleWithFixedDelay(this, delay, period, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (IllegalArgumentException iae) {
+                logger.error("Attempted use of negative delay", iae);
+            } catch (RejectedExecutionException ree) {
+                logger.error("Could not schedule the refresh of the dynamic trigger configuration " + url, ree);
+            }
+            return false;
+        }
+
+        /**
+         * Cancels the refresh.
+         */
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Fetches the URL once, conditionally when it has been fetched before,
+         * and hands the result to all triggers still using it.
+         * This is the only schedule of the URL, the cache does not refresh it on its own.
+         */
+        @Override
+        public void run() {
+            try {
+                List<GerritTrigger> active = new ArrayList<GerritTrigger>();
+                for (GerritTrigger trigger : getTriggers(url)) {
+                    Job job = trigger.getJob();
+                    if (job != null && job.isBuildable() && url.equals(trigger.getTriggerConfigURL())) {
+                        active.add(trigger);
+                    }
+                }
+                if (active.isEmpty()) {
+                    return;
+                }
+                List<GerritProject> projects = null;
+                Exception failure = null;
+                try {
+                    projects = DynamicConfigurationCacheProxy.getInstance().refresh(url);
+                } catch (IOException e) {
+                    failure = e;
+                } catch (ParseException e) {
+                    failure = e;
+                }
+                logger.debug("Refreshed dynamic trigger configuration {} for {} triggers", url, active.size());
+                for (GerritTrigger trigger : active) {
+                    trigger.updateTriggerConfigURL(projects, failure);
+                }
+            } catch (RuntimeException e) {
+                //A fixed delay task that throws is never run again.
+                logger.error("Unexpected error refreshing the dynamic trigger configuration " + url, e);
+            }
+        }
+    }
 }
@@ -36,7 +36,10 @@ import org.apache.commons.lang.StringUtils;
  * GerritTrigger.updateTriggerConfigURL().
  *
  * @author Fredrik Abrahamson &lt;fredrik.abrahamson@sonymobile.com&gt;
+ * @deprecated replaced by {@link GerritTriggerTimer#register(GerritTrigger)},
+ * only kept to load configurations saved by older versions.
  */
+@Deprecated
 public class GerritTriggerTimerTask extends TimerTask {
     //TODO possible need to handle renames
     private String job;
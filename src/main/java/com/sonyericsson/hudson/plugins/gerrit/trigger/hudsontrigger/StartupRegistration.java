@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
+import hudson.init.InitMilestone;
+import jenkins.model.Jenkins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registers the {@link EventListener}s of the triggers started while Jenkins loads its jobs in one go.
+ *
+ * Adding listeners to the {@link GerritHandler} one by one copies its listener set for every job,
+ * so while jobs are loading the listeners are only collected and {@link GerritItemListener#onLoaded()}
+ * hands them all to the handler at once, before the connections to the Gerrit servers are started.
+ * Also keeps a breakdown of the time spent starting up, shown in the diagnostics.
+ */
+public final class StartupRegistration {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupRegistration.class);
+    private static final StartupRegistration INSTANCE = new StartupRegistration();
+
+    private final Set<EventListener> pending = new LinkedHashSet<EventListener>();
+    private volatile boolean registered;
+    private final AtomicLong triggersStarted = new AtomicLong();
+    private final AtomicLong triggerStartNanos = new AtomicLong();
+    private volatile int listenersRegistered;
+    private volatile long registrationNanos;
+    private volatile long connectionStartNanos;
+
+    /**
+     * Singleton.
+     */
+    private StartupRegistration() {
+    }
+
+    /**
+     * The instance.
+     *
+     * @return the instance.
+     */
+    public static StartupRegistration getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * If Jenkins is still loading its jobs.
+     *
+     * @return true if the jobs are not loaded yet.
+     */
+    private static boolean isLoadingJobs() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return false;
+        }
+        InitMilestone level = jenkins.getInitLevel();
+        return level != null && level.compareTo(InitMilestone.JOB_LOADED) < 0;
+    }
+
+    /**
+     * Collects the listener if the jobs are still loading.
+     *
+     * @param listener the listener of a starting trigger.
+     * @return true if it is collected, false if it should be added to the handler directly.
+     */
+    synchronized boolean collect(EventListener listener) {
+        if (registered || !isLoadingJobs()) {
+            return false;
+        }
+        pending.add(listener);
+        return true;
+    }
+
+    /**
+     * Removes a collected listener, for triggers stopped before the jobs are loaded.
+     *
+     * @param listener the listener.
+     * @return true if it was collected, false if it should be removed from the handler.
+     */
+    synchronized boolean discard(EventListener listener) {
+        return pending.remove(listener);
+    }
+
+    /**
+     * Adds all collected listeners to the handler.
+     * From now on all listeners are added directly.
+     */
+    void registerCollected() {
+        long started = System.nanoTime();
+        Set<EventListener> listeners;
+        synchronized (this) {
+            registered = true;
+            listeners = new LinkedHashSet<EventListener>(pending);
+            pending.clear();
+        }
+        if (listeners.isEmpty()) {
+            return;
+        }
+        GerritHandler handler = PluginImpl.getHandler_();
+        if (handler == null) {
+            logger.warn("The plugin has no handler instance (BUG)! {} projects will not be triggered!",
+                    listeners.size());
+            return;
+        }
+        handler.addEventListeners(listeners);
+        listenersRegistered = listeners.size();
+        registrationNanos = System.nanoTime() - started;
+        logger.info("Registered the listeners of {} projects in {} ms", listenersRegistered,
+                getRegistrationMillis());
+    }
+
+    /**
+     * Records the time a trigger took to start while the jobs are loading.
+     *
+     * @param nanos the time in nanoseconds.
+     */
+    void triggerStarted(long nanos) {
+        if (!registered && isLoadingJobs()) {
+            triggersStarted.incrementAndGet();
+            triggerStartNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Records the time it took to start the connections to the Gerrit servers.
+     *
+     * @param nanos the time in nanoseconds.
+     */
+    void connectionsStarted(long nanos) {
+        connectionStartNanos = nanos;
+    }
+
+    /**
+     * The number of triggers started while the jobs were loading.
+     *
+     * @return the count.
+     */
+    public long getTriggersStarted() {
+        return triggersStarted.get();
+    }
+
+    /**
+     * The total time the triggers took to start while the jobs were loading.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getTriggerStartMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(triggerStartNanos.get());
+    }
+
+    /**
+     * The number of listeners registered at once when the jobs were loaded.
+     *
+     * @return the count.
+     */
+    public int getListenersRegistered() {
+        return listenersRegistered;
+    }
+
+    /**
+     * The time it took to register the collected listeners.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getRegistrationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(registrationNanos);
+    }
+
+    /**
+     * The time it took to start the connections to the Gerrit servers.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getConnectionStartMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(connectionStartNanos);
+    }
+}
@@ -24,24 +24,25 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
-import static com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer.ANY_SERVER;
 import hudson.Extension;
-import hudson.RelativePath;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
-import hudson.util.ComboBoxModel;
+import hudson.model.Job;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.ProjectIndex;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 
 /**
  * Base settings for one matcher rule of a Gerrit project.
@@ -307,36 +308,62 @@ public class GerritProject implements Describable<GerritProject> {
 
     /**
      * Descriptor allowing for communication within the Repeatable.
-     * Necessary for editable combobox.
+     * Necessary for the auto-completion of the project pattern.
      */
     @Extension
     public static final class DescriptorImpl extends Descriptor<GerritProject> {
 
         /**
-         * Used to fill the project pattern combobox with AJAX.
-         * The filled values will depend on the server that the user has chosen from the dropdown.
+         * The maximum number of projects to suggest when auto-completing the pattern.
+         */
+        //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+        static final int AUTO_COMPLETE_LIMIT =
+                Integer.getInteger(GerritProject.class.getName() + ".autoCompleteLimit", 50);
+
+        /**
+         * Auto-completion for the project pattern, the first projects starting with what is typed.
+         * The projects are those of the server the job is configured with,
+         * or of all servers for a new job or one that triggers on any server.
          *
-         * @param serverName the name of the server that the user has chosen.
-         * @return ComboBoxModels containing a list of all Gerrit Projects found on that server.
+         * @param value the value that the user has typed in the textbox.
+         * @param job the job being configured, null when not configuring a job.
+         * @return at most {@link #AUTO_COMPLETE_LIMIT} project names in sorted order.
          */
-        public ComboBoxModel doFillPatternItems(@QueryParameter("serverName")
-                @RelativePath("..") final String serverName) {
-            Collection<String> projects = new HashSet<String>();
-
-            if (serverName != null && !serverName.isEmpty()) {
-                if (ANY_SERVER.equals(serverName)) {
-                    for (GerritServer server : PluginImpl.getServers_()) {
-                        projects.addAll(server.getGerritProjects());
-                    }
-                } else {
-                    GerritServer server = PluginImpl.getServer_(serverName);
-                    if (server != null) {
-                        projects.addAll(server.getGerritProjects());
-                    }
+        public AutoCompletionCandidates doAutoCompletePattern(@QueryParameter final String value,
+                                                              @AncestorInPath final Job job) {
+            String serverName = null;
+            GerritTrigger trigger = GerritTrigger.getTrigger(job);
+            if (trigger != null) {
+                serverName = trigger.getServerName();
+            }
+            AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+            for (String project : ProjectIndex.find(getProjectIndexes(serverName), value, AUTO_COMPLETE_LIMIT)) {
+                candidates.add(project);
+            }
+            return candidates;
+        }
+
+        /**
+         * The project indexes of a server, or of all servers.
+         *
+         * @param serverName the name of the server, null or {@link GerritServer#ANY_SERVER} for all servers.
+         * @return the indexes.
+         */
+        private static List<ProjectIndex> getProjectIndexes(String serverName) {
+            List<ProjectIndex> indexes = new ArrayList<ProjectIndex>();
+            if (!GerritServer.isAnyServer(serverName)) {
+                GerritServer server = PluginImpl.getServer_(serverName);
+                if (server != null) {
+                    indexes.add(server.getProjectIndex());
                 }
+                return indexes;
+            }
+            for (GerritServer server : PluginImpl.getServers_()) {
+                indexes.add(server.getProjectIndex());
             }
-            return new ComboBoxModel(projects);
+            return indexes;
         }
+
         @Override
         public String getDisplayName() {
             return null;
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Account;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
+
+/**
+ * A short string identifying a {@link GerritTriggeredEvent}, so that we can remember which events
+ * have been seen without keeping the events themselves around.
+ *
+ * Two events with the same type, creation time, change, patch set or ref update and account
+ * are considered the same event.
+ */
+public final class EventFingerprint {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Utility class.
+     */
+    private EventFingerprint() {
+    }
+
+    /**
+     * Creates the fingerprint of an event.
+     *
+     * @param event the event.
+     * @return the fingerprint, never containing line breaks.
+     */
+    public static String of(GerritTriggeredEvent event) {
+        StringBuilder str = new StringBuilder();
+        if (event.getEventType() != null) {
+            str.append(event.getEventType().getTypeValue());
+        }
+        str.append(SEPARATOR);
+        if (event.getEventCreatedOn() != null) {
+            str.append(event.getEventCreatedOn().getTime());
+        }
+        if (event instanceof ChangeBasedEvent) {
+            ChangeBasedEvent changeEvent = (ChangeBasedEvent)event;
+            str.append(SEPARATOR);
+            if (changeEvent.getChange() != null) {
+                str.append(changeEvent.getChange().getNumber());
+            }
+            str.append(SEPARATOR);
+            if (changeEvent.getPatchSet() != null) {
+                str.append(changeEvent.getPatchSet().getNumber());
+            }
+        } else if (event instanceof RefUpdated) {
+            RefUpdated refUpdated = (RefUpdated)event;
+            if (refUpdated.getRefUpdate() != null) {
+                str.append(SEPARATOR).append(refUpdated.getRefUpdate().getProject());
+                str.append(SEPARATOR).append(refUpdated.getRefUpdate().getRefName());
+                str.append(SEPARATOR).append(refUpdated.getRefUpdate().getNewRev());
+            }
+        }
+        Account account = event.getAccount();
+        if (account != null) {
+            str.append(SEPARATOR).append(account.getEmail());
+        }
+        return str.toString().replace('\n', ' ').replace('\r', ' ');
+    }
+}
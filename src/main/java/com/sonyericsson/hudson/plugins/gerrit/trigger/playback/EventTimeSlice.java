@@ -26,9 +26,14 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
 
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class holds events that were processed by the MissedEventPlaybackManager
@@ -38,6 +43,9 @@ import java.util.List;
  * However, if another event is processed at t2, then the Event Slice would evict the previous
  * events and only keep the new event at t2.
  *
+ * The events are only remembered by their {@link EventFingerprint}, and the slice is stored
+ * on disk in a compact line based format, see {@link #write(Writer)}.
+ *
  * Created by scott.hebert@ericsson.com on 12/12/14.
  */
 public class EventTimeSlice {
@@ -45,8 +53,12 @@ public class EventTimeSlice {
     private long timeSlice;
     /**
      * events to persist.
+     *
+     * @deprecated only read from slices stored as XML by older versions, see {@link #fingerprints}.
      */
-    protected List<GerritTriggeredEvent> events = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+    @Deprecated
+    protected List<GerritTriggeredEvent> events;
+    private Set<String> fingerprints = new LinkedHashSet<String>();
 
     /**
      *
@@ -56,6 +68,35 @@ public class EventTimeSlice {
         this.timeSlice = ts;
     }
 
+    /**
+     * Copy constructor.
+     *
+     * @param other the slice to copy.
+     */
+    public EventTimeSlice(EventTimeSlice other) {
+        this.timeSlice = other.timeSlice;
+        this.fingerprints.addAll(other.getFingerprints());
+    }
+
+    /**
+     * Converts slices stored as XML by older versions.
+     *
+     * @return this.
+     */
+    @SuppressWarnings("deprecation")
+    protected Object readResolve() {
+        if (fingerprints == null) {
+            fingerprints = new LinkedHashSet<String>();
+        }
+        if (events != null) {
+            for (GerritTriggeredEvent evt : events) {
+                fingerprints.add(EventFingerprint.of(evt));
+            }
+            events = null;
+        }
+        return this;
+    }
+
     /**
      * Get the time slice in ms.
      * @return this time slice
@@ -67,15 +108,82 @@ public class EventTimeSlice {
      * Add an event to the list.
      * @param evt Event to be persisted.
      */
-    public void addEvent(GerritTriggeredEvent evt) {
-        events.add(evt);
+    public synchronized void addEvent(GerritTriggeredEvent evt) {
+        fingerprints.add(EventFingerprint.of(evt));
+    }
+
+    /**
+     * If the event has been added to this time slice.
+     *
+     * @param evt the event.
+     * @return true if it has.
+     */
+    public synchronized boolean contains(GerritTriggeredEvent evt) {
+        return fingerprints.contains(EventFingerprint.of(evt));
+    }
+
+    /**
+     * The fingerprints of the events in this time slice.
+     *
+     * @return a copy of the fingerprints.
+     * @see EventFingerprint
+     */
+    public synchronized Set<String> getFingerprints() {
+        return new LinkedHashSet<String>(fingerprints);
     }
 
     /**
      * get the events for this time slice.
      * @return events that pertain to the time slice.
+     * @deprecated events are no longer kept, use {@link #contains(GerritTriggeredEvent)}.
      */
+    @Deprecated
     public List<GerritTriggeredEvent> getEvents() {
-        return events;
+        return Collections.unmodifiableList(new ArrayList<GerritTriggeredEvent>());
+    }
+
+    /**
+     * Writes the time slice in the compact format.
+     * The first line is the time slice in ms, followed by one line per event fingerprint.
+     *
+     * @param writer the writer to write to.
+     * @throws IOException if so.
+     * @see #read(BufferedReader)
+     */
+    public synchronized void write(Writer writer) throws IOException {
+        writer.write(String.valueOf(timeSlice));
+        writer.write('\n');
+        for (String fingerprint : fingerprints) {
+            writer.write(fingerprint);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Reads a time slice written by {@link #write(Writer)}.
+     *
+     * @param reader the reader to read from.
+     * @return the time slice, or null if the reader is empty.
+     * @throws IOException if so, or if the content isn't a time slice.
+     */
+    public static EventTimeSlice read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || line.trim().isEmpty()) {
+            return null;
+        }
+        EventTimeSlice slice;
+        try {
+            slice = new EventTimeSlice(Long.parseLong(line.trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a time slice: " + line, e);
+        }
+        line = reader.readLine();
+        while (line != null) {
+            if (!line.isEmpty()) {
+                slice.fingerprints.add(line);
+            }
+            line = reader.readLine();
+        }
+        return slice;
     }
 }
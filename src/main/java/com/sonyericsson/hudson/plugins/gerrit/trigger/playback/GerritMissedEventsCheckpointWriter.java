@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+/**
+ * Periodically writes the last-alive timestamps recorded by each {@link GerritMissedEventsPlaybackManager}
+ * to disk, so that the event thread never has to wait for the disk.
+ */
+@Extension
+public class GerritMissedEventsCheckpointWriter extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        return GerritMissedEventsPlaybackManager.CHECKPOINT_PERIOD;
+    }
+
+    @Override
+    protected void doRun() throws Exception {
+        for (GerritServer gs : PluginImpl.getServers_()) {
+            GerritMissedEventsPlaybackManager manager = gs.getMissedEventsPlaybackManager();
+            if (manager != null) {
+                manager.flush();
+            }
+        }
+    }
+}
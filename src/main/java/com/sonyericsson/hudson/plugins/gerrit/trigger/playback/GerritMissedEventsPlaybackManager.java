@@ -28,6 +28,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.NamedGerritEventListener;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.GerritPluginChecker;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.StringUtil;
@@ -36,10 +37,15 @@ import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
 import com.sonymobile.tools.gerrit.gerritevents.GerritJsonEventFactory;
 import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeAbandoned;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeMerged;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeRestored;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 
 import hudson.Util;
 import hudson.XmlFile;
+import hudson.util.AtomicFileWriter;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.io.IOUtils;
@@ -49,9 +55,13 @@ import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URLEncoder;
@@ -60,9 +70,10 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.CheckForNull;
 
@@ -87,6 +98,30 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
     static final String EVENTS_LOG_PLUGIN_NAME = "events-log";
     private static final String EVENTS_LOG_PLUGIN_URL = "a/plugins/" + EVENTS_LOG_PLUGIN_NAME + "/events/";
     private static final String GERRIT_TRIGGER_SERVER_TIMESTAMPS_XML = "gerrit-trigger-server-timestamps.xml";
+    private static final String GERRIT_TRIGGER_SERVER_TIMESTAMPS_FILE = "gerrit-trigger-server-timestamps.txt";
+    private static final String CHECKPOINT_CHARSET = "UTF-8";
+    /**
+     * How often, in ms, the build queue is checked while waiting for it to shrink.
+     */
+    private static final long QUEUE_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    /**
+     * How long, in ms, to wait before asking again when the events-log plugin is busy and does not say for how long.
+     */
+    private static final long DEFAULT_RETRY_AFTER = TimeUnit.MINUTES.toMillis(1);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    /**
+     * The longest line, in characters, read from the events-log plugin. One event is one line.
+     */
+    static final int MAX_LINE_LENGTH = Integer.getInteger(
+            "com.sonyericsson.hudson.plugins.gerrit.trigger.playback.maxLineLength", 4 * 1024 * 1024);
+    private static final long DEFAULT_CHECKPOINT_PERIOD = 5;
+    /**
+     * How often, in ms, the last-alive timestamp is written to disk.
+     * This is also the largest window of events that can be played back a second time if Jenkins dies.
+     */
+    static final long CHECKPOINT_PERIOD = Long.getLong(
+            "com.sonyericsson.hudson.plugins.gerrit.trigger.playback.checkpointPeriod",
+            TimeUnit.SECONDS.toMillis(DEFAULT_CHECKPOINT_PERIOD));
 
     private String serverName;
     /**
@@ -94,13 +129,25 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
      */
     protected EventTimeSlice serverTimestamp = null;
     /**
-     * List that contains received Gerrit Events.
+     * Received Gerrit Events while playback is in progress.
      */
-    protected List<GerritTriggeredEvent> receivedEventCache
-        = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+    protected final ReceivedEventCache receivedEventCache = new ReceivedEventCache();
 
     private boolean isSupported = false;
     private boolean playBackComplete = false;
+    /**
+     * If {@link #serverTimestamp} has changed since it was last written to disk.
+     */
+    private boolean dirty = false;
+    private Thread playbackThread;
+    private volatile PlaybackProgress playbackProgress;
+    /**
+     * The start of the first window that hasn't been played back yet, -1 when there is nothing left to play back.
+     * While it is set it is what {@link #flush()} writes, if it is older than {@link #serverTimestamp},
+     * so that the events that haven't been played back are asked for again after a restart.
+     */
+    private long playbackCursor = -1;
+    private final Object flushLock = new Object();
 
     /**
      * @param name Gerrit Server Name.
@@ -129,6 +176,14 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
                         config.delete();
                         logger.warn("Deleting " + config.getFile().getAbsolutePath());
                     }
+                    File checkpoint = getCheckpointFile(serverName);
+                    if (checkpoint != null && checkpoint.delete()) {
+                        logger.warn("Deleting " + checkpoint.getAbsolutePath());
+                    }
+                    synchronized (this) {
+                        serverTimestamp = null;
+                        dirty = false;
+                    }
                 } catch (IOException e) {
                     logger.error(e.getMessage(), e);
                 }
@@ -166,14 +221,36 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
 
     /**
      * Load in the last-alive Timestamp file.
+     * Falls back to the XML file written by older versions if there is no checkpoint file.
+     * A timestamp in memory that is newer than what is on disk, but not yet flushed, is kept.
      * @throws IOException is we cannot unmarshal.
      */
     protected void load() throws IOException {
-        XmlFile xml = getConfigXml(serverName);
-        if (xml != null && xml.exists()) {
-            serverTimestamp  = (EventTimeSlice)xml.unmarshal(serverTimestamp);
+        EventTimeSlice loaded = null;
+        File checkpoint = getCheckpointFile(serverName);
+        if (checkpoint != null && checkpoint.exists()) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(checkpoint), CHECKPOINT_CHARSET));
+            try {
+                loaded = EventTimeSlice.read(reader);
+            } finally {
+                reader.close();
+            }
         } else {
-            serverTimestamp = null;
+            XmlFile xml = getConfigXml(serverName);
+            if (xml != null && xml.exists()) {
+                loaded = (EventTimeSlice)xml.read();
+            }
+        }
+        synchronized (this) {
+            if (dirty && serverTimestamp != null
+                    && (loaded == null || loaded.getTimeSlice() < serverTimestamp.getTimeSlice())) {
+                logger.debug("Keeping the not yet flushed timestamp {} for server {}",
+                        serverTimestamp.getTimeSlice(), serverName);
+            } else {
+                serverTimestamp = loaded;
+                dirty = false;
+            }
         }
     }
 
@@ -217,6 +294,13 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
             return;
         }
         Date timeStampDate = getDateFromTimestamp();
+        synchronized (this) {
+            if (playbackCursor >= 0 && playbackCursor < timeStampDate.getTime()) {
+                logger.info("Resuming the playback of missed events for server {} from {}",
+                        serverName, new Date(playbackCursor));
+                timeStampDate = new Date(playbackCursor);
+            }
+        }
         long diff = System.currentTimeMillis() - timeStampDate.getTime();
         if (diff > 0) {
             if (logger.isDebugEnabled()) {
@@ -228,60 +312,360 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
             playBackComplete = true;
             return;
         }
+        startPlayback(timeStampDate.getTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * Starts playing back the missed events in the background, stopping any playback already running.
+     * @param from the last-alive timestamp in ms.
+     * @param to until when to play back in ms.
+     */
+    private synchronized void startPlayback(final long from, final long to) {
+        stopPlayback();
+        playbackCursor = from;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                playBackWindows(from, to);
+            }
+        }, "Gerrit missed events playback for " + serverName);
+        thread.setDaemon(true);
+        playbackThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the playback running in the background, if any.
+     */
+    private synchronized void stopPlayback() {
+        Thread thread = playbackThread;
+        playbackThread = null;
+        if (thread != null) {
+            logger.info("Stopping playback of missed events for server: {}", serverName);
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Plays back the missed events one window at a time, at the configured rate.
+     * The events are played back while they are read, unless the {@link SupersessionPolicy} needs to see
+     * the whole window first, in which case one window at a time is kept in memory.
+     * The playback cursor is moved forward after each window, and cleared when all windows are done.
+     * @param from the last-alive timestamp in ms.
+     * @param to until when to play back in ms.
+     */
+    void playBackWindows(long from, long to) {
+        GerritServer server = PluginImpl.getServer_(serverName);
+        if (server == null || server.getConfig() == null) {
+            logger.error("Server for {} could not be found.", serverName);
+            finishPlayback();
+            return;
+        }
+        IGerritHudsonTriggerConfig config = server.getConfig();
+        long window = TimeUnit.MINUTES.toMillis(config.getMissedEventsPlaybackWindow());
+        PlaybackProgress progress = new PlaybackProgress(from, to, (int)((to - from + window - 1) / window));
+        playbackProgress = progress;
+        SupersessionPolicy policy = config.getMissedEventsPlaybackPolicy();
+        Dispatcher dispatcher = new Dispatcher(config, progress);
         try {
-            List<GerritTriggeredEvent> events = getEventsFromDateRange(timeStampDate);
-            logger.info("({}) missed events to process for server: {} ...", events.size(), serverName);
-            for (GerritTriggeredEvent evt: events) {
-                logger.debug("({}) Processing missed event {}", serverName, evt);
-                boolean receivedEvtFound = false;
-                synchronized (receivedEventCache) {
-                  Iterator<GerritTriggeredEvent> i = receivedEventCache.iterator(); // Must be in synchronized block
-                  while (i.hasNext()) {
-                      GerritTriggeredEvent rEvt = i.next();
-                      if (rEvt.equals(evt)) {
-                        receivedEvtFound = true;
-                        break;
-                      }
-                  }
+            long start = from;
+            while (start < to) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
                 }
-                if (receivedEvtFound) {
-                    logger.debug("({}) Event already triggered...skipping trigger.", serverName);
-                } else {
+                long end = Math.min(start + window, to);
+                try {
+                    playBackWindow(start, end, policy, dispatcher, progress);
+                } catch (EventsLogBusyException e) {
+                    logger.warn("({}) {} plugin answered {}, retrying window {} of {} in {} ms", new Object[]{
+                            serverName, EVENTS_LOG_PLUGIN_NAME, e.getMessage(), progress.getWindowsDone() + 1,
+                            progress.getWindowCount(), e.getRetryAfter()});
+                    Thread.sleep(e.getRetryAfter());
+                    continue;
+                } catch (IOException e) {
+                    logger.error("Playback of missed events for server " + serverName + " failed, it is retried from "
+                            + new Date(start) + " on the next connection: " + e.getMessage(), e);
+                    return;
+                }
+                progress.windowDone(end);
+                advancePlayback(end);
+                start = end;
+            }
+            advancePlayback(-1);
+        } catch (InterruptedException e) {
+            logger.info("Playback of missed events for server {} interrupted", serverName);
+        } catch (PlaybackInterruptedException e) {
+            logger.info("Playback of missed events for server {} interrupted", serverName);
+        } finally {
+            progress.finish();
+            finishPlayback();
+        }
+        logger.info("Processing completed for server: {}, {} events triggered, {} superseded, {} for closed changes, "
+                + "{} duplicates suppressed", serverName, progress.getTriggered(), progress.getSuperseded(),
+                progress.getClosed(), receivedEventCache.getDuplicatesSuppressed());
+    }
 
-                    //do we have this event in the time slice?
-                    long currentEventCreatedTime = evt.getEventCreatedOn().getTime();
-                    if (serverTimestamp.getTimeSlice() == currentEventCreatedTime) {
-                        if (serverTimestamp.getEvents().contains(evt)) {
-                            logger.debug("({}) Event already triggered from time slice...skipping trigger.", serverName);
-                            continue;
-                        }
-                    }
-                    logger.info("({}) Triggering: {}", serverName, evt);
-                    GerritServer server = PluginImpl.getServer_(serverName);
-                    if (server == null) {
-                        logger.error("Server for {} could not be found. Skipping this event", serverName);
-                        continue;
-                    }
-                    server.triggerEvent(evt);
-                    receivedEventCache.add(evt);
-                    logger.debug("Added event {} to received cache for server: {}", evt, serverName);
+    /**
+     * Plays back the missed events of one window.
+     * @param start the start of the window in ms.
+     * @param end the end of the window in ms.
+     * @param policy which events to skip.
+     * @param dispatcher where to play back the events.
+     * @param progress where to count the events.
+     * @throws IOException if the events of the window could not all be read.
+     */
+    private void playBackWindow(long start, long end, SupersessionPolicy policy, Dispatcher dispatcher,
+                                PlaybackProgress progress) throws IOException {
+        if (policy.isSkipOlderPatchSets() || policy.isSkipClosedChanges()) {
+            final List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>();
+            getEventsFromDateRange(new Date(start), new Date(end), new MissedEventHandler() {
+                @Override
+                public void handle(GerritTriggeredEvent event) {
+                    events.add(event);
                 }
+            });
+            logger.info("({}) missed events to process for server: {} in window {} of {}",
+                    events.size(), serverName, progress.getWindowsDone() + 1, progress.getWindowCount());
+            for (GerritTriggeredEvent evt : skipSuperseded(events, policy, progress)) {
+                dispatcher.dispatch(evt);
             }
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Error building URL for playback query: " + e.getMessage(), e);
-        } catch (IOException e) {
-            logger.error("Error accessing URL for playback query: " + e.getMessage(), e);
+        } else {
+            int count = getEventsFromDateRange(new Date(start), new Date(end), dispatcher);
+            logger.info("({}) missed events processed for server: {} in window {} of {}",
+                    count, serverName, progress.getWindowsDone() + 1, progress.getWindowCount());
+        }
+    }
+
+    /**
+     * Moves the playback cursor forward and marks the timestamp for writing.
+     * @param cursor the start of the next window, -1 when all windows are done.
+     */
+    private synchronized void advancePlayback(long cursor) {
+        if (playbackThread == null || playbackThread == Thread.currentThread()) {
+            playbackCursor = cursor;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Marks the playback as complete, unless another playback has been started since.
+     * The received events are kept if the playback was stopped before all windows were done,
+     * so that they are not triggered again when the playback is resumed.
+     */
+    private synchronized void finishPlayback() {
+        if (playbackThread == null || playbackThread == Thread.currentThread()) {
+            playbackThread = null;
+            playBackComplete = true;
+            if (playbackCursor < 0) {
+                receivedEventCache.clear();
+            }
+        }
+    }
+
+    /**
+     * What {@link #flush()} writes: the last-alive timestamp,
+     * or the playback cursor if there are older events left to play back.
+     * @return the timestamp to write, or null if there is nothing to write.
+     */
+    @CheckForNull
+    synchronized EventTimeSlice getCheckpoint() {
+        if (playbackCursor >= 0 && (serverTimestamp == null || playbackCursor < serverTimestamp.getTimeSlice())) {
+            return new EventTimeSlice(playbackCursor);
+        }
+        if (serverTimestamp == null) {
+            return null;
+        }
+        return new EventTimeSlice(serverTimestamp);
+    }
+
+    /**
+     * The time between two played back events.
+     * @param rate the number of events per minute, 0 for no limit.
+     * @return the time in ms.
+     */
+    private static long getTriggerInterval(int rate) {
+        if (rate <= 0) {
+            return 0;
+        }
+        return TimeUnit.MINUTES.toMillis(1) / rate;
+    }
+
+    /**
+     * Waits while the build queue has at least the given number of items.
+     * @param maxQueued the number of items, 0 for no limit.
+     * @param progress where to show that we are waiting.
+     * @throws InterruptedException if the playback is stopped while waiting.
+     */
+    private void waitForQueue(int maxQueued, PlaybackProgress progress) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        Jenkins jenkins = Jenkins.getInstance();
+        if (maxQueued <= 0 || jenkins == null) {
+            return;
+        }
+        while (jenkins.getQueue().getItems().length >= maxQueued) {
+            if (!progress.isWaitingForQueue()) {
+                logger.debug("({}) Waiting for the build queue to shrink below {}", serverName, maxQueued);
+                progress.setWaitingForQueue(true);
+            }
+            Thread.sleep(QUEUE_POLL_INTERVAL);
+        }
+        progress.setWaitingForQueue(false);
+    }
+
+    /**
+     * Skips the change events of patch sets for which a newer patch set of the same change
+     * is in the same window.
+     * @param events the events of one window.
+     * @param progress where to count the skipped events.
+     * @return the events to play back.
+     * @see SupersessionPolicy#LATEST_PATCHSET
+     */
+    static List<GerritTriggeredEvent> skipSuperseded(List<GerritTriggeredEvent> events, PlaybackProgress progress) {
+        return skipSuperseded(events, SupersessionPolicy.LATEST_PATCHSET, progress);
+    }
+
+    /**
+     * Skips the events of one window that are made outdated by later events in the same window.
+     * @param events the events of one window, in the order they happened.
+     * @param policy what to skip.
+     * @param progress where to count the skipped events.
+     * @return the events to play back.
+     */
+    static List<GerritTriggeredEvent> skipSuperseded(List<GerritTriggeredEvent> events, SupersessionPolicy policy,
+                                                     PlaybackProgress progress) {
+        if (!policy.isSkipOlderPatchSets() && !policy.isSkipClosedChanges()) {
+            return events;
+        }
+        Map<String, Integer> latest = new HashMap<String, Integer>();
+        Map<String, Integer> closedAt = new HashMap<String, Integer>();
+        for (int i = 0; i < events.size(); i++) {
+            GerritTriggeredEvent evt = events.get(i);
+            if (evt instanceof ChangeBasedEvent) {
+                String change = getChangeKey((ChangeBasedEvent)evt);
+                Integer number = latest.get(change);
+                int patchSet = getPatchSetNumber((ChangeBasedEvent)evt);
+                if (number == null || patchSet > number) {
+                    latest.put(change, patchSet);
+                }
+                if (isClosing(evt)) {
+                    closedAt.put(change, i);
+                } else if (evt instanceof ChangeRestored) {
+                    closedAt.remove(change);
+                }
+            }
+        }
+        List<GerritTriggeredEvent> result = new ArrayList<GerritTriggeredEvent>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            GerritTriggeredEvent evt = events.get(i);
+            if (evt instanceof ChangeBasedEvent && !isClosing(evt)) {
+                String change = getChangeKey((ChangeBasedEvent)evt);
+                Integer closed = closedAt.get(change);
+                if (policy.isSkipClosedChanges() && closed != null && i < closed) {
+                    logger.debug("Skipping {}, the change is closed later", evt);
+                    progress.eventClosed();
+                    continue;
+                }
+                if (policy.isSkipOlderPatchSets() && getPatchSetNumber((ChangeBasedEvent)evt) < latest.get(change)) {
+                    logger.debug("Skipping {}, there is a newer patch set", evt);
+                    progress.eventSuperseded();
+                    continue;
+                }
+            }
+            result.add(evt);
+        }
+        return result;
+    }
+
+    /**
+     * If the event closes its change.
+     * @param evt the event.
+     * @return true if it is a merge or an abandon.
+     */
+    private static boolean isClosing(GerritTriggeredEvent evt) {
+        return evt instanceof ChangeMerged || evt instanceof ChangeAbandoned;
+    }
+
+    /**
+     * Identifies the change of an event.
+     * @param evt the event.
+     * @return the project and change number.
+     */
+    static String getChangeKey(ChangeBasedEvent evt) {
+        if (evt.getChange() == null) {
+            return "";
+        }
+        return evt.getChange().getProject() + "/" + evt.getChange().getNumber();
+    }
+
+    /**
+     * The patch set number of an event.
+     * @param evt the event.
+     * @return the number, or -1 if it is not known.
+     */
+    static int getPatchSetNumber(ChangeBasedEvent evt) {
+        if (evt.getPatchSet() == null || evt.getPatchSet().getNumber() == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(evt.getPatchSet().getNumber());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The progress of the last playback of missed events.
+     * @return the progress, or null if there hasn't been any playback.
+     */
+    @CheckForNull
+    public PlaybackProgress getPlaybackProgress() {
+        return playbackProgress;
+    }
+
+    /**
+     * Plays back one missed event, unless it has already been received.
+     * @param evt the missed event.
+     * @return true if it was triggered.
+     */
+    private boolean playBack(GerritTriggeredEvent evt) {
+        logger.debug("({}) Processing missed event {}", serverName, evt);
+        if (receivedEventCache.isDuplicate(evt)) {
+            logger.debug("({}) Event already triggered...skipping trigger.", serverName);
+        } else {
+
+            //do we have this event in the time slice?
+            long currentEventCreatedTime = evt.getEventCreatedOn().getTime();
+            EventTimeSlice slice = getServerTimestamp();
+            if (slice != null && slice.getTimeSlice() == currentEventCreatedTime) {
+                if (slice.contains(evt)) {
+                    logger.debug("({}) Event already triggered from time slice...skipping trigger.", serverName);
+                    return false;
+                }
+            }
+            logger.info("({}) Triggering: {}", serverName, evt);
+            GerritServer server = PluginImpl.getServer_(serverName);
+            if (server == null) {
+                logger.error("Server for {} could not be found. Skipping this event", serverName);
+                return false;
+            }
+            server.triggerEvent(evt);
+            receivedEventCache.add(evt);
+            logger.debug("Added event {} to received cache for server: {}", evt, serverName);
+            return true;
         }
-        playBackComplete = true;
-        logger.info("Processing completed for server: {}", serverName);
+        return false;
     }
 
     /**
-     * Log when the connection goes down.
+     * Log when the connection goes down and write the last-alive timestamp to disk.
      */
     @Override
     public void connectionDown() {
         logger.info("connectionDown for server: {}", serverName);
+        stopPlayback();
+        flush();
     }
 
     /**
@@ -301,25 +685,12 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
             persist(triggeredEvent);
             //add to cache
             if (!playBackComplete) {
-                boolean receivedEvtFound = false;
-                synchronized (this) {
-                  Iterator<GerritTriggeredEvent> i = receivedEventCache.iterator(); // Must be in synchronized block
-                  while (i.hasNext()) {
-                      GerritTriggeredEvent rEvt = i.next();
-                      if (rEvt.equals(triggeredEvent)) {
-                        receivedEvtFound = true;
-                        break;
-                      }
-                  }
-                }
-                if (!receivedEvtFound) {
-                    receivedEventCache.add(triggeredEvent);
+                if (receivedEventCache.add(triggeredEvent)) {
                     logger.debug("Added event {} to received cache for server: {}", event, serverName);
                 } else {
                     logger.debug("Event {} ALREADY in received cache for server: {}", event, serverName);
                 }
             } else {
-                receivedEventCache = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
                 logger.debug("Playback complete...will NOT add event {} to received cache for server: {}"
                         , event, serverName);
             }
@@ -328,101 +699,198 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
 
     /**
      * Get events for a given lower bound date.
+     * All events are kept in memory, use {@link #getEventsFromDateRange(Date, MissedEventHandler)}
+     * for ranges that can be large.
+     * A failure is logged and the events read until then are returned.
      * @param lowerDate lower bound for which to request missed events.
      * @return collection of gerrit events.
-     * @throws IOException if HTTP errors occur
+     * @throws IOException never, kept for compatibility.
      */
     protected List<GerritTriggeredEvent> getEventsFromDateRange(Date lowerDate) throws IOException {
+        final List<GerritTriggeredEvent> events
+                = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+        try {
+            getEventsFromDateRange(lowerDate, new MissedEventHandler() {
+                @Override
+                public void handle(GerritTriggeredEvent event) {
+                    events.add(event);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("({}) Reading missed events failed after {} events: {}", serverName, events.size(),
+                    e.getMessage(), e);
+        }
+        return events;
+    }
+
+    /**
+     * Get events for a given lower bound date, handing each event to the handler as soon as it has been read.
+     * The response is never held in memory as a whole.
+     * @param lowerDate lower bound for which to request missed events.
+     * @param handler what to do with each event.
+     * @return the number of events handled.
+     * @throws IOException if HTTP errors occur
+     */
+    protected int getEventsFromDateRange(Date lowerDate, MissedEventHandler handler) throws IOException {
+        return getEventsFromDateRange(lowerDate, null, handler);
+    }
+
+    /**
+     * Get events for a given date range, handing each event to the handler as soon as it has been read.
+     * @param lowerDate lower bound for which to request missed events.
+     * @param upperDate upper bound for which to request missed events, or null for no bound.
+     * @param handler what to do with each event.
+     * @return the number of events handled.
+     * @throws IOException if HTTP errors occur
+     */
+    protected int getEventsFromDateRange(Date lowerDate, @CheckForNull Date upperDate, MissedEventHandler handler)
+            throws IOException {
 
         GerritServer server = PluginImpl.getServer_(serverName);
         if (server == null) {
             logger.error("Server for {} could not be found.", serverName);
-            return Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+            return 0;
         }
         IGerritHudsonTriggerConfig config = server.getConfig();
 
-        String events = getEventsFromEventsLogPlugin(config, buildEventsLogURL(config, lowerDate));
-
-        return createEventsFromString(events);
+        return getEventsFromEventsLogPlugin(config, buildEventsLogURL(config, lowerDate, upperDate), handler);
     }
 
     /**
-     * Takes a string of json events and creates a collection.
-     * @param eventsString Events in json in a string.
-     * @return collection of events.
+     * Reads json events, one per line, and hands them to the handler.
+     * Lines longer than {@link #MAX_LINE_LENGTH} are skipped.
+     * @param reader the json events.
+     * @param handler what to do with each event.
+     * @return the number of events handled.
+     * @throws IOException if reading fails.
      */
-    private List<GerritTriggeredEvent> createEventsFromString(String eventsString) {
-        List<GerritTriggeredEvent> events = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
-        Scanner scanner = new Scanner(eventsString);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
+    int readEvents(Reader reader, MissedEventHandler handler) throws IOException {
+        int count = 0;
+        StringBuilder buffer = new StringBuilder();
+        String line = readLine(reader, buffer);
+        while (line != null) {
             logger.debug("found line: {}", line);
-            JSONObject jsonObject = null;
-            try {
-                jsonObject = GerritJsonEventFactory.getJsonObjectIfInterestingAndUsable(line);
-                if (jsonObject == null) {
-                    continue;
-                }
-            } catch (Exception ex) {
-                logger.warn("Unanticipated error when creating DTO representation of JSON string.", ex);
-                continue;
+            GerritTriggeredEvent evt = createEvent(line);
+            if (evt != null) {
+                handler.handle(evt);
+                count++;
             }
-            GerritEvent evt = GerritJsonEventFactory.getEvent(jsonObject);
-            if (evt instanceof GerritTriggeredEvent) {
-                Provider provider = new Provider();
-                provider.setName(serverName);
-                ((GerritTriggeredEvent)evt).setProvider(provider);
-                events.add((GerritTriggeredEvent)evt);
+            line = readLine(reader, buffer);
+        }
+        return count;
+    }
+
+    /**
+     * Creates an event from a line of json.
+     * @param line the json.
+     * @return the event, or null if it isn't an interesting event.
+     */
+    @CheckForNull
+    private GerritTriggeredEvent createEvent(String line) {
+        JSONObject jsonObject = null;
+        try {
+            jsonObject = GerritJsonEventFactory.getJsonObjectIfInterestingAndUsable(line);
+            if (jsonObject == null) {
+                return null;
             }
+        } catch (Exception ex) {
+            logger.warn("Unanticipated error when creating DTO representation of JSON string.", ex);
+            return null;
         }
-        scanner.close();
-        return events;
+        GerritEvent evt = GerritJsonEventFactory.getEvent(jsonObject);
+        if (evt instanceof GerritTriggeredEvent) {
+            Provider provider = new Provider();
+            provider.setName(serverName);
+            ((GerritTriggeredEvent)evt).setProvider(provider);
+            return (GerritTriggeredEvent)evt;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next line, skipping lines that are longer than {@link #MAX_LINE_LENGTH}.
+     * @param reader the reader.
+     * @param buffer reused between the lines.
+     * @return the line without the line break, or null at the end of the stream.
+     * @throws IOException if reading fails.
+     */
+    @CheckForNull
+    private String readLine(Reader reader, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        boolean tooLong = false;
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        while (c >= 0 && c != '\n') {
+            if (c == '\r') {
+                logger.trace("Ignoring carriage return");
+            } else if (buffer.length() < MAX_LINE_LENGTH) {
+                buffer.append((char)c);
+            } else {
+                tooLong = true;
+            }
+            c = reader.read();
+        }
+        if (tooLong) {
+            logger.warn("({}) Skipping a line of more than {} characters from {}",
+                    serverName, MAX_LINE_LENGTH, EVENTS_LOG_PLUGIN_NAME);
+            buffer.setLength(0);
+        }
+        return buffer.toString();
     }
 
     /**
      *
      * @param config Gerrit config for server.
      * @param url URL to use.
-     * @return String of gerrit events.
+     * @param handler what to do with each event.
+     * @return the number of events handled.
+     * @throws IOException if the events could not all be read,
+     *                     an {@link EventsLogBusyException} if the plugin asks us to come back later.
      */
-    protected String getEventsFromEventsLogPlugin(IGerritHudsonTriggerConfig config, String url) {
+    protected int getEventsFromEventsLogPlugin(IGerritHudsonTriggerConfig config, String url,
+                                               MissedEventHandler handler) throws IOException {
         logger.debug("({}) Going to GET: {}", serverName, url);
 
-        HttpResponse execute = null;
+        HttpResponse execute = HttpUtils.performHTTPGet(config, url);
         try {
-            execute = HttpUtils.performHTTPGet(config, url);
-        } catch (IOException e) {
-            logger.warn(e.getMessage(), e);
-            return "";
-        }
-
-        int statusCode = execute.getStatusLine().getStatusCode();
-        logger.debug("Received status code: {} for server: {}", statusCode, serverName);
-
-        if (statusCode == HttpURLConnection.HTTP_OK) {
-            try {
-                HttpEntity entity = execute.getEntity();
-                if (entity != null) {
-                    ContentType contentType = ContentType.get(entity);
-                    if (contentType == null) {
-                        contentType = ContentType.DEFAULT_TEXT;
-                    }
-                    Charset charset = contentType.getCharset();
-                    if (charset == null) {
-                        charset = Charset.defaultCharset();
-                    }
-                    InputStream bodyStream = entity.getContent();
-                    String body = IOUtils.toString(bodyStream, charset.name());
-                    logger.debug(body);
-                    return body;
+            int statusCode = execute.getStatusLine().getStatusCode();
+            logger.debug("Received status code: {} for server: {}", statusCode, serverName);
+            if (statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+                long retryAfter = SendRateLimiter.getRetryAfter(execute, System.currentTimeMillis());
+                if (retryAfter <= 0) {
+                    retryAfter = DEFAULT_RETRY_AFTER;
                 }
-            } catch (IOException ioe) {
-                logger.warn(ioe.getMessage(), ioe);
+                throw new EventsLogBusyException(statusCode, retryAfter);
+            }
+            if (statusCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Not successful at requesting missed events from " + EVENTS_LOG_PLUGIN_NAME
+                        + " plugin. (errorcode: " + statusCode + ")");
+            }
+            HttpEntity entity = execute.getEntity();
+            if (entity == null) {
+                return 0;
+            }
+            ContentType contentType = ContentType.get(entity);
+            if (contentType == null) {
+                contentType = ContentType.DEFAULT_TEXT;
+            }
+            Charset charset = contentType.getCharset();
+            if (charset == null) {
+                charset = Charset.defaultCharset();
+            }
+            Reader reader = new BufferedReader(new InputStreamReader(entity.getContent(), charset));
+            try {
+                return readEvents(reader, handler);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            if (execute instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable)execute);
             }
         }
-        logger.warn("Not successful at requesting missed events from {} plugin. (errorcode: {})",
-                EVENTS_LOG_PLUGIN_NAME, statusCode);
-        return "";
     }
 
     /**
@@ -434,9 +902,25 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
      */
     protected String buildEventsLogURL(IGerritHudsonTriggerConfig config, Date date1)
             throws UnsupportedEncodingException {
+        return buildEventsLogURL(config, date1, null);
+    }
+
+    /**
+     *
+     * @param config Gerrit Config for server.
+     * @param date1 lower bound for date range,
+     * @param date2 upper bound for date range, or null for no bound.
+     * @return url to use to request missed events.
+     * @throws UnsupportedEncodingException if URL encoding not supported.
+     */
+    protected String buildEventsLogURL(IGerritHudsonTriggerConfig config, Date date1, @CheckForNull Date date2)
+            throws UnsupportedEncodingException {
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         String url = EVENTS_LOG_PLUGIN_URL + "?t1=" + URLEncoder.encode(df.format(date1), "UTF-8");
+        if (date2 != null) {
+            url = url + "&t2=" + URLEncoder.encode(df.format(date2), "UTF-8");
+        }
 
         String gerritFrontEndUrl = config.getGerritFrontEndUrl();
         String restUrl = gerritFrontEndUrl;
@@ -447,11 +931,13 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
     }
 
     /**
-     * Takes a timestamp and persists to xml file.
+     * Takes a timestamp and records it as the last-alive timestamp.
+     * The timestamp is only kept in memory, and written to disk by {@link #flush()}
+     * from {@link GerritMissedEventsCheckpointWriter}, when the connection goes down or at shutdown.
      * @param evt Gerrit Event to persist.
      * @return true if was able to persist event.
      */
-    synchronized boolean persist(GerritTriggeredEvent evt) {
+    boolean persist(GerritTriggeredEvent evt) {
         // If there is not timestamp, then ignore this event.
         if (evt == null || evt.getEventCreatedOn() == null) {
             logger.debug("'eventCreatedOn' is null; skipping event.");
@@ -465,47 +951,95 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
             return false;
         }
 
-        if (serverTimestamp != null && ts < serverTimestamp.getTimeSlice()) {
-            logger.debug("Event has same time slice {} or is earlier...NOT Updating time slice.", ts);
-            return false;
-        } else {
-            if (serverTimestamp == null) {
-                serverTimestamp = new EventTimeSlice(ts);
-                serverTimestamp.addEvent(evt);
+        synchronized (this) {
+            if (serverTimestamp != null && ts < serverTimestamp.getTimeSlice()) {
+                logger.debug("Event has same time slice {} or is earlier...NOT Updating time slice.", ts);
+                return false;
             } else {
-                if (ts > serverTimestamp.getTimeSlice()) {
-                    logger.debug("Current timestamp {} is GREATER than slice time {}.",
-                            ts, serverTimestamp.getTimeSlice());
+                if (serverTimestamp == null) {
                     serverTimestamp = new EventTimeSlice(ts);
                     serverTimestamp.addEvent(evt);
                 } else {
-                    if (ts == serverTimestamp.getTimeSlice()) {
-                        logger.debug("Current timestamp {} is EQUAL to slice time {}.",
+                    if (ts > serverTimestamp.getTimeSlice()) {
+                        logger.debug("Current timestamp {} is GREATER than slice time {}.",
                                 ts, serverTimestamp.getTimeSlice());
+                        serverTimestamp = new EventTimeSlice(ts);
                         serverTimestamp.addEvent(evt);
+                    } else {
+                        if (ts == serverTimestamp.getTimeSlice()) {
+                            logger.debug("Current timestamp {} is EQUAL to slice time {}.",
+                                    ts, serverTimestamp.getTimeSlice());
+                            serverTimestamp.addEvent(evt);
+                        }
                     }
                 }
             }
+            dirty = true;
         }
+        return true;
+    }
 
-        try {
-            XmlFile config = getConfigXml(serverName);
-            if (config == null) {
-                logger.error("XML " + serverName + " is null, please check file permissions.");
+    /**
+     * Writes the last-alive timestamp to disk if it has changed since it was last written.
+     * @return false if it could not be written.
+     */
+    boolean flush() {
+        synchronized (flushLock) {
+            EventTimeSlice snapshot;
+            synchronized (this) {
+                if (!dirty) {
+                    return true;
+                }
+                snapshot = getCheckpoint();
+                if (snapshot == null) {
+                    return true;
+                }
+                dirty = false;
+            }
+            try {
+                File checkpoint = getCheckpointFile(serverName);
+                if (checkpoint == null) {
+                    logger.error("Checkpoint file for " + serverName + " is null, please check file permissions.");
+                    return false;
+                }
+                AtomicFileWriter writer = new AtomicFileWriter(checkpoint, CHECKPOINT_CHARSET);
+                try {
+                    snapshot.write(writer);
+                    writer.commit();
+                } finally {
+                    writer.abort();
+                }
+                XmlFile legacy = getConfigXml(serverName);
+                if (legacy != null && legacy.exists()) {
+                    logger.info("Replacing {} with {}", legacy.getFile().getAbsolutePath(),
+                            checkpoint.getAbsolutePath());
+                    legacy.delete();
+                }
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+                synchronized (this) {
+                    dirty = true;
+                }
                 return false;
             }
-            config.write(serverTimestamp);
-        } catch (IOException e) {
-            logger.error(e.getMessage(), e);
-            return false;
+            return true;
         }
-        return true;
+    }
+
+    /**
+     * The start of the first window that hasn't been played back yet.
+     * @return the timestamp in ms, or -1 if there is nothing left to play back.
+     */
+    synchronized long getPlaybackCursor() {
+        return playbackCursor;
     }
 
     /**
      * Shutdown the listener.
      */
     public void shutdown() {
+        stopPlayback();
+        flush();
         GerritServer server = PluginImpl.getServer_(serverName);
         if (server != null) {
             server.removeListener((GerritEventListener)this);
@@ -521,11 +1055,19 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
         return isSupported;
     }
 
+    /**
+     * The events received while playback is in progress, and the counters of duplicates.
+     * @return the cache.
+     */
+    public ReceivedEventCache getReceivedEventCache() {
+        return receivedEventCache;
+    }
+
     /**
      * Return server timestamp.
      * @return timestamp.
      */
-    public EventTimeSlice getServerTimestamp() {
+    public synchronized EventTimeSlice getServerTimestamp() {
         return serverTimestamp;
     }
 
@@ -549,9 +1091,123 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Na
         return new XmlFile(Jenkins.XSTREAM, xmlFile);
     }
 
+    /**
+     * @param serverName The Name of the Gerrit Server to get the checkpoint file for.
+     * @return the file where the last-alive timestamp is written by {@link #flush()}.
+     */
+    @CheckForNull
+    public static File getCheckpointFile(String serverName) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+
+        File dataDir = new File(jenkins.getRootDir(), GERRIT_SERVER_EVENT_DATA_FOLDER);
+        File serverDataDir = new File(dataDir, serverName);
+        serverDataDir.mkdirs();
+        return new File(serverDataDir, GERRIT_TRIGGER_SERVER_TIMESTAMPS_FILE);
+    }
+
     @Override
     public String getDisplayName() {
         return StringUtil.getDefaultDisplayNameForSpecificServer(this, getServerName());
     }
 
+    /**
+     * Receives the missed events as they are read from the events-log plugin.
+     */
+    protected interface MissedEventHandler {
+        /**
+         * Handles one missed event.
+         * @param event the event.
+         */
+        void handle(GerritTriggeredEvent event);
+    }
+
+    /**
+     * Plays back events at the configured rate, waiting for the build queue when it is full.
+     * Used as a {@link MissedEventHandler} to play back the events while they are read.
+     */
+    private final class Dispatcher implements MissedEventHandler {
+        private final IGerritHudsonTriggerConfig config;
+        private final PlaybackProgress progress;
+        private long nextTrigger = 0;
+
+        /**
+         * Constructor.
+         * @param config the config of the server.
+         * @param progress where to count the triggered events.
+         */
+        private Dispatcher(IGerritHudsonTriggerConfig config, PlaybackProgress progress) {
+            this.config = config;
+            this.progress = progress;
+        }
+
+        /**
+         * Plays back one event when it is its turn.
+         * @param evt the event.
+         * @throws InterruptedException if the playback is stopped while waiting.
+         */
+        void dispatch(GerritTriggeredEvent evt) throws InterruptedException {
+            long wait = nextTrigger - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            waitForQueue(config.getMissedEventsPlaybackMaxQueued(), progress);
+            if (playBack(evt)) {
+                progress.eventTriggered();
+            }
+            nextTrigger = System.currentTimeMillis() + getTriggerInterval(config.getMissedEventsPlaybackRate());
+        }
+
+        @Override
+        public void handle(GerritTriggeredEvent event) {
+            try {
+                dispatch(event);
+            } catch (InterruptedException e) {
+                throw new PlaybackInterruptedException(e);
+            }
+        }
+    }
+
+    /**
+     * Stops reading the events-log response when the playback is stopped while an event is waiting for its turn.
+     */
+    private static final class PlaybackInterruptedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         * @param cause the interruption.
+         */
+        private PlaybackInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * The events-log plugin answered 429 or 503, the window should be asked for again later.
+     */
+    private static final class EventsLogBusyException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final long retryAfter;
+
+        /**
+         * Constructor.
+         * @param statusCode the HTTP status code.
+         * @param retryAfter how long to wait in ms.
+         */
+        private EventsLogBusyException(int statusCode, long retryAfter) {
+            super(String.valueOf(statusCode));
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * How long to wait before asking again.
+         * @return the time in ms.
+         */
+        long getRetryAfter() {
+            return retryAfter;
+        }
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import java.util.Date;
+
+/**
+ * The progress of one playback of missed events, shown on the server page while it is running.
+ */
+public class PlaybackProgress {
+
+    private final long from;
+    private final long to;
+    private final int windowCount;
+    private volatile long current;
+    private volatile int windowsDone;
+    private volatile int triggered;
+    private volatile int superseded;
+    private volatile int closed;
+    private volatile boolean waitingForQueue;
+    private volatile boolean finished;
+
+    /**
+     * Constructor.
+     *
+     * @param from        the start of the playback, in ms.
+     * @param to          the end of the playback, in ms.
+     * @param windowCount the number of windows the time range is fetched in.
+     */
+    PlaybackProgress(long from, long to, int windowCount) {
+        this.from = from;
+        this.to = to;
+        this.windowCount = windowCount;
+        this.current = from;
+    }
+
+    /**
+     * Marks one window as played back.
+     *
+     * @param windowEnd the end of the window in ms.
+     */
+    void windowDone(long windowEnd) {
+        current = windowEnd;
+        windowsDone++;
+    }
+
+    /**
+     * Counts an event that has been played back.
+     */
+    void eventTriggered() {
+        triggered++;
+    }
+
+    /**
+     * Counts an event that was skipped since a newer patch set of the change exists.
+     */
+    void eventSuperseded() {
+        superseded++;
+    }
+
+    /**
+     * Counts an event that was skipped since its change is merged or abandoned later.
+     */
+    void eventClosed() {
+        closed++;
+    }
+
+    /**
+     * Sets if the playback is waiting for the build queue to shrink.
+     *
+     * @param waiting true if so.
+     */
+    void setWaitingForQueue(boolean waiting) {
+        this.waitingForQueue = waiting;
+    }
+
+    /**
+     * Marks the playback as finished.
+     */
+    void finish() {
+        finished = true;
+        waitingForQueue = false;
+    }
+
+    /**
+     * The start of the playback.
+     *
+     * @return the date.
+     */
+    public Date getFrom() {
+        return new Date(from);
+    }
+
+    /**
+     * The end of the playback.
+     *
+     * @return the date.
+     */
+    public Date getTo() {
+        return new Date(to);
+    }
+
+    /**
+     * Up to when events have been played back.
+     *
+     * @return the date.
+     */
+    public Date getCurrent() {
+        return new Date(current);
+    }
+
+    /**
+     * The number of windows the time range is fetched in.
+     *
+     * @return the count.
+     */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * The number of windows that have been played back.
+     *
+     * @return the count.
+     */
+    public int getWindowsDone() {
+        return windowsDone;
+    }
+
+    /**
+     * The number of events that have been played back.
+     *
+     * @return the count.
+     */
+    public int getTriggered() {
+        return triggered;
+    }
+
+    /**
+     * The number of events skipped since a newer patch set of the change exists.
+     *
+     * @return the count.
+     */
+    public int getSuperseded() {
+        return superseded;
+    }
+
+    /**
+     * The number of events skipped since their change is merged or abandoned later.
+     *
+     * @return the count.
+     */
+    public int getClosed() {
+        return closed;
+    }
+
+    /**
+     * If the playback is waiting for the build queue to shrink.
+     *
+     * @return true if so.
+     */
+    public boolean isWaitingForQueue() {
+        return waitingForQueue;
+    }
+
+    /**
+     * If the playback is finished, successfully or not.
+     *
+     * @return true if so.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The events received while missed events are played back, so that events that have been
+ * both received and played back are only triggered once.
+ *
+ * The events are remembered by their {@link EventFingerprint}. The cache is bounded both in size
+ * and in time; the oldest events are forgotten first.
+ */
+public class ReceivedEventCache {
+
+    private static final int DEFAULT_MAX_SIZE = 20000;
+    private static final long DEFAULT_WINDOW = 2;
+
+    /**
+     * The maximum number of events to remember.
+     */
+    static final int MAX_SIZE = Integer.getInteger(
+            "com.sonyericsson.hudson.plugins.gerrit.trigger.playback.receivedEventCacheSize", DEFAULT_MAX_SIZE);
+    /**
+     * For how long, in ms, an event is remembered.
+     */
+    static final long WINDOW = Long.getLong(
+            "com.sonyericsson.hudson.plugins.gerrit.trigger.playback.receivedEventCacheWindow",
+            TimeUnit.HOURS.toMillis(DEFAULT_WINDOW));
+
+    private final int maxSize;
+    private final long window;
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    /**
+     * Fingerprint to when it was added, oldest first.
+     */
+    private final Map<String, Long> fingerprints;
+
+    /**
+     * Standard constructor.
+     */
+    public ReceivedEventCache() {
+        this(MAX_SIZE, WINDOW);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum number of events to remember.
+     * @param window  for how long, in ms, an event is remembered.
+     */
+    ReceivedEventCache(final int maxSize, long window) {
+        this.maxSize = maxSize;
+        this.window = window;
+        this.fingerprints = new LinkedHashMap<String, Long>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxSize) {
+                    evicted.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Remembers an event.
+     *
+     * @param event the event.
+     * @return false if the event was already remembered.
+     */
+    public boolean add(GerritTriggeredEvent event) {
+        return add(event, System.currentTimeMillis());
+    }
+
+    /**
+     * Remembers an event.
+     *
+     * @param event the event.
+     * @param now   the current time in ms.
+     * @return false if the event was already remembered.
+     */
+    synchronized boolean add(GerritTriggeredEvent event, long now) {
+        expire(now);
+        String fingerprint = EventFingerprint.of(event);
+        if (fingerprints.containsKey(fingerprint)) {
+            return false;
+        }
+        fingerprints.put(fingerprint, now);
+        return true;
+    }
+
+    /**
+     * Checks if a played back event has already been received, in which case it is counted as a suppressed duplicate.
+     *
+     * @param event the played back event.
+     * @return true if it is a duplicate.
+     */
+    public boolean isDuplicate(GerritTriggeredEvent event) {
+        return isDuplicate(event, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks if a played back event has already been received, in which case it is counted as a suppressed duplicate.
+     *
+     * @param event the played back event.
+     * @param now   the current time in ms.
+     * @return true if it is a duplicate.
+     */
+    synchronized boolean isDuplicate(GerritTriggeredEvent event, long now) {
+        expire(now);
+        if (fingerprints.containsKey(EventFingerprint.of(event))) {
+            duplicates.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the events that are older than the window.
+     *
+     * @param now the current time in ms.
+     */
+    private void expire(long now) {
+        Iterator<Long> it = fingerprints.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next() <= window) {
+                return;
+            }
+            it.remove();
+            evicted.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets all events, the counters are kept.
+     */
+    public synchronized void clear() {
+        fingerprints.clear();
+    }
+
+    /**
+     * The number of remembered events.
+     *
+     * @return the size.
+     */
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * The number of played back events that were not triggered since they had already been received.
+     *
+     * @return the count.
+     */
+    public long getDuplicatesSuppressed() {
+        return duplicates.get();
+    }
+
+    /**
+     * The number of events forgotten because the cache was full or they were too old.
+     *
+     * @return the count.
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * The maximum number of events to remember.
+     *
+     * @return the max size.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+
+/**
+ * Which missed events to skip when they are made outdated by later events fetched in the same playback window.
+ */
+public enum SupersessionPolicy {
+    /**
+     * Play back all missed events.
+     */
+    NONE {
+        @Override
+        public String getDisplayName() {
+            return Messages.SupersessionPolicy_None();
+        }
+    },
+    /**
+     * Skip the change events of a patch set when a newer patch set of the change comes later.
+     */
+    LATEST_PATCHSET {
+        @Override
+        public String getDisplayName() {
+            return Messages.SupersessionPolicy_LatestPatchSet();
+        }
+    },
+    /**
+     * As {@link #LATEST_PATCHSET}, and also skip the change events of changes that are merged or abandoned later.
+     */
+    LATEST_PATCHSET_OF_OPEN_CHANGES {
+        @Override
+        public String getDisplayName() {
+            return Messages.SupersessionPolicy_LatestPatchSetOfOpenChanges();
+        }
+    };
+
+    /**
+     * The text shown in the server configuration.
+     *
+     * @return the display name.
+     */
+    public abstract String getDisplayName();
+
+    /**
+     * If the change events of older patch sets are skipped.
+     *
+     * @return true if so.
+     */
+    public boolean isSkipOlderPatchSets() {
+        return this != NONE;
+    }
+
+    /**
+     * If the change events of changes that are merged or abandoned later are skipped.
+     *
+     * @return true if so.
+     */
+    public boolean isSkipClosedChanges() {
+        return this == LATEST_PATCHSET_OF_OPEN_CHANGES;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.replication;
+
+import hudson.model.Queue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link Queue#maintain()} when replication events have unblocked items, at most once per interval
+ * and off the thread that handles the events.
+ *
+ * Requests that arrive while a maintenance is pending are folded into it. A request that arrives while a
+ * maintenance is running schedules a new one, since the running pass may already have looked at the item.
+ */
+public class QueueMaintenanceCoalescer {
+
+    /**
+     * The default minimum time between two maintenance passes.
+     */
+    public static final long DEFAULT_INTERVAL = Long.getLong(
+            QueueMaintenanceCoalescer.class.getName() + ".interval", 500);
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueMaintenanceCoalescer.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final long intervalMillis;
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong performed = new AtomicLong();
+    private volatile long lastPerformed = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler      where to run the maintenance, or null to run it directly on the requesting thread.
+     * @param intervalMillis the minimum time between two maintenance passes, 0 or less to run it directly.
+     */
+    public QueueMaintenanceCoalescer(@CheckForNull ScheduledExecutorService scheduler, long intervalMillis) {
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Requests a maintenance of the queue.
+     */
+    public void request() {
+        requested.incrementAndGet();
+        if (scheduler == null || intervalMillis <= 0) {
+            maintain();
+            return;
+        }
+        if (pending.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastPerformed + intervalMillis - System.currentTimeMillis());
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pending.set(false);
+                    maintain();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } else {
+            logger.trace("Queue maintenance already pending.");
+        }
+    }
+
+    /**
+     * Performs the maintenance.
+     */
+    private void maintain() {
+        lastPerformed = System.currentTimeMillis();
+        performed.incrementAndGet();
+        try {
+            Queue.getInstance().maintain();
+        } catch (RuntimeException e) {
+            logger.warn("Queue maintenance failed.", e);
+        }
+    }
+
+    /**
+     * The number of times a maintenance was requested.
+     *
+     * @return the count.
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /**
+     * The number of maintenance passes actually performed.
+     *
+     * @return the count.
+     */
+    public long getPerformed() {
+        return performed.get();
+    }
+
+    /**
+     * The minimum time between two maintenance passes.
+     *
+     * @return the interval in milliseconds.
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+}
@@ -23,14 +23,35 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.replication;
 
-
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.CheckForNull;
+
+import hudson.util.AtomicFileWriter;
+import org.apache.commons.io.IOUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
 
 /**
@@ -72,12 +93,31 @@ public class ReplicationCache {
          * @return the instance of {@link ReplicationCache} or null.
          */
         public static ReplicationCache createCache(long expiration, TimeUnit unit) {
-            ReplicationCache cache = new ReplicationCache(expiration, unit);
+            return createCache(expiration, unit, DEFAULT_MAX_SIZE, null);
+        }
+
+        /**
+         * Create {@link ReplicationCache} that is optionally backed by a log on disk.
+         *
+         * @param expiration Cache expiration
+         * @param unit the unit that expiration is expressed in
+         * @param maxSize the maximum number of events in the cache.
+         * @param persistentFile the log to keep the events in, or null to only keep them in memory.
+         * @return the instance of {@link ReplicationCache} or null.
+         */
+        public static ReplicationCache createCache(long expiration, TimeUnit unit, long maxSize,
+                                                   @CheckForNull File persistentFile) {
+            ReplicationCache cache = new ReplicationCache(expiration, unit, maxSize);
             if (!cache.initialize()) {
                 logger.info("Initialized replication cache with default settings.");
                 cache = new ReplicationCache();
                 cache.initialize();
             }
+            if (persistentFile != null) {
+                cache.persistentFile = persistentFile;
+                cache.writer = jenkins.util.Timer.get();
+                cache.load();
+            }
             return cache;
         }
     }
@@ -87,11 +127,43 @@ public class ReplicationCache {
      */
     public static final int DEFAULT_EXPIRATION_IN_MINUTES = (int)TimeUnit.HOURS.toMinutes(6);
 
+    /**
+     * Default maximum number of events in the cache, the least recently written are evicted first.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    /**
+     * The name of the log in the Jenkins root directory when the cache is persistent.
+     */
+    public static final String PERSISTENT_FILE_NAME = "gerrit-trigger-replication-cache.log";
+
+    /**
+     * The minimum number of lines appended to the log before it is compacted.
+     */
+    private static final int COMPACT_THRESHOLD = Integer.getInteger(
+            ReplicationCache.class.getName() + ".compactThreshold", 10000);
+    private static final String CHARSET = "UTF-8";
+    private static final char SEPARATOR = '\t';
+    private static final int FIELDS = 6;
+
     private static final Logger logger = LoggerFactory.getLogger(ReplicationCache.class);
     private final long expiration;
     private final TimeUnit unit;
+    private final long maxSize;
     private long creationTime;
-    private Cache<RefReplicatedId, RefReplicated> events = null;
+    private Cache<RefReplicatedId, Replication> events = null;
+    private volatile File persistentFile;
+    private Writer log;
+    private int appended = 0;
+    /**
+     * The lines not yet appended to the log.
+     */
+    private final Queue<String> pending = new ConcurrentLinkedQueue<String>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    /**
+     * Where the log is written, so that the event thread never waits for the disk. Null to write directly.
+     */
+    private Executor writer;
 
     /**
      * Default constructor.
@@ -107,6 +179,23 @@ public class ReplicationCache {
      * @param unit the unit that expiration is expressed in
      */
     public ReplicationCache(long expiration, TimeUnit unit) {
+        this(expiration, unit, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expiration Cache expiration
+     * @param unit the unit that expiration is expressed in
+     * @param maxSize the maximum number of events in the cache.
+     */
+    public ReplicationCache(long expiration, TimeUnit unit, long maxSize) {
+        if (maxSize > 0) {
+            this.maxSize = maxSize;
+        } else {
+            this.maxSize = DEFAULT_MAX_SIZE;
+        }
+
         if (expiration >= 0) {
             this.expiration = expiration;
         } else {
@@ -137,8 +226,11 @@ public class ReplicationCache {
             try {
                 events = CacheBuilder.newBuilder()
                         .expireAfterWrite(expiration, unit)
+                        .maximumSize(maxSize)
+                        .recordStats()
                         .build();
-                logger.info("initialized replication cache with expiration in {}: {}", unit, expiration);
+                logger.info("initialized replication cache with expiration in {}: {} and max size: {}",
+                        new Object[]{unit, expiration, maxSize});
             } catch (Exception ex) {
                 logger.warn("initialize failure in {}: {}", unit, expiration);
                 return false;
@@ -153,8 +245,226 @@ public class ReplicationCache {
      */
     public void put(RefReplicated refReplicated) {
         if (events != null) {
-            events.put(RefReplicatedId.fromRefReplicated(refReplicated), refReplicated);
+            events.put(RefReplicatedId.fromRefReplicated(refReplicated), new Replication(refReplicated));
+            append(refReplicated);
+        }
+    }
+
+    /**
+     * If the events are also kept in a log on disk.
+     * @return true if so.
+     */
+    public boolean isPersistent() {
+        return persistentFile != null;
+    }
+
+    /**
+     * Loads the events from the log on disk when the cache is created, skipping the expired ones,
+     * and compacts the log.
+     */
+    private synchronized void load() {
+        if (persistentFile == null) {
+            return;
+        }
+        if (persistentFile.isFile()) {
+            int count = 0;
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(persistentFile), CHARSET));
+                String line = reader.readLine();
+                while (line != null) {
+                    RefReplicated refReplicated = parse(line);
+                    if (refReplicated != null && !isOlderThanExpiration(refReplicated.getReceivedOn())) {
+                        events.put(RefReplicatedId.fromRefReplicated(refReplicated), new Replication(refReplicated));
+                        count++;
+                    }
+                    line = reader.readLine();
+                }
+                logger.info("Loaded {} replication events from {}", count, persistentFile);
+            } catch (IOException e) {
+                logger.warn("Could not read the replication cache from " + persistentFile, e);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Queues an event to be appended to the log in the background.
+     * @param refReplicated the event.
+     */
+    private void append(RefReplicated refReplicated) {
+        if (persistentFile == null) {
+            return;
+        }
+        String line = format(refReplicated);
+        if (line == null) {
+            return;
+        }
+        pending.add(line);
+        Executor executor = writer;
+        if (executor == null) {
+            writePending();
+        } else if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeScheduled.set(false);
+                        writePending();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                writeScheduled.set(false);
+                logger.warn("Could not schedule writing the replication cache, writing it directly", e);
+                writePending();
+            }
+        }
+    }
+
+    /**
+     * Appends the queued lines to the log, compacting it first when it has grown much larger than the cache.
+     */
+    private synchronized void writePending() {
+        if (persistentFile == null) {
+            pending.clear();
+            return;
+        }
+        if (appended >= Math.max(COMPACT_THRESHOLD, 2 * events.size())) {
+            // the queued events are appended again after the compacted ones, loading them twice is harmless
+            compact();
+        }
+        if (log == null) {
+            pending.clear();
+            return;
+        }
+        try {
+            String line = pending.poll();
+            while (line != null) {
+                log.write(line);
+                log.write('\n');
+                appended++;
+                line = pending.poll();
+            }
+            log.flush();
+        } catch (IOException e) {
+            logger.warn("Could not write to the replication cache " + persistentFile + ", will keep it in memory", e);
+            IOUtils.closeQuietly(log);
+            log = null;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the events in the cache and opens it for appending.
+     */
+    private synchronized void compact() {
+        IOUtils.closeQuietly(log);
+        log = null;
+        try {
+            AtomicFileWriter writer = new AtomicFileWriter(persistentFile, CHARSET);
+            try {
+                for (Map.Entry<RefReplicatedId, Replication> entry : events.asMap().entrySet()) {
+                    RefReplicated refReplicated = entry.getKey().toRefReplicated(entry.getValue());
+                    String line = format(refReplicated);
+                    if (line != null && !isOlderThanExpiration(refReplicated.getReceivedOn())) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+            log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(persistentFile, true), CHARSET));
+            appended = 0;
+        } catch (IOException e) {
+            logger.warn("Could not write the replication cache to " + persistentFile + ", will keep it in memory", e);
+        }
+    }
+
+    /**
+     * Writes the queued events and closes the log on disk, the in memory cache can still be used.
+     */
+    public synchronized void close() {
+        writePending();
+        IOUtils.closeQuietly(log);
+        log = null;
+        persistentFile = null;
+    }
+
+    /**
+     * Formats an event as a line in the log.
+     * @param refReplicated the event.
+     * @return the line, or null if the event cannot be written.
+     */
+    @CheckForNull
+    static String format(RefReplicated refReplicated) {
+        String gerritServer = null;
+        if (refReplicated.getProvider() != null) {
+            gerritServer = refReplicated.getProvider().getName();
+        }
+        String[] fields = {gerritServer, refReplicated.getProject(), refReplicated.getRef(),
+            refReplicated.getTargetNode(), refReplicated.getStatus(), };
+        StringBuilder line = new StringBuilder().append(refReplicated.getReceivedOn());
+        for (String field : fields) {
+            if (field != null && (field.indexOf(SEPARATOR) >= 0 || field.indexOf('\n') >= 0)) {
+                return null;
+            }
+            line.append(SEPARATOR);
+            if (field != null) {
+                line.append(field);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parses a line in the log.
+     * @param line the line.
+     * @return the event, or null if the line is broken.
+     * @see #format(RefReplicated)
+     */
+    @CheckForNull
+    static RefReplicated parse(String line) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != FIELDS) {
+            return null;
+        }
+        RefReplicated refReplicated = new RefReplicated();
+        try {
+            refReplicated.setReceivedOn(Long.parseLong(fields[0]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        //CS IGNORE MagicNumber FOR NEXT 5 LINES. REASON: Field positions.
+        refReplicated.setProvider(new Provider(emptyToNull(fields[1]), null, null, null, null, null));
+        refReplicated.setProject(emptyToNull(fields[2]));
+        refReplicated.setRef(emptyToNull(fields[3]));
+        refReplicated.setTargetNode(emptyToNull(fields[4]));
+        refReplicated.setStatus(emptyToNull(fields[5]));
+        return refReplicated;
+    }
+
+    /**
+     * Converts empty fields back to null.
+     * @param field the field.
+     * @return the field or null if it is empty.
+     */
+    private static String emptyToNull(String field) {
+        if (field.isEmpty()) {
+            return null;
         }
+        return field;
+    }
+
+    /**
+     * If the time stamp is older than the expiration, regardless of when the cache was created.
+     * @param timestamp the time stamp to check.
+     * @return true if so.
+     */
+    private boolean isOlderThanExpiration(long timestamp) {
+        return (System.currentTimeMillis() - timestamp) > unit.toMillis(expiration);
     }
 
     /**
@@ -162,12 +472,15 @@ public class ReplicationCache {
      * Note that we also need to check if the event would
      * have been received before the cache was even created
      * as would be the case of a Jenkins restart.
+     * That isn't needed when the cache is persistent, the events received before the restart are in the log.
      * @param timestamp the time stamp to check.
      * @return true if expired, otherwise false
      */
     public boolean isExpired(long timestamp) {
-        return (System.currentTimeMillis() - timestamp) > unit.toMillis(expiration)
-                || timestamp < creationTime;
+        if (isOlderThanExpiration(timestamp)) {
+            return true;
+        }
+        return !isPersistent() && timestamp < creationTime;
     }
 
     /**
@@ -181,12 +494,76 @@ public class ReplicationCache {
     public RefReplicated getIfPresent(String gerritServer, String gerritProject, String ref, String slaveHost) {
         if (events != null) {
             RefReplicatedId refReplicatedId = new RefReplicatedId(gerritServer, gerritProject, ref, slaveHost);
-            return events.getIfPresent(refReplicatedId);
+            Replication replication = events.getIfPresent(refReplicatedId);
+            if (replication == null) {
+                return null;
+            }
+            if (isPersistent() && isOlderThanExpiration(replication.receivedOn)) {
+                // loaded from the log, so the cache only knows when it was loaded
+                return null;
+            }
+            return refReplicatedId.toRefReplicated(replication);
         } else {
             return null;
         }
     }
 
+    /**
+     * The hit, miss and eviction counts of the cache since it was created.
+     * @return the statistics, or null if the cache is not initialized.
+     */
+    @CheckForNull
+    public CacheStats getStats() {
+        if (events != null) {
+            return events.stats();
+        }
+        return null;
+    }
+
+    /**
+     * The approximate number of events in the cache.
+     * @return the size.
+     */
+    public long size() {
+        if (events != null) {
+            return events.size();
+        }
+        return 0;
+    }
+
+    /**
+     * The maximum number of events in the cache.
+     * @return the max size.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * How long events are kept in the cache.
+     * @return the expiration in minutes.
+     */
+    public long getExpirationInMinutes() {
+        return unit.toMinutes(expiration);
+    }
+
+    /**
+     * What the cache keeps of a RefReplicated, the rest is in the {@link RefReplicatedId}.
+     */
+    private static final class Replication {
+        private final String status;
+        private final long receivedOn;
+
+        /**
+         * Standard constructor.
+         * @param refReplicated the event.
+         */
+        Replication(RefReplicated refReplicated) {
+            this.status = refReplicated.getStatus();
+            this.receivedOn = refReplicated.getReceivedOn();
+        }
+    }
+
     /**
      * Id of RefReplicated to identify a RefReplicated event in the cache.
      */
@@ -266,6 +643,22 @@ public class ReplicationCache {
             return true;
         }
 
+        /**
+         * Creates the RefReplicated this id and the cached replication status were taken from.
+         * @param replication the cached replication status.
+         * @return the event, with only the fields the cache keeps.
+         */
+        private RefReplicated toRefReplicated(Replication replication) {
+            RefReplicated refReplicated = new RefReplicated();
+            refReplicated.setProvider(new Provider(gerritServer, null, null, null, null, null));
+            refReplicated.setProject(project);
+            refReplicated.setRef(ref);
+            refReplicated.setTargetNode(targetNode);
+            refReplicated.setStatus(replication.status);
+            refReplicated.setReceivedOn(replication.receivedOn);
+            return refReplicated;
+        }
+
         /**
          * Create a RefReplicatedId for the specified RefReplicated.
          * @param refReplicated The RefReplicated
@@ -27,15 +27,21 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
 import hudson.Extension;
 import hudson.model.Job;
 import hudson.model.Cause;
-import hudson.model.Queue;
 import hudson.model.Queue.Item;
 import hudson.model.queue.QueueTaskDispatcher;
 import hudson.model.queue.CauseOfBlockage;
+import jenkins.model.Jenkins;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -70,14 +76,25 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
 
     private static final Logger logger = LoggerFactory.getLogger(ReplicationQueueTaskDispatcher.class);
     private final Map<Long, BlockedItem> blockedItems;
+    /**
+     * The blocked items by the server, project and ref they wait for, so that a replication event only visits the
+     * items it can unblock. Guarded by itself.
+     */
+    private final Map<BlockedItemKey, Set<BlockedItem>> blockedItemsByRef;
+    /**
+     * The ids of the queue items already found not to wait for replication, until they leave the queue.
+     */
+    private final Set<Long> notBlockedItems;
     private final ReplicationCache replicationCache;
+    private final QueueMaintenanceCoalescer queueMaintenance;
 
     /**
      * Default constructor.
      */
     public ReplicationQueueTaskDispatcher() {
         this(PluginImpl.getHandler_(),
-                createDefaultCache());
+                createDefaultCache(),
+                new QueueMaintenanceCoalescer(jenkins.util.Timer.get(), QueueMaintenanceCoalescer.DEFAULT_INTERVAL));
     }
 
     /**
@@ -90,23 +107,48 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
     private static ReplicationCache createDefaultCache() {
         PluginConfig config = PluginImpl.getPluginConfig_();
         int expiration = ReplicationCache.DEFAULT_EXPIRATION_IN_MINUTES;
+        int maxSize = ReplicationCache.DEFAULT_MAX_SIZE;
+        File persistentFile = null;
         if (config != null) {
             expiration = config.getReplicationCacheExpirationInMinutes();
+            maxSize = config.getReplicationCacheMaxSize();
+            Jenkins jenkins = Jenkins.getInstance();
+            if (config.isReplicationCachePersistent() && jenkins != null) {
+                persistentFile = new File(jenkins.getRootDir(), ReplicationCache.PERSISTENT_FILE_NAME);
+            }
         }
         return ReplicationCache.Factory.createCache(
                 expiration,
-                TimeUnit.MINUTES);
+                TimeUnit.MINUTES,
+                maxSize,
+                persistentFile);
     }
 
     /**
-     * Constructor use by default constructor and for unit tests.
+     * Constructor for unit tests, the queue is maintained directly when replication unblocks items.
      *
      * @param gerritHandler the handler
      * @param replicationCache the replication cache
      */
     ReplicationQueueTaskDispatcher(@CheckForNull GerritHandler gerritHandler,
                                    @Nonnull ReplicationCache replicationCache) {
+        this(gerritHandler, replicationCache, new QueueMaintenanceCoalescer(null, 0));
+    }
+
+    /**
+     * Constructor use by default constructor and for unit tests.
+     *
+     * @param gerritHandler the handler
+     * @param replicationCache the replication cache
+     * @param queueMaintenance what maintains the queue when replication unblocks items
+     */
+    ReplicationQueueTaskDispatcher(@CheckForNull GerritHandler gerritHandler,
+                                   @Nonnull ReplicationCache replicationCache,
+                                   @Nonnull QueueMaintenanceCoalescer queueMaintenance) {
+        this.queueMaintenance = queueMaintenance;
         blockedItems = new ConcurrentHashMap<Long, BlockedItem>();
+        blockedItemsByRef = new HashMap<BlockedItemKey, Set<BlockedItem>>();
+        notBlockedItems = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
         this.replicationCache = replicationCache;
         if (gerritHandler != null) {
             logger.warn("No GerritHandler was specified, won't register as event listener, so no function.");
@@ -116,6 +158,49 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         logger.debug("Registered to gerrit events");
     }
 
+    /**
+     * The registered instance.
+     *
+     * @return the instance or null if Jenkins is not running.
+     */
+    @CheckForNull
+    public static ReplicationQueueTaskDispatcher getInstance() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        return jenkins.getExtensionList(QueueTaskDispatcher.class).get(ReplicationQueueTaskDispatcher.class);
+    }
+
+    /**
+     * The cache of replication events received before the builds waiting for them entered the queue.
+     *
+     * @return the cache.
+     */
+    @Nonnull
+    public ReplicationCache getReplicationCache() {
+        return replicationCache;
+    }
+
+    /**
+     * What maintains the queue when replication unblocks items.
+     *
+     * @return the coalescer.
+     */
+    @Nonnull
+    public QueueMaintenanceCoalescer getQueueMaintenance() {
+        return queueMaintenance;
+    }
+
+    /**
+     * The number of queue items waiting for replication.
+     *
+     * @return the count.
+     */
+    public int getBlockedItemCount() {
+        return blockedItems.size();
+    }
+
     @Override
     public CauseOfBlockage canRun(Item item) {
         //we do not block item when it reached the buildable state, a buildable item is an item that
@@ -124,6 +209,9 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
             return null;
         }
         Long itemId = Long.valueOf(item.getId());
+        if (notBlockedItems.contains(itemId)) {
+            return null;
+        }
         if (blockedItems.containsKey(itemId)) {
             BlockedItem blockedItem = blockedItems.get(itemId);
             if (blockedItem.canRunWithTimeoutCheck()) {
@@ -133,7 +221,7 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
                 } else {
                     logger.trace("{} can now run with no timeout check.", blockedItem.getEventDescription());
                 }
-                blockedItems.remove(itemId);
+                removeBlockedItem(itemId);
                 return null;
             } else {
                 logger.trace(blockedItem.getEventDescription()
@@ -149,15 +237,104 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
                 updateFromReplicationCache(blockedItem);
                 // store the info to be able to unblock the build
                 // later without having to iterate through all the builds in the queue
-                blockedItems.put(itemId, blockedItem);
+                addBlockedItem(itemId, blockedItem);
                 return canRun(item);
             } else {
                 logger.debug("blockedItem null for {}!", item.getId());
+                notBlockedItems.add(itemId);
             }
         }
         return null;
     }
 
+    /**
+     * Forgets about a queue item that has left the queue.
+     * @param itemId the id of the queue item.
+     */
+    void itemLeft(long itemId) {
+        Long id = Long.valueOf(itemId);
+        notBlockedItems.remove(id);
+        removeBlockedItem(id);
+    }
+
+    /**
+     * The number of queue items known not to wait for replication.
+     *
+     * @return the count.
+     */
+    public int getNotBlockedItemCount() {
+        return notBlockedItems.size();
+    }
+
+    /**
+     * Stores a blocked item and indexes it by the ref it waits for.
+     * @param itemId the id of the queue item.
+     * @param blockedItem the blocked item.
+     */
+    private void addBlockedItem(Long itemId, BlockedItem blockedItem) {
+        synchronized (blockedItemsByRef) {
+            BlockedItemKey key = blockedItem.getKey();
+            Set<BlockedItem> items = blockedItemsByRef.get(key);
+            if (items == null) {
+                items = new HashSet<BlockedItem>();
+                blockedItemsByRef.put(key, items);
+            }
+            items.add(blockedItem);
+            blockedItems.put(itemId, blockedItem);
+        }
+    }
+
+    /**
+     * Removes a blocked item and its entry in the index.
+     * @param itemId the id of the queue item.
+     */
+    private void removeBlockedItem(Long itemId) {
+        synchronized (blockedItemsByRef) {
+            BlockedItem blockedItem = blockedItems.remove(itemId);
+            if (blockedItem == null) {
+                return;
+            }
+            BlockedItemKey key = blockedItem.getKey();
+            Set<BlockedItem> items = blockedItemsByRef.get(key);
+            if (items != null) {
+                items.remove(blockedItem);
+                if (items.isEmpty()) {
+                    blockedItemsByRef.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * The blocked items waiting for the ref of a replication event.
+     * @param refReplicated the event.
+     * @return a copy of the matching items, empty if there are none.
+     */
+    private List<BlockedItem> getBlockedItems(RefReplicated refReplicated) {
+        if (refReplicated.getProvider() == null) {
+            return Collections.emptyList();
+        }
+        BlockedItemKey key = new BlockedItemKey(refReplicated.getProvider().getName(), refReplicated.getProject(),
+                refReplicated.getRef());
+        synchronized (blockedItemsByRef) {
+            Set<BlockedItem> items = blockedItemsByRef.get(key);
+            if (items == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<BlockedItem>(items);
+        }
+    }
+
+    /**
+     * The number of distinct refs that blocked items are waiting for.
+     * @return the count.
+     */
+    int getBlockedRefCount() {
+        synchronized (blockedItemsByRef) {
+            return blockedItemsByRef.size();
+        }
+    }
+
     /**
      * Update the blocked item with any cached RefReplicated that are interesting to that item.
      * @param blockedItem The blocked item to update
@@ -298,7 +475,7 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
     public void gerritEvent(RefReplicated refReplicated) {
         replicationCache.put(refReplicated);
         boolean queueMaintenanceRequired = false;
-        for (BlockedItem blockedItem : blockedItems.values()) {
+        for (BlockedItem blockedItem : getBlockedItems(refReplicated)) {
             if (!blockedItem.canRun) {
                 blockedItem.processRefReplicatedEvent(refReplicated);
                 if (blockedItem.canRun) {
@@ -308,7 +485,67 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         }
         if (queueMaintenanceRequired) {
             // force a maintenance of the queue to unblock builds
-            Queue.getInstance().maintain();
+            queueMaintenance.request();
+        }
+    }
+
+    /**
+     * The server, project and ref a blocked item is waiting for replication of.
+     */
+    private static final class BlockedItemKey {
+        private final String gerritServer;
+        private final String gerritProject;
+        private final String ref;
+
+        /**
+         * Standard constructor.
+         * @param gerritServer The gerrit server
+         * @param gerritProject The gerrit project
+         * @param ref The ref
+         */
+        BlockedItemKey(String gerritServer, String gerritProject, String ref) {
+            this.gerritServer = gerritServer;
+            this.gerritProject = gerritProject;
+            this.ref = ref;
+        }
+
+        @Override
+        public int hashCode() {
+            //CS IGNORE MagicNumber FOR NEXT 5 LINES. REASON: Autogenerated Code.
+            //CS IGNORE AvoidInlineConditionals FOR NEXT 5 LINES. REASON: Autogenerated Code.
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((gerritServer == null) ? 0 : gerritServer.hashCode());
+            result = prime * result + ((gerritProject == null) ? 0 : gerritProject.hashCode());
+            result = prime * result + ((ref == null) ? 0 : ref.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            BlockedItemKey other = (BlockedItemKey)obj;
+            return equal(gerritServer, other.gerritServer)
+                    && equal(gerritProject, other.gerritProject)
+                    && equal(ref, other.ref);
+        }
+
+        /**
+         * Null safe equality.
+         * @param a one string
+         * @param b another string
+         * @return true if both are null or equal.
+         */
+        private static boolean equal(String a, String b) {
+            if (a == null) {
+                return b == null;
+            }
+            return a.equals(b);
         }
     }
 
@@ -353,6 +590,14 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
             this.useTimestampWhenProcessingRefReplicatedEvent = useTimestampWhenProcessingRefReplicatedEvent;
         }
 
+        /**
+         * The server, project and ref this item is waiting for.
+         * @return the key
+         */
+        public BlockedItemKey getKey() {
+            return new BlockedItemKey(gerritServer, gerritProject, ref);
+        }
+
         /**
          * Return description of the event that is blocked
          * @return Description of the event
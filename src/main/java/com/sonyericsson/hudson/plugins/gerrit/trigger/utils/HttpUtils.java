@@ -27,15 +27,22 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.utils;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
 import org.slf4j.Logger;
@@ -45,10 +52,31 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTrigge
 
 /**
  * Helper class for HTTP operations.
+ *
+ * The requests share one pooled client per proxy setting, so that connections to the Gerrit servers are reused.
+ * The responses must be closed by the caller to give the connection back to the pool.
  */
 public final class HttpUtils {
 
+    /**
+     * The maximum number of pooled connections to each host.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int MAX_CONNECTIONS_PER_ROUTE =
+            Integer.getInteger(HttpUtils.class.getName() + ".maxConnectionsPerRoute", 8);
+    /**
+     * The maximum number of pooled connections of each client.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: Default value.
+    public static final int MAX_CONNECTIONS =
+            Integer.getInteger(HttpUtils.class.getName() + ".maxConnections", 32);
+
     private static final Logger logger = LoggerFactory.getLogger(HttpUtils.class);
+    /**
+     * The shared clients, keyed by proxy URL, the empty string for no proxy.
+     */
+    private static final ConcurrentMap<String, CloseableHttpClient> CLIENTS =
+            new ConcurrentHashMap<String, CloseableHttpClient>();
 
     /**
      * Helper methods for Http operations.
@@ -64,23 +92,109 @@ public final class HttpUtils {
      */
     public static CloseableHttpResponse performHTTPGet(IGerritHudsonTriggerConfig config,
                                                        String url) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpGet httpGet = new HttpGet(url);
-        if (config.getGerritProxy() != null && !config.getGerritProxy().isEmpty()) {
+        return execute(config, new HttpGet(url));
+    }
+
+    /**
+     * @param config Gerrit Server Configuration.
+     * @param url URL to post to.
+     * @param json the JSON body.
+     * @return httpresponse.
+     * @throws IOException if found.
+     */
+    public static CloseableHttpResponse performHTTPPost(IGerritHudsonTriggerConfig config,
+                                                        String url, String json) throws IOException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return execute(config, httpPost);
+    }
+
+    /**
+     * Executes the request with the proxy and credentials of the server.
+     *
+     * @param config Gerrit Server Configuration.
+     * @param request the request.
+     * @return httpresponse.
+     * @throws IOException if found.
+     */
+    private static CloseableHttpResponse execute(IGerritHudsonTriggerConfig config,
+                                                 HttpRequestBase request) throws IOException {
+        CloseableHttpClient httpClient = getClient(config.getGerritProxy());
+        CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        credsProvider.setCredentials(new AuthScope(null, -1), config.getHttpCredentials());
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider(credsProvider);
+        return httpClient.execute(request, context);
+    }
+
+    /**
+     * Gets or creates the shared client for a proxy setting.
+     *
+     * @param gerritProxy the proxy URL, null or empty for no proxy.
+     * @return the client.
+     */
+    private static CloseableHttpClient getClient(String gerritProxy) {
+        String key = "";
+        if (gerritProxy != null) {
+            key = gerritProxy;
+        }
+        CloseableHttpClient client = CLIENTS.get(key);
+        if (client == null) {
+            CloseableHttpClient created = createClient(key);
+            client = CLIENTS.putIfAbsent(key, created);
+            if (client == null) {
+                client = created;
+            } else {
+                closeQuietly(created);
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Creates a pooled client.
+     *
+     * @param gerritProxy the proxy URL, empty for no proxy.
+     * @return the client.
+     */
+    private static CloseableHttpClient createClient(String gerritProxy) {
+        HttpClientBuilder builder = HttpClients.custom()
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setMaxConnTotal(MAX_CONNECTIONS);
+        if (!gerritProxy.isEmpty()) {
             try {
-                URL proxyUrl = new URL(config.getGerritProxy());
+                URL proxyUrl = new URL(gerritProxy);
                 HttpHost proxy = new HttpHost(proxyUrl.getHost(), proxyUrl.getPort(), proxyUrl.getProtocol());
-                DefaultProxyRoutePlanner routePlanner = new DefaultProxyRoutePlanner(proxy);
-                httpClient = HttpClients.custom().setRoutePlanner(routePlanner).build();
+                builder.setRoutePlanner(new DefaultProxyRoutePlanner(proxy));
             } catch (MalformedURLException e) {
                 logger.error("Could not parse proxy URL, attempting without proxy.", e);
             }
         }
+        return builder.build();
+    }
 
-        CredentialsProvider credsProvider = new BasicCredentialsProvider();
-        credsProvider.setCredentials(new AuthScope(null, -1), config.getHttpCredentials());
-        HttpClientContext context = HttpClientContext.create();
-        context.setCredentialsProvider(credsProvider);
-        return httpClient.execute(httpGet, context);
+    /**
+     * Closes the shared clients and their connections. Called when the plugin is stopped.
+     */
+    public static void closeClients() {
+        for (String key : CLIENTS.keySet()) {
+            CloseableHttpClient client = CLIENTS.remove(key);
+            if (client != null) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * Closes a client, logging failures.
+     *
+     * @param client the client.
+     */
+    private static void closeQuietly(CloseableHttpClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.debug("Error closing the http client.", e);
+        }
     }
 }
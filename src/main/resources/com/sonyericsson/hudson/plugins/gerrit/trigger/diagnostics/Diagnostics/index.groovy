@@ -37,6 +37,11 @@ l.layout(title: _("Gerrit Trigger Diagnostics"), norefresh: false, permission: D
             l.task(icon: "images/24x24/up.gif", href: "${rootURL}/${GerritManagement.URL_NAME}/", title: _("Back to Gerrit Management"))
             l.task(icon: "icon-clipboard icon-md", href: "buildMemory", title: Messages.BuildMemoryReport_DisplayName())
             l.task(icon: "icon-clipboard icon-md", href: "eventListeners", title: Messages.EventListenersReport_DisplayName())
+            l.task(icon: "icon-clipboard icon-md", href: "sendQueue", title: Messages.SendQueueReport_DisplayName())
+            l.task(icon: "icon-clipboard icon-md", href: "messageProviders", title: Messages.MessageProvidersReport_DisplayName())
+            l.task(icon: "icon-clipboard icon-md", href: "notificationLatency", title: Messages.NotificationLatencyReport_DisplayName())
+            l.task(icon: "icon-clipboard icon-md", href: "replication", title: Messages.ReplicationReport_DisplayName())
+            l.task(icon: "icon-clipboard icon-md", href: "dependencyGraph", title: Messages.DependencyGraphReport_DisplayName())
             if (diag.isDebugMode()) {
                 l.task(icon: "icon-warning icon-md", href: "triggerDebugEvent", title: "Trigger Event", post: false, requiresConfirmation: true)
             }
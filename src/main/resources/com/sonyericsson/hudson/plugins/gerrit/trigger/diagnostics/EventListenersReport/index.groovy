@@ -83,6 +83,22 @@ l.layout(title: _("${report.getDisplayName()} - Gerrit Trigger Diagnostics"), no
     l.'main-panel' {
         h1(report.getDisplayName())
         p(style: "font-size: smaller; font-style: italic;", _("blurb"))
+        def startup = report.startup
+        h3(_("Startup"))
+        table(class: "pane bigtable") {
+            tr {
+                td(_("triggersStarted"))
+                td(_("_triggerStart", startup.triggersStarted, startup.triggerStartMillis))
+            }
+            tr {
+                td(_("listenersRegistered"))
+                td(_("_registration", startup.listenersRegistered, startup.registrationMillis))
+            }
+            tr {
+                td(_("connectionsStarted"))
+                td(_("_millis", startup.connectionStartMillis))
+            }
+        }
         h3(_("Jobs"))
         table(class: "sortable pane bigtable") {
             tr {
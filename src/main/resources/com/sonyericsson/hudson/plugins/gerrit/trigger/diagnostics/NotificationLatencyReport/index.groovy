@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.NotificationLatencyReport
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritManagement
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.Diagnostics
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.NotificationLatencyReport
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency.Stage
+
+NotificationLatencyReport report = my;
+
+def l = namespace(lib.LayoutTagLib)
+def g = namespace("/com/sonyericsson/hudson/plugins/gerrit/trigger/lib")
+
+l.layout(title: _("${report.getDisplayName()} - Gerrit Trigger Diagnostics"), norefresh: false, permission: Diagnostics.requiredPermission) {
+    l.'side-panel' {
+        l.tasks {
+            l.task(icon: "images/24x24/up.gif", href: "${rootURL}/${GerritManagement.URL_NAME}/", title: _("Back to Gerrit Management"))
+            l.task(icon: "icon-folder icon-md", href: "${rootURL}/${GerritManagement.URL_NAME}/diagnostics", title: _("Back to Diagnostics"))
+            l.task(icon: "icon-document icon-md", href: "api/json?depth=2", title: _("JSON"))
+        }
+    }
+    l.'main-panel' {
+        h1(report.getDisplayName())
+        p(style: "font-size: smaller; font-style: italic;", _("blurb"))
+        if (report.series.isEmpty()) {
+            p(_("noNotifications"))
+        }
+        report.series.each { def series ->
+            h3("${series.kind} - ${series.serverName} (${series.transport})")
+            p(_("failures", series.failures))
+            table(class: "pane bigtable") {
+                tr {
+                    th(align: "left", _("Stage"))
+                    th(align: "right", _("Count"))
+                    th(align: "right", _("Mean"))
+                    th(align: "right", _("p50"))
+                    th(align: "right", _("p95"))
+                    th(align: "right", _("p99"))
+                    th(align: "right", _("Max"))
+                }
+                Stage.values().each { def stage ->
+                    g.latencyRow(name: stage.name(), histogram: series.get(stage))
+                }
+            }
+        }
+    }
+}
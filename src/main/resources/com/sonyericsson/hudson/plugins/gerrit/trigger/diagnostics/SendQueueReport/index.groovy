@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.SendQueueReport
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritManagement
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.Diagnostics
+import com.sonyericsson.hudson.plugins.gerrit.trigger.diagnostics.SendQueueReport
+
+SendQueueReport report = my;
+
+def l = namespace(lib.LayoutTagLib)
+def g = namespace("/com/sonyericsson/hudson/plugins/gerrit/trigger/lib")
+
+l.layout(title: _("${report.getDisplayName()} - Gerrit Trigger Diagnostics"), norefresh: false, permission: Diagnostics.requiredPermission) {
+    l.'side-panel' {
+        l.tasks {
+            l.task(icon: "images/24x24/up.gif", href: "${rootURL}/${GerritManagement.URL_NAME}/", title: _("Back to Gerrit Management"))
+            l.task(icon: "icon-folder icon-md", href: "${rootURL}/${GerritManagement.URL_NAME}/diagnostics", title: _("Back to Diagnostics"))
+        }
+    }
+    l.'main-panel' {
+        h1(report.getDisplayName())
+        p(style: "font-size: smaller; font-style: italic;", _("blurb"))
+        p(_("sendQueueSize", report.sendQueueSize))
+        h3(_("Waiting"))
+        table(class: "pane bigtable") {
+            tr {
+                th(align: "left", _("Lane"))
+                th(align: "left", _("Size"))
+                th(align: "left", _("Per server"))
+            }
+            report.lanes.each { def lane ->
+                tr {
+                    td(lane.lane.name())
+                    td(lane.size)
+                    td {
+                        if (lane.servers.isEmpty()) {
+                            raw("&nbsp;")
+                        } else {
+                            ul {
+                                lane.servers.each { def server ->
+                                    li("${server.key}: ${server.value}")
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        h3(_("Time in lane"))
+        table(class: "pane bigtable") {
+            tr {
+                th(align: "left", _("Lane"))
+                th(align: "right", _("Count"))
+                th(align: "right", _("Mean"))
+                th(align: "right", _("p50"))
+                th(align: "right", _("p95"))
+                th(align: "right", _("p99"))
+                th(align: "right", _("Max"))
+            }
+            report.lanes.each { def lane ->
+                g.latencyRow(name: lane.lane.name(), histogram: lane.latency)
+            }
+        }
+        h3(_("Throttled wait"))
+        if (report.throttledWaits.isEmpty()) {
+            p(_("noThrottling"))
+        } else {
+            table(class: "pane bigtable") {
+                tr {
+                    th(align: "left", _("Server"))
+                    th(align: "right", _("Count"))
+                    th(align: "right", _("Mean"))
+                    th(align: "right", _("p50"))
+                    th(align: "right", _("p95"))
+                    th(align: "right", _("p99"))
+                    th(align: "right", _("Max"))
+                }
+                report.throttledWaits.each { def server ->
+                    g.latencyRow(name: server.key, histogram: server.value)
+                }
+            }
+        }
+    }
+}
@@ -23,13 +23,20 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for the GerritProjectListUpdater.
@@ -38,6 +45,12 @@ import static org.junit.Assert.assertArrayEquals;
  */
 public class GerritProjectListUpdaterTest {
 
+    /**
+     * A folder for the snapshots.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Standard constructor.
      */
@@ -63,4 +76,49 @@ public class GerritProjectListUpdaterTest {
             "tools/gerrit",
         });
     }
+
+    //CS IGNORE MagicNumber FOR NEXT 15 LINES. REASON: Test data.
+    /**
+     * Tests that project names are read from a REST API response.
+     */
+    @Test
+    public void testParseRestProjects() {
+        String body = ")]}'\n{\"All-Projects\":{\"id\":\"All-Projects\"},"
+                + "\"tools/gerrit\":{\"id\":\"tools%2Fgerrit\"}}";
+
+        List<String> projects = GerritProjectListUpdater.parseRestProjects(body);
+
+        assertEquals(Arrays.asList("All-Projects", "tools/gerrit"), projects);
+        assertEquals("http://gerrit/a/projects/?n=500&S=1000",
+                GerritProjectListUpdater.buildProjectsUrl("http://gerrit/", 500, 1000));
+    }
+
+    /**
+     * Tests that a snapshot reads back what was written.
+     * @throws IOException if so.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        File file = new File(new File(folder.getRoot(), GerritProjectListUpdater.SNAPSHOT_DIRECTORY), "server.txt");
+        List<String> projects = Arrays.asList("tools/gerrit", "tools/hello/jenkins");
+
+        GerritProjectListUpdater.writeSnapshot(file, projects);
+
+        assertEquals(projects, GerritProjectListUpdater.readSnapshot(file));
+    }
+
+    /**
+     * Tests that the project list is only replaced when projects are added or removed.
+     */
+    @Test
+    public void testApplyGerritProjects() {
+        GerritProjectListUpdater updater = new GerritProjectListUpdater("server");
+
+        assertTrue(updater.applyGerritProjects(Arrays.asList("a", "b")));
+        ProjectIndex applied = updater.getProjectIndex();
+        assertFalse(updater.applyGerritProjects(Arrays.asList("b", "a")));
+        assertTrue(applied == updater.getProjectIndex());
+        assertTrue(updater.applyGerritProjects(Arrays.asList("a", "c")));
+        assertEquals(Arrays.asList("a", "c"), updater.getGerritProjects());
+    }
 }
@@ -27,6 +27,8 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlForm;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.HtmlRadioButtonInput;
@@ -41,10 +43,15 @@ import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Result;
 
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -353,4 +360,38 @@ public class GerritServerHudsonTest {
         gerritServerOne.start();
         assertEquals(true, gerritServerOne.isNoConnectionOnStartup());
     }
+
+    /**
+     * Tests that the project pattern of a job auto-completes from the projects of the job's server only.
+     * @throws Exception if so.
+     */
+    @Test
+    public void testAutoCompleteProjectPatternOfJobServer() throws Exception {
+        GerritServer gerritServerOne = new GerritServer(gerritServerOneName);
+        GerritServer gerritServerTwo = new GerritServer(gerritServerTwoName);
+        PluginImpl.getInstance().addServer(gerritServerOne);
+        PluginImpl.getInstance().addServer(gerritServerTwo);
+        gerritServerOne.start();
+        gerritServerTwo.start();
+        gerritServerOne.getProjectListUpdater().setGerritProjects(Arrays.asList("platform/build", "tools/repo"));
+        gerritServerTwo.getProjectListUpdater().setGerritProjects(Arrays.asList("platform/core"));
+        DuplicatesUtil.createGerritTriggeredJob(j, projectOneName, gerritServerOneName);
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        HtmlPage page = wc.goTo("job/" + projectOneName + "/configure");
+        String autoCompleteUrl = null;
+        for (HtmlElement input : page.getDocumentElement().getElementsByAttribute("input", "name", "_.pattern")) {
+            if (input.hasAttribute("autoCompleteUrl")) {
+                autoCompleteUrl = input.getAttribute("autoCompleteUrl");
+                break;
+            }
+        }
+        assertNotNull(autoCompleteUrl);
+
+        String json = wc.getPage(new WebRequest(new URL(j.getURL(), autoCompleteUrl + "?value=platform/")))
+                .getWebResponse().getContentAsString();
+        JSONArray suggestions = JSONObject.fromObject(json).getJSONArray("suggestions");
+        assertEquals(1, suggestions.size());
+        assertEquals("platform/build", suggestions.getJSONObject(0).getString("name"));
+    }
 }
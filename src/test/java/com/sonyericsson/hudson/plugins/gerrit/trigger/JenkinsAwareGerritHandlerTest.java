@@ -99,4 +99,23 @@ public class JenkinsAwareGerritHandlerTest {
         inOrder.verify(lifecycleListenerMock).triggerScanDone(manualPatchset);
     }
 
+    /**
+     * Tests that JenkinsAwareGerritHandler Notifies trigger scan listeners of events without a lifecycle.
+     */
+    @Test
+    public void shouldNotifyTriggerScanListener() {
+        GerritEventLifecycleListener scanListenerMock = mock(GerritEventLifecycleListener.class);
+        GerritEventListener eventListenerMock = mock(GerritEventListener.class);
+        gerritHandler.addTriggerScanListener(scanListenerMock);
+        gerritHandler.addListener(eventListenerMock);
+        PatchsetCreated patchset = Setup.createPatchsetCreated();
+
+        gerritHandler.notifyListeners(patchset);
+
+        InOrder inOrder = inOrder(scanListenerMock, eventListenerMock);
+        inOrder.verify(scanListenerMock).triggerScanStarting(patchset);
+        inOrder.verify(eventListenerMock).gerritEvent(patchset);
+        inOrder.verify(scanListenerMock).triggerScanDone(patchset);
+    }
+
 }
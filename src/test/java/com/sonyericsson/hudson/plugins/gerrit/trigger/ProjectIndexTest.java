@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProjectIndex}.
+ */
+public class ProjectIndexTest {
+
+    /**
+     * Tests that the index is sorted and deduplicated and finds projects by prefix.
+     */
+    @Test
+    public void testFind() {
+        ProjectIndex index = ProjectIndex.of(Arrays.asList("tools/gerrit", "apps/b", "tools/git", "apps/a",
+                "tools/gerrit", "tools/jenkins"));
+
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList("apps/a", "apps/b", "tools/gerrit", "tools/git", "tools/jenkins"), index.asList());
+        assertEquals(Arrays.asList("tools/gerrit", "tools/git"), index.find("tools/g", 10));
+        assertEquals(Arrays.asList("tools/gerrit"), index.find("tools/", 1));
+        assertEquals(Arrays.asList("apps/a", "apps/b"), index.find(null, 2));
+        assertEquals(Collections.<String>emptyList(), index.find("zzz", 10));
+    }
+
+    /**
+     * Tests that adding a project keeps the index sorted.
+     */
+    @Test
+    public void testWithProject() {
+        ProjectIndex index = ProjectIndex.of(Arrays.asList("b", "d"));
+
+        assertSame(index, index.withProject("b"));
+        ProjectIndex added = index.withProject("c");
+        assertEquals(Arrays.asList("b", "c", "d"), added.asList());
+        assertTrue(added.contains("c"));
+        assertFalse(index.contains("c"));
+        assertEquals(Arrays.asList("a", "b", "d"), index.withProject("a").asList());
+        assertEquals(Arrays.asList("b", "d", "e"), index.withProject("e").asList());
+    }
+
+    /**
+     * Tests that finding in several indexes merges and deduplicates the matches.
+     */
+    @Test
+    public void testFindInIndexes() {
+        ProjectIndex first = ProjectIndex.of(Arrays.asList("p/a", "p/c", "q/a"));
+        ProjectIndex second = ProjectIndex.of(Arrays.asList("p/b", "p/c"));
+
+        assertEquals(Arrays.asList("p/a", "p/b", "p/c"), ProjectIndex.find(Arrays.asList(first, second), "p/", 10));
+        assertEquals(Arrays.asList("p/a", "p/b"), ProjectIndex.find(Arrays.asList(first, second), "p/", 2));
+    }
+}
@@ -23,11 +23,14 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.config;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.ReplicationCache;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -67,4 +70,42 @@ public class PluginConfigTest {
         assertEquals(6, config.getNumberOfReceivingWorkerThreads());
         assertEquals(4, config.getNumberOfSendingWorkerThreads());
     }
+
+    /**
+     * Test that the message provider settings are read and that invalid values fall back to the defaults.
+     */
+    @Test
+    public void testMessageProviderSettings() {
+        String formString = "{"
+                + "\"messageProviderTimeout\":\"5\","
+                + "\"maxFileComments\":\"-1\","
+                + "\"maxFileCommentsSize\":\"2000\"}";
+        JSONObject form = (JSONObject)JSONSerializer.toJSON(formString);
+        PluginConfig config = new PluginConfig(new PluginConfig(form));
+        assertEquals(5, config.getMessageProviderTimeout());
+        assertEquals(PluginConfig.DEFAULT_MAX_FILE_COMMENTS, config.getMaxFileComments());
+        assertEquals(2000, config.getMaxFileCommentsSize());
+    }
+
+    /**
+     * Test that the replication cache is only persistent when enabled.
+     */
+    @Test
+    public void testReplicationCachePersistent() {
+        assertFalse(new PluginConfig().isReplicationCachePersistent());
+        JSONObject form = (JSONObject)JSONSerializer.toJSON("{\"replicationCachePersistent\":true}");
+        assertTrue(new PluginConfig(new PluginConfig(form)).isReplicationCachePersistent());
+    }
+
+    /**
+     * Test that the replication cache max size is read and that invalid values fall back to the default.
+     */
+    @Test
+    public void testReplicationCacheMaxSize() {
+        assertEquals(ReplicationCache.DEFAULT_MAX_SIZE, new PluginConfig().getReplicationCacheMaxSize());
+        JSONObject form = (JSONObject)JSONSerializer.toJSON("{\"replicationCacheMaxSize\":\"500\"}");
+        assertEquals(500, new PluginConfig(new PluginConfig(form)).getReplicationCacheMaxSize());
+        form = (JSONObject)JSONSerializer.toJSON("{\"replicationCacheMaxSize\":\"-1\"}");
+        assertEquals(ReplicationCache.DEFAULT_MAX_SIZE, new PluginConfig(form).getReplicationCacheMaxSize());
+    }
 }
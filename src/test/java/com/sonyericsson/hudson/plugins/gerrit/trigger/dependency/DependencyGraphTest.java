@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.dependency;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import jenkins.model.Jenkins;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link DependencyGraph}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+public class DependencyGraphTest {
+
+    private Jenkins jenkinsMock;
+    private AbstractProject jobA;
+    private AbstractProject jobB;
+    private GerritTrigger triggerA;
+    private GerritTrigger triggerB;
+    private DependencyGraph graph;
+
+    /**
+     * Creates two jobs with triggers, A depending on B.
+     */
+    @Before
+    public void setUp() {
+        jenkinsMock = mock(Jenkins.class);
+        PowerMockito.mockStatic(Jenkins.class);
+        when(Jenkins.getInstance()).thenReturn(jenkinsMock);
+        jobA = mock(AbstractProject.class);
+        jobB = mock(AbstractProject.class);
+        when(jobA.getFullName()).thenReturn("A");
+        when(jobB.getFullName()).thenReturn("B");
+        triggerA = mock(GerritTrigger.class);
+        triggerB = mock(GerritTrigger.class);
+        Setup.setTrigger(triggerA, jobA);
+        Setup.setTrigger(triggerB, jobB);
+        when(triggerA.getDependencyJobsNames()).thenReturn("B");
+        when(jenkinsMock.getItem(eq("A"), any(Item.class), eq(Item.class))).thenReturn(jobA);
+        when(jenkinsMock.getItem(eq("B"), any(Item.class), eq(Item.class))).thenReturn(jobB);
+        graph = new DependencyGraph();
+    }
+
+    /**
+     * Tests that the dependencies are only resolved again when the names change or the graph is invalidated.
+     */
+    @Test
+    public void testDependenciesAreResolvedOnce() {
+        List<AbstractProject> expected = Collections.singletonList(jobB);
+        assertEquals(expected, graph.getDependencies(jobA, triggerA));
+        assertEquals(expected, graph.getDependencies(jobA, triggerA));
+        verify(jenkinsMock, times(1)).getItem(eq("B"), any(Item.class), eq(Item.class));
+
+        graph.invalidate();
+        assertEquals(expected, graph.getDependencies(jobA, triggerA));
+        verify(jenkinsMock, times(2)).getItem(eq("B"), any(Item.class), eq(Item.class));
+
+        when(triggerA.getDependencyJobsNames()).thenReturn("");
+        assertNull(graph.getDependencies(jobA, triggerA));
+    }
+
+    /**
+     * Tests that a cycle through the job is found.
+     */
+    @Test
+    public void testFindCycle() {
+        assertTrue(graph.findCycle(jobA).isEmpty());
+
+        when(triggerB.getDependencyJobsNames()).thenReturn("A");
+        List<AbstractProject> cycle = (List)graph.findCycle(jobA);
+        assertEquals(3, cycle.size());
+        assertSame(jobA, cycle.get(0));
+        assertSame(jobB, cycle.get(1));
+        assertSame(jobA, cycle.get(2));
+        assertEquals("A -> B -> A", DependencyGraph.toString((List)cycle));
+    }
+}
@@ -23,8 +23,10 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.dependency;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
@@ -45,6 +47,7 @@ import hudson.model.Action;
 import hudson.model.CauseAction;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
+import hudson.model.Job;
 import hudson.model.Queue;
 import hudson.model.Queue.WaitingItem;
 import hudson.model.Result;
@@ -78,6 +81,7 @@ import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.JenkinsAwareGerritHandler;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ToGerritRunListener;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritCause;
@@ -126,6 +130,8 @@ public class DependencyQueueTaskDispatcherTest {
         toGerritRunListenerMock = mock(ToGerritRunListener.class);
         PowerMockito.mockStatic(ToGerritRunListener.class);
         when(ToGerritRunListener.getInstance()).thenReturn(toGerritRunListenerMock);
+        when(toGerritRunListenerMock.getInterestingDecision(any(Job.class), any(GerritTriggeredEvent.class)))
+                .thenReturn(null);
     }
 
     /**
@@ -239,6 +245,50 @@ public class DependencyQueueTaskDispatcherTest {
         assertNull("Build should not be blocked", cause);
     }
 
+    /**
+     * Test that with a trigger scan barrier items do not wait for the build schedule delay,
+     * only for the scan of their event to be done.
+     */
+    @Test
+    public void shouldReleaseItemsWhenTriggerScanIsDone() {
+        JenkinsAwareGerritHandler jenkinsAwareGerritHandlerMock = mock(JenkinsAwareGerritHandler.class);
+        dispatcher = new DependencyQueueTaskDispatcher(jenkinsAwareGerritHandlerMock);
+        verify(jenkinsAwareGerritHandlerMock).addTriggerScanListener(dispatcher);
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+            "refs/changes/1/1/1");
+        Queue.Item item = createItem(patchsetCreated, "upstream");
+        when(item.getInQueueSince()).thenReturn(System.currentTimeMillis());
+
+        dispatcher.triggerScanStarting(patchsetCreated);
+        assertThat(dispatcher.canRun(item), new InstanceOf(BecauseWaitingForOtherProjectsToTrigger.class));
+        setBuilding(patchsetCreated, false);
+        dispatcher.triggerScanDone(patchsetCreated);
+        verify(queueMock, times(1)).maintain();
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+    }
+
+    /**
+     * Test that an item waiting for a building dependency is not evaluated again until the dependency completes,
+     * and that the completion maintains the queue.
+     */
+    @Test
+    public void shouldUnblockWhenDependencyCompletes() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+            "refs/changes/1/1/1");
+        Queue.Item item = createItem(patchsetCreated, "upstream");
+        setBuilding(patchsetCreated, true);
+        CauseOfBlockage cause = dispatcher.canRun(item);
+        assertThat(cause, new InstanceOf(BecauseDependentBuildIsBuilding.class));
+        assertSame(cause, dispatcher.canRun(item));
+        verify(toGerritRunListenerMock, times(1)).isTriggered(abstractProjectDependencyMock, patchsetCreated);
+
+        assertEquals(0, dispatcher.onDependencyCompleted(patchsetCreated, abstractProjectMock));
+        setBuilding(patchsetCreated, false);
+        assertEquals(1, dispatcher.onDependencyCompleted(patchsetCreated, abstractProjectDependencyMock));
+        verify(queueMock, times(1)).maintain();
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+    }
+
     /**
      * Test that an job is waiting for parent if parent was not triggered, but is interested in event.
      */
@@ -256,6 +306,30 @@ public class DependencyQueueTaskDispatcherTest {
         assertThat(cause, new InstanceOf(BecauseWaitingForOtherProjectsToTrigger.class));
     }
 
+    /**
+     * Test that the decision if a dependency is interested in an event is remembered and not evaluated again.
+     */
+    @Test
+    public void shouldRememberInterestingDecision() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        Queue.Item item = createItem(patchsetCreated, "upstream");
+        makeGerritInterestedInEvent(patchsetCreated);
+        setTriggered(patchsetCreated, false);
+        GerritTrigger upstreamGerritTriggerMock = abstractProjectDependencyMock.getTrigger(GerritTrigger.class);
+
+        assertThat(dispatcher.canRun(item), new InstanceOf(BecauseWaitingForOtherProjectsToTrigger.class));
+        verify(toGerritRunListenerMock).setInterestingDecision(abstractProjectDependencyMock, patchsetCreated, true);
+        assertEquals(1, dispatcher.getInterestingEvaluated());
+
+        when(toGerritRunListenerMock.getInterestingDecision(abstractProjectDependencyMock, patchsetCreated))
+                .thenReturn(true);
+        assertThat(dispatcher.canRun(item), new InstanceOf(BecauseWaitingForOtherProjectsToTrigger.class));
+        verify(upstreamGerritTriggerMock, times(1)).isInteresting(patchsetCreated);
+        assertEquals(1, dispatcher.getInterestingEvaluated());
+        assertEquals(1, dispatcher.getInterestingAvoided());
+    }
+
     /**
      * Sets GerritTrigger interested in specifed gerrit event.
      * @param patchsetCreated patch set.
@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.CommentedFile;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.LineComment;
+import hudson.model.Run;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+
+/**
+ * Tests {@link MessageProviderInvoker}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PluginImpl.class)
+public class MessageProviderInvokerTest {
+
+    private MessageProviderInvoker invoker;
+
+    /**
+     * Creates a fresh invoker with a one second timeout.
+     */
+    @Before
+    public void setUp() {
+        PluginConfig config = new PluginConfig();
+        config.setMessageProviderTimeout(1);
+        PowerMockito.mockStatic(PluginImpl.class);
+        when(PluginImpl.getPluginConfig_()).thenReturn(config);
+        invoker = new MessageProviderInvoker();
+    }
+
+    /**
+     * Stops the thread pool.
+     */
+    @After
+    public void tearDown() {
+        invoker.shutdown();
+    }
+
+    /**
+     * Tests that a slow provider is skipped without holding back the others, and that the order is kept.
+     */
+    @Test
+    public void testSlowProviderIsSkipped() {
+        Run build1 = mock(Run.class);
+        Run build2 = mock(Run.class);
+        List<GerritMessageProvider> providers = new ArrayList<GerritMessageProvider>();
+        providers.add(new NamedProvider("first"));
+        providers.add(new SlowProvider());
+        providers.add(new NamedProvider("second"));
+
+        long start = System.currentTimeMillis();
+        Map<Run, List<String>> messages = invoker.getBuildCompletedMessages(providers, Arrays.asList(build1, build2));
+        long time = System.currentTimeMillis() - start;
+
+        assertTrue("Took " + time + " ms", time < 5000);
+        assertEquals(Arrays.asList("first", "second"), messages.get(build1));
+        assertEquals(Arrays.asList("first", "second"), messages.get(build2));
+        assertEquals(2, invoker.getTimeouts(SlowProvider.class.getName()));
+        assertEquals(4, invoker.getTimings().get(NamedProvider.class.getName()).getCount());
+    }
+
+    /**
+     * Tests that providers that hang and ignore being interrupted don't starve the calls after them.
+     */
+    @Test
+    public void testHungProvidersDontStarveOthers() {
+        CountDownLatch release = new CountDownLatch(1);
+        List<GerritMessageProvider> providers = new ArrayList<GerritMessageProvider>();
+        providers.add(new HungProvider(release));
+        providers.add(new NamedProvider("ok"));
+        List<Run> builds = new ArrayList<Run>();
+        for (int i = 0; i < 6; i++) {
+            builds.add(mock(Run.class));
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Map<Run, List<String>> messages = invoker.getBuildCompletedMessages(providers, builds);
+            long time = System.currentTimeMillis() - start;
+
+            assertTrue("Took " + time + " ms", time < 5000);
+            for (Run build : builds) {
+                assertEquals(Collections.singletonList("ok"), messages.get(build));
+            }
+            assertEquals(builds.size(), invoker.getTimeouts(HungProvider.class.getName()));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Tests that calls are skipped instead of starting more threads when the pool and its queue are full.
+     */
+    @Test
+    public void testRejectedWhenPoolIsFull() {
+        invoker.shutdown();
+        invoker = new MessageProviderInvoker(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<GerritMessageProvider> providers = new ArrayList<GerritMessageProvider>();
+        providers.add(new HungProvider(release));
+        providers.add(new NamedProvider("ok"));
+        try {
+            long start = System.currentTimeMillis();
+            invoker.getBuildCompletedMessages(providers, Arrays.asList(mock(Run.class), mock(Run.class)));
+            long time = System.currentTimeMillis() - start;
+
+            assertTrue("Took " + time + " ms", time < 5000);
+            assertEquals(1, invoker.getRejections(HungProvider.class.getName()));
+            assertEquals(1, invoker.getRejections(NamedProvider.class.getName()));
+            assertEquals(1, invoker.getTimeouts(HungProvider.class.getName()));
+            assertEquals(1, invoker.getTimeouts(NamedProvider.class.getName()));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Tests that a failing provider doesn't stop the others.
+     */
+    @Test
+    public void testFailingProvider() {
+        Run build = mock(Run.class);
+        List<GerritMessageProvider> providers = new ArrayList<GerritMessageProvider>();
+        providers.add(new FailingProvider());
+        providers.add(new NamedProvider("ok"));
+
+        Map<Run, List<String>> messages = invoker.getBuildCompletedMessages(providers,
+                Collections.singletonList(build));
+
+        assertEquals(Collections.singletonList("ok"), messages.get(build));
+        assertEquals(1, invoker.getFailures(FailingProvider.class.getName()));
+    }
+
+    /**
+     * Tests that file comments are capped by count and size.
+     */
+    @Test
+    public void testCap() {
+        Collection<CommentedFile> files = new ArrayList<CommentedFile>();
+        files.add(new CommentedFile("a", Arrays.asList(new LineComment(1, "12345"), new LineComment(2, "12345"))));
+        files.add(new CommentedFile("b", Arrays.asList(new LineComment(1, "12345"), new LineComment(2, "12345"))));
+
+        Collection<CommentedFile> byCount = MessageProviderInvoker.cap(files, 3, 1000, null);
+        assertEquals(2, byCount.size());
+        assertEquals(3, countComments(byCount));
+
+        Collection<CommentedFile> bySize = MessageProviderInvoker.cap(files, 1000, 12, null);
+        assertEquals(1, bySize.size());
+        assertEquals(2, countComments(bySize));
+
+        assertEquals(4, countComments(MessageProviderInvoker.cap(files, 1000, 1000, null)));
+    }
+
+    /**
+     * Counts the line comments.
+     *
+     * @param files the files.
+     * @return the number of line comments.
+     */
+    private static int countComments(Collection<CommentedFile> files) {
+        int count = 0;
+        for (CommentedFile file : files) {
+            count += file.getLineComments().size();
+        }
+        return count;
+    }
+
+    /**
+     * Provides its name.
+     */
+    static class NamedProvider extends GerritMessageProvider {
+        private final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param name the message.
+         */
+        NamedProvider(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getBuildCompletedMessage(Run build) {
+            return name;
+        }
+    }
+
+    /**
+     * Takes too long.
+     */
+    static class SlowProvider extends GerritMessageProvider {
+        @Override
+        public String getBuildCompletedMessage(Run build) {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                return "interrupted";
+            }
+            return "slow";
+        }
+    }
+
+    /**
+     * Hangs until released, ignoring interrupts.
+     */
+    static class HungProvider extends GerritMessageProvider {
+        private final CountDownLatch release;
+
+        /**
+         * Constructor.
+         *
+         * @param release what to wait for.
+         */
+        HungProvider(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getBuildCompletedMessage(Run build) {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+            return "hung";
+        }
+    }
+
+    /**
+     * Throws.
+     */
+    static class FailingProvider extends GerritMessageProvider {
+        @Override
+        public String getBuildCompletedMessage(Run build) {
+            throw new IllegalStateException("Broken");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency.Series;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLatency.Stage;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Kind;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationTrace.Transport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+//CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: Test data.
+
+/**
+ * Tests {@link NotificationLatency}.
+ */
+public class NotificationLatencyTest {
+
+    private NotificationLatency latency;
+
+    /**
+     * Creates a fresh instance for each test.
+     */
+    @Before
+    public void setUp() {
+        latency = new NotificationLatency();
+    }
+
+    /**
+     * Tests that an acknowledged trace is split into the stages.
+     */
+    @Test
+    public void testRecordStages() {
+        NotificationTrace trace = new NotificationTrace(Kind.COMPLETED, "gerrit", Transport.SSH,
+                System.currentTimeMillis() - 1000);
+        long queued = trace.getQueued();
+        latency.record(trace, queued + 500);
+
+        List<Series> series = latency.getSeries();
+        assertEquals(1, series.size());
+        Series s = series.get(0);
+        assertEquals(Kind.COMPLETED, s.getKind());
+        assertEquals("gerrit", s.getServerName());
+        assertEquals(Transport.SSH, s.getTransport());
+        assertEquals(queued - trace.getTriggered(), s.get(Stage.QUEUEING).getMax());
+        assertEquals(0, s.get(Stage.WAITING).getMax());
+        assertEquals(0, s.get(Stage.PREPARING).getMax());
+        assertEquals(500, s.get(Stage.SENDING).getMax());
+        assertEquals(queued + 500 - trace.getTriggered(), s.get(Stage.TOTAL).getMax());
+        assertEquals(1, s.getTotal().getCount());
+    }
+
+    /**
+     * Tests that kinds, servers and transports are kept apart and that failures are counted.
+     */
+    @Test
+    public void testSeriesAndFailures() {
+        long now = System.currentTimeMillis();
+        latency.record(new NotificationTrace(Kind.STARTED, "b", Transport.REST, now), now);
+        latency.record(new NotificationTrace(Kind.STARTED, "a", Transport.SSH, now), now);
+        latency.recordFailure(new NotificationTrace(Kind.STARTED, "a", Transport.SSH, now));
+        latency.record(new NotificationTrace(Kind.COMPLETED, "a", Transport.SSH, now), now);
+
+        List<Series> series = latency.getSeries();
+        assertEquals(3, series.size());
+        assertEquals(Kind.STARTED, series.get(0).getKind());
+        assertEquals("a", series.get(0).getServerName());
+        assertEquals(1, series.get(0).getFailures());
+        assertEquals("b", series.get(1).getServerName());
+        assertEquals(0, series.get(1).getFailures());
+        assertEquals(Kind.COMPLETED, series.get(2).getKind());
+
+        latency.clear();
+        assertEquals(0, latency.getSeries().size());
+    }
+}
@@ -46,6 +46,7 @@ import hudson.model.AbstractProject;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -117,6 +118,9 @@ public class ParameterExpanderTest {
 
         PatchsetCreated event = Setup.createPatchsetCreated();
         BuildsStartedStats stats = Setup.createBuildStartedStats(event);
+        Run coalesced = mock(Run.class);
+        when(coalesced.getUrl()).thenReturn("job/other/7/");
+        stats.setCoalescedBuilds(Collections.singletonList(coalesced));
         IGerritHudsonTriggerConfig config = Setup.createConfig();
 
 
@@ -146,6 +150,7 @@ public class ParameterExpanderTest {
         assertTrue("Missing ENV_CHANGEURL", result.indexOf("ENV_CHANGEURL=http://gerrit/1000") >= 0);
         assertTrue("Missing CUSTOM_MESSAGE", result.indexOf("CUSTOM_MESSAGE_BUILD_STARTED") >= 0);
         assertTrue("Newlines are stripped", result.indexOf("Message\nwith newline") >= 0);
+        assertTrue("Missing coalesced build", result.indexOf("http://localhost/job/other/7/") >= 0);
     }
 
     /**
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.Lane;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.PrioritizedSendQueue.SendSlot;
+import com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+
+/**
+ * Tests {@link PrioritizedSendQueue}.
+ */
+public class PrioritizedSendQueueTest {
+
+    private static final long RETRY_AFTER = 120000L;
+
+    private PrioritizedSendQueue queue;
+    private SendRateLimiter limiter;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a fresh queue for each test.
+     */
+    @Before
+    public void setUp() {
+        limiter = new SendRateLimiter();
+        scheduler = mock(ScheduledExecutorService.class);
+        queue = new PrioritizedSendQueue(limiter, scheduler);
+    }
+
+    /**
+     * Tests that completed notifications are sent before started notifications that were queued earlier.
+     */
+    @Test
+    public void testCompletedBeforeStarted() {
+        AbstractSendCommandJob started1 = mock(AbstractSendCommandJob.class);
+        AbstractSendCommandJob started2 = mock(AbstractSendCommandJob.class);
+        AbstractSendCommandJob completed = mock(AbstractSendCommandJob.class);
+        queue.add(Lane.STARTED, "a", 1, started1);
+        queue.add(Lane.STARTED, "a", 1, started2);
+        queue.add(Lane.COMPLETED, "a", 1, completed);
+
+        assertSame(completed, queue.poll());
+        assertSame(started1, queue.poll());
+        assertSame(started2, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, queue.getLatency(Lane.COMPLETED).getCount());
+        assertEquals(2, queue.getLatency(Lane.STARTED).getCount());
+    }
+
+    /**
+     * Tests that a noisy server doesn't starve another server in the same lane.
+     */
+    @Test
+    public void testServersTakeTurns() {
+        AbstractSendCommandJob[] noisy = new AbstractSendCommandJob[5];
+        for (int i = 0; i < noisy.length; i++) {
+            noisy[i] = mock(AbstractSendCommandJob.class);
+            queue.add(Lane.COMPLETED, "noisy", 1, noisy[i]);
+        }
+        AbstractSendCommandJob quiet = mock(AbstractSendCommandJob.class);
+        queue.add(Lane.COMPLETED, "quiet", 1, quiet);
+
+        assertEquals(6, queue.size(Lane.COMPLETED));
+        assertEquals(Integer.valueOf(5), queue.getServerSizes(Lane.COMPLETED).get("noisy"));
+        assertSame(noisy[0], queue.poll());
+        assertSame(quiet, queue.poll());
+        for (int i = 1; i < noisy.length; i++) {
+            assertSame(noisy[i], queue.poll());
+        }
+        assertEquals(0, queue.size(Lane.COMPLETED));
+    }
+
+    /**
+     * Tests that a server with a higher weight gets a bigger share.
+     */
+    @Test
+    public void testWeightedTurns() {
+        AbstractSendCommandJob[] heavy = new AbstractSendCommandJob[4];
+        AbstractSendCommandJob[] light = new AbstractSendCommandJob[2];
+        for (int i = 0; i < heavy.length; i++) {
+            heavy[i] = mock(AbstractSendCommandJob.class);
+            queue.add(Lane.STARTED, "heavy", 2, heavy[i]);
+        }
+        for (int i = 0; i < light.length; i++) {
+            light[i] = mock(AbstractSendCommandJob.class);
+            queue.add(Lane.STARTED, "light", 1, light[i]);
+        }
+
+        assertSame(heavy[0], queue.poll());
+        assertSame(heavy[1], queue.poll());
+        assertSame(light[0], queue.poll());
+        assertSame(heavy[2], queue.poll());
+        assertSame(heavy[3], queue.poll());
+        assertSame(light[1], queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that a server that has been told to back off is skipped while the others are sent,
+     * and that a placeholder that only finds throttled work is put back instead of waiting.
+     */
+    @Test
+    public void testThrottledServerIsSkipped() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                SendRateLimiter.HTTP_TOO_MANY_REQUESTS, "Too Many Requests");
+        response.setHeader("Retry-After", "120");
+        limiter.backOff("slow", response);
+        AbstractSendCommandJob slow = mock(AbstractSendCommandJob.class);
+        AbstractSendCommandJob fast = mock(AbstractSendCommandJob.class);
+        queue.add(Lane.COMPLETED, "slow", 1, slow);
+        queue.add(Lane.STARTED, "fast", 1, fast);
+
+        assertSame(fast, queue.poll());
+        assertEquals(0, queue.getThrottledFor());
+        assertNull(queue.poll());
+        assertTrue(queue.getThrottledFor() > 60000);
+        assertEquals(1, queue.size(Lane.COMPLETED));
+
+        SendSlot slot = new SendSlot(queue, null);
+        slot.run();
+        verify(slow, never()).run();
+        verify(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that a job queued later waits on the scheduler, not in a lane.
+     */
+    @Test
+    public void testQueueLater() {
+        AbstractSendCommandJob job = mock(AbstractSendCommandJob.class);
+        queue.queueLater(Lane.COMPLETED, "a", null, job, RETRY_AFTER);
+
+        assertEquals(0, queue.size(Lane.COMPLETED));
+        verify(scheduler).schedule(any(Runnable.class), eq(RETRY_AFTER), eq(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that {@link PrioritizedSendQueue#clear()} empties all lanes.
+     */
+    @Test
+    public void testClear() {
+        queue.add(Lane.COMPLETED, "a", 1, mock(AbstractSendCommandJob.class));
+        queue.add(Lane.STARTED, "b", 1, mock(AbstractSendCommandJob.class));
+        queue.clear();
+        assertEquals(0, queue.size(Lane.COMPLETED));
+        assertEquals(0, queue.size(Lane.STARTED));
+        assertNull(queue.poll());
+    }
+}
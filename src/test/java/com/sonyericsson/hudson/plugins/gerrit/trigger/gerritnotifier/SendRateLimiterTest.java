@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendRateLimiter.TokenBucket;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+
+/**
+ * Tests {@link SendRateLimiter}.
+ */
+public class SendRateLimiterTest {
+
+    private SendRateLimiter limiter;
+
+    /**
+     * Creates a fresh limiter for each test.
+     */
+    @Before
+    public void setUp() {
+        limiter = new SendRateLimiter();
+    }
+
+    /**
+     * Tests that a full bucket lets the burst through and then one command per token.
+     */
+    @Test
+    public void testBurstThenRate() {
+        TokenBucket bucket = limiter.getBucket("a");
+        long now = 1000000;
+        //60 per minute is one per second
+        assertEquals(0, bucket.tryTake(60, 3, now));
+        assertEquals(0, bucket.tryTake(60, 3, now));
+        assertEquals(0, bucket.tryTake(60, 3, now));
+        assertEquals(1000, bucket.tryTake(60, 3, now));
+        assertEquals(1000, bucket.tryTake(60, 3, now));
+        //One second later one token is available again, and only one
+        assertEquals(0, bucket.tryTake(60, 3, now + 1000));
+        assertEquals(1000, bucket.tryTake(60, 3, now + 1000));
+    }
+
+    /**
+     * Tests that trying to take a token never puts the bucket in debt,
+     * and that the time without tokens is recorded once a token is taken.
+     */
+    @Test
+    public void testTryTake() {
+        TokenBucket bucket = limiter.getBucket("a");
+        long now = 1000000;
+        assertEquals(0, bucket.tryTake(60, 2, now));
+        assertEquals(0, bucket.tryTake(60, 2, now));
+        assertEquals(1000, bucket.tryTake(60, 2, now));
+        assertEquals(500, bucket.tryTake(60, 2, now + 500));
+        assertEquals(0, bucket.tryTake(60, 2, now + 1000));
+        assertEquals(3, bucket.getThrottledWait().getCount());
+        assertEquals(1000, bucket.getThrottledWait().getMax());
+    }
+
+    /**
+     * Tests that no limit means no wait.
+     */
+    @Test
+    public void testNoLimit() {
+        TokenBucket bucket = limiter.getBucket("a");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.tryTake(0, 1, 1000));
+        }
+    }
+
+    /**
+     * Tests that a 429 with Retry-After in seconds blocks the server, and only that server.
+     */
+    @Test
+    public void testBackOffOnTooManyRequests() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                SendRateLimiter.HTTP_TOO_MANY_REQUESTS, "Too Many Requests");
+        response.setHeader("Retry-After", "120");
+        long before = System.currentTimeMillis();
+        assertTrue(limiter.backOff("a", response));
+
+        long wait = limiter.getBucket("a").tryTake(0, 1, before);
+        assertTrue(wait >= 120000);
+        assertEquals(0, limiter.getBucket("b").tryTake(0, 1, before));
+    }
+
+    /**
+     * Tests that other responses, or ones without a usable Retry-After, are ignored.
+     */
+    @Test
+    public void testNoBackOff() {
+        HttpResponse ok = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpURLConnection.HTTP_OK, "OK");
+        ok.setHeader("Retry-After", "120");
+        assertFalse(limiter.backOff("a", ok));
+        HttpResponse unavailable = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                HttpURLConnection.HTTP_UNAVAILABLE, "Unavailable");
+        assertFalse(limiter.backOff("a", unavailable));
+        unavailable.setHeader("Retry-After", "soon");
+        assertFalse(limiter.backOff("a", unavailable));
+        assertEquals(0, limiter.getBucket("a").tryTake(0, 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * Tests that Retry-After as an HTTP date is understood.
+     */
+    @Test
+    public void testRetryAfterDate() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                HttpURLConnection.HTTP_UNAVAILABLE, "Unavailable");
+        response.setHeader("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT");
+        long now = 1445412420000L; //07:27:00
+        assertEquals(60000, SendRateLimiter.getRetryAfter(response, now));
+    }
+}
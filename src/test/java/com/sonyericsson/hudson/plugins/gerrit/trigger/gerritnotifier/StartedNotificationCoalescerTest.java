@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+
+/**
+ * Tests {@link StartedNotificationCoalescer}.
+ */
+public class StartedNotificationCoalescerTest {
+
+    private ScheduledExecutorService scheduler;
+    private StartedNotificationCoalescer.Sender sender;
+    private StartedNotificationCoalescer coalescer;
+    private GerritTriggeredEvent event;
+    private TaskListener listener;
+
+    /**
+     * Creates a fresh coalescer for each test.
+     */
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        sender = mock(StartedNotificationCoalescer.Sender.class);
+        coalescer = new StartedNotificationCoalescer(scheduler, sender);
+        event = mock(GerritTriggeredEvent.class);
+        listener = mock(TaskListener.class);
+    }
+
+    /**
+     * Tests that all builds started within the window result in one notification with the latest stats
+     * that carries the other builds.
+     */
+    @Test
+    public void testOneNotificationPerWindow() {
+        Run build1 = mock(Run.class);
+        Run build2 = mock(Run.class);
+        Run build3 = mock(Run.class);
+        BuildsStartedStats stats3 = new BuildsStartedStats(event, 3, 3);
+        coalescer.add(build1, listener, event, new BuildsStartedStats(event, 3, 1), 5000);
+        coalescer.add(build2, listener, event, new BuildsStartedStats(event, 3, 2), 5000);
+        coalescer.add(build3, listener, event, stats3, 5000);
+
+        verify(scheduler, times(1)).schedule(any(Runnable.class), eq(5000L), eq(TimeUnit.MILLISECONDS));
+        assertEquals(1, coalescer.size());
+
+        coalescer.flush(event);
+        verify(sender, times(1)).send(same(build3), same(listener), same(event), same(stats3), anyLong());
+        assertEquals(Arrays.asList(build1, build2), stats3.getCoalescedBuilds());
+        assertEquals(0, coalescer.size());
+
+        coalescer.flush(event);
+        verify(sender, times(1)).send(any(Run.class), any(TaskListener.class),
+                any(GerritTriggeredEvent.class), any(BuildsStartedStats.class), anyLong());
+    }
+
+    /**
+     * Tests that the pending notification is dropped when the builds complete within the window.
+     */
+    @Test
+    public void testDroppedWhenCompleted() {
+        coalescer.add(mock(Run.class), listener, event, new BuildsStartedStats(event, 2, 1), 5000);
+
+        assertTrue(coalescer.cancel(event));
+        assertFalse(coalescer.cancel(event));
+        coalescer.flush(event);
+
+        verifyZeroInteractions(sender);
+    }
+
+    /**
+     * Tests that different events get separate windows.
+     */
+    @Test
+    public void testSeparateEvents() {
+        GerritTriggeredEvent other = mock(GerritTriggeredEvent.class);
+        coalescer.add(mock(Run.class), listener, event, new BuildsStartedStats(event, 1, 1), 5000);
+        coalescer.add(mock(Run.class), listener, other, new BuildsStartedStats(other, 1, 1), 5000);
+
+        verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        coalescer.cancel(event);
+        coalescer.flush(event);
+        coalescer.flush(other);
+
+        verify(sender, never()).send(any(Run.class), any(TaskListener.class), same(event),
+                any(BuildsStartedStats.class), anyLong());
+        verify(sender).send(any(Run.class), any(TaskListener.class), same(other), any(BuildsStartedStats.class),
+                anyLong());
+    }
+}
@@ -370,6 +370,25 @@ public class BuildMemoryTest {
         assertNull(instance.getMemoryImprint(event));
     }
 
+    /**
+     * Tests that interesting decisions are only remembered while the event is in memory.
+     */
+    @Test
+    public void testInterestingDecision() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+
+        instance.setInterestingDecision(event, project, true);
+        assertNull(instance.getInterestingDecision(event, project));
+
+        instance.triggered(event, project);
+        instance.setInterestingDecision(event, project, false);
+        assertEquals(Boolean.FALSE, instance.getInterestingDecision(event, project));
+
+        instance.forget(event);
+        assertNull(instance.getInterestingDecision(event, project));
+    }
+
     /**
      * Tests the isBuilding method of the class {@link BuildMemory}.
      * With one memories.
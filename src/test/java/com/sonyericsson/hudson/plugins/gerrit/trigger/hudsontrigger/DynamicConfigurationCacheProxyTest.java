@@ -1,19 +1,35 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritDynamicUrlProcessor.FetchResult;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.Branch;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareType;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.FilePath;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.Topic;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -23,30 +39,36 @@ import static org.powermock.api.mockito.PowerMockito.verifyStatic;
  * Tests for {@link DynamicConfigurationCacheProxy}.
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ GerritDynamicUrlProcessor.class, GerritTriggerTimer.class })
+@PrepareForTest(GerritDynamicUrlProcessor.class)
 public class DynamicConfigurationCacheProxyTest {
 
-    private static final long FORCE_REFRESH_INTERVAL = -1000L;
+    private static final long TIMEOUT = 10000L;
 
     /**
-     * Cleans the cache and sets mocks before every test.
+     * Where the parsed configurations are stored.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DynamicConfigurationCacheProxy proxy;
+
+    /**
+     * Creates a cache that does not store configurations and sets mocks before every test.
      * @throws Exception if so.
      */
     @Before
     public void setUp() throws Exception {
-        DynamicConfigurationCacheProxy.getInstance().clear();
+        proxy = new DynamicConfigurationCacheProxy(null);
         PowerMockito.mockStatic(GerritDynamicUrlProcessor.class);
     }
 
     /**
-     * Sets refresh interval.
-     * @param refreshInternal refresh interval for dynamic trigger
+     * A fetch result without validators.
+     * @param projects the projects.
+     * @return the result.
      */
-    private void setRefreshInternal(long refreshInternal) {
-        PowerMockito.mockStatic(GerritTriggerTimer.class);
-        GerritTriggerTimer timer = mock(GerritTriggerTimer.class);
-        when(GerritTriggerTimer.getInstance()).thenReturn(timer);
-        when(timer.calculateAverageDynamicConfigRefreshInterval()).thenReturn(refreshInternal);
+    private static FetchResult result(List<GerritProject> projects) {
+        return new FetchResult(projects, null, null);
     }
 
     /**
@@ -56,26 +78,28 @@ public class DynamicConfigurationCacheProxyTest {
     @Test
     public void fetchDirectlyWithoutCache() throws Exception {
         List<GerritProject> expected = Collections.singletonList(mock(GerritProject.class));
-        when(GerritDynamicUrlProcessor.fetch(anyString())).thenReturn(expected);
+        when(GerritDynamicUrlProcessor.fetchIfModified(anyString(), anyString(), anyString()))
+                .thenReturn(result(expected));
 
-        List<GerritProject> actual = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache("someUrl");
+        assertNull(proxy.getWithoutFetching("someUrl"));
+        List<GerritProject> actual = proxy.refresh("someUrl");
 
         assertEquals(expected, actual);
     }
 
     /**
-     * Tests the case when cache is non-empty, but record is outdated.
+     * Tests that every refresh fetches, also when the cache is non-empty.
      * @throws Exception if so.
      */
     @Test
     public void fetchDirectlyWithCache() throws Exception {
         List<GerritProject> gerritProjects1 = Collections.singletonList(mock(GerritProject.class));
         List<GerritProject> gerritProjects2 = Collections.singletonList(mock(GerritProject.class));
-        when(GerritDynamicUrlProcessor.fetch(anyString())).thenReturn(gerritProjects1).thenReturn(gerritProjects2);
-        setRefreshInternal(FORCE_REFRESH_INTERVAL);
+        when(GerritDynamicUrlProcessor.fetchIfModified(anyString(), anyString(), anyString()))
+                .thenReturn(result(gerritProjects1)).thenReturn(result(gerritProjects2));
 
-        List<GerritProject> res1 = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache("someUrl");
-        List<GerritProject> res2 = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache("someUrl");
+        List<GerritProject> res1 = proxy.refresh("someUrl");
+        List<GerritProject> res2 = proxy.refresh("someUrl");
 
         assertNotEquals(res1, res2);
         assertEquals(gerritProjects1, res1);
@@ -84,23 +108,148 @@ public class DynamicConfigurationCacheProxyTest {
     }
 
     /**
-     * Tests the case then cache is non-empty and record is still valid.
+     * Tests that the cached configuration is read without fetching, and forgotten when removed.
      * @throws Exception if so.
      */
     @Test
-    public void fetchThroughCache() throws Exception {
-        PowerMockito.mockStatic(GerritDynamicUrlProcessor.class);
+    public void getWithoutFetching() throws Exception {
         List<GerritProject> gerritProjects1 = Collections.singletonList(mock(GerritProject.class));
         List<GerritProject> gerritProjects2 = Collections.singletonList(mock(GerritProject.class));
-        when(GerritDynamicUrlProcessor.fetch(anyString())).thenReturn(gerritProjects1).thenReturn(gerritProjects2);
+        when(GerritDynamicUrlProcessor.fetchIfModified(anyString(), anyString(), anyString()))
+                .thenReturn(result(gerritProjects1)).thenReturn(result(gerritProjects2));
 
-        List<GerritProject> res1 = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache("someUrl");
-        List<GerritProject> res2 = DynamicConfigurationCacheProxy.getInstance().fetchThroughCache("someUrl");
+        List<GerritProject> res1 = proxy.refresh("someUrl");
+        List<GerritProject> res2 = proxy.getWithoutFetching("someUrl");
 
         assertEquals(gerritProjects1, res1);
         assertEquals(gerritProjects1, res2);
-        assertNotEquals(gerritProjects2, res2);
+        verifyStatic();
+        GerritDynamicUrlProcessor.fetchIfModified(anyString(), anyString(), anyString());
+
+        proxy.remove("someUrl");
+        assertNull(proxy.getWithoutFetching("someUrl"));
+    }
+
+    /**
+     * Tests that the validators of the last fetch are sent every time and a not modified response keeps the projects.
+     * @throws Exception if so.
+     */
+    @Test
+    public void fetchConditionally() throws Exception {
+        List<GerritProject> gerritProjects = Collections.singletonList(mock(GerritProject.class));
+        when(GerritDynamicUrlProcessor.fetchIfModified(eq("someUrl"), (String)isNull(), (String)isNull()))
+                .thenReturn(new FetchResult(gerritProjects, "\"v1\"", "Mon, 01 Jan 2018 00:00:00 GMT"));
+        when(GerritDynamicUrlProcessor.fetchIfModified("someUrl", "\"v1\"", "Mon, 01 Jan 2018 00:00:00 GMT"))
+                .thenReturn(new FetchResult(null, "\"v1\"", "Mon, 01 Jan 2018 00:00:00 GMT"));
+
+        assertEquals(gerritProjects, proxy.refresh("someUrl"));
+        assertEquals(gerritProjects, proxy.refresh("someUrl"));
+        assertEquals(gerritProjects, proxy.refresh("someUrl"));
+
+        verifyStatic(times(2));
+        GerritDynamicUrlProcessor.fetchIfModified("someUrl", "\"v1\"", "Mon, 01 Jan 2018 00:00:00 GMT");
+    }
 
+    /**
+     * Tests that a fetched configuration is stored and restored by a new cache without fetching,
+     * and that the first fetch after that is conditional.
+     * @throws Exception if so.
+     */
+    @Test
+    public void restoreStoredConfiguration() throws Exception {
+        File storage = folder.newFolder();
+        List<GerritProject> gerritProjects = Collections.singletonList(new GerritProject(CompareType.PLAIN,
+                "project", Collections.singletonList(new Branch(CompareType.ANT, "**")),
+                Collections.<Topic>emptyList(), Collections.<FilePath>emptyList(),
+                Collections.<FilePath>emptyList(), false));
+        when(GerritDynamicUrlProcessor.fetchIfModified(eq("someUrl"), (String)isNull(), (String)isNull()))
+                .thenReturn(new FetchResult(gerritProjects, "\"v1\"", null));
+        when(GerritDynamicUrlProcessor.fetchIfModified("someUrl", "\"v1\"", null))
+                .thenReturn(new FetchResult(null, "\"v1\"", null));
+        proxy = new DynamicConfigurationCacheProxy(storage);
+        assertNull(proxy.getWithoutFetching("someUrl"));
+        proxy.refresh("someUrl");
+
+        proxy = new DynamicConfigurationCacheProxy(storage);
+        List<GerritProject> restored = proxy.getWithoutFetching("someUrl");
+
+        assertEquals(1, restored.size());
+        assertEquals("project", restored.get(0).getPattern());
+        assertEquals("**", restored.get(0).getBranches().get(0).getPattern());
+        assertEquals("project", proxy.refresh("someUrl").get(0).getPattern());
         verifyStatic();
+        GerritDynamicUrlProcessor.fetchIfModified("someUrl", "\"v1\"", null);
+    }
+
+    /**
+     * Tests that removing a url also deletes its stored configuration.
+     * @throws Exception if so.
+     */
+    @Test
+    public void removeStoredConfiguration() throws Exception {
+        File storage = folder.newFolder();
+        List<GerritProject> gerritProjects = Collections.singletonList(new GerritProject(CompareType.PLAIN,
+                "project", Collections.singletonList(new Branch(CompareType.ANT, "**")),
+                Collections.<Topic>emptyList(), Collections.<FilePath>emptyList(),
+                Collections.<FilePath>emptyList(), false));
+        when(GerritDynamicUrlProcessor.fetchIfModified(eq("someUrl"), (String)isNull(), (String)isNull()))
+                .thenReturn(new FetchResult(gerritProjects, "\"v1\"", null));
+        proxy = new DynamicConfigurationCacheProxy(storage);
+        proxy.refresh("someUrl");
+        assertEquals(1, storage.list().length);
+
+        proxy.remove("someUrl");
+
+        assertEquals(0, storage.list().length);
+        assertNull(new DynamicConfigurationCacheProxy(storage).getWithoutFetching("someUrl"));
+    }
+
+    /**
+     * Tests that the stored configuration is returned while the first fetch of the url is waiting for the server.
+     * @throws Exception if so.
+     */
+    @Test(timeout = TIMEOUT)
+    public void restoreWhileFetching() throws Exception {
+        File storage = folder.newFolder();
+        List<GerritProject> gerritProjects = Collections.singletonList(new GerritProject(CompareType.PLAIN,
+                "project", Collections.singletonList(new Branch(CompareType.ANT, "**")),
+                Collections.<Topic>emptyList(), Collections.<FilePath>emptyList(),
+                Collections.<FilePath>emptyList(), false));
+        when(GerritDynamicUrlProcessor.fetchIfModified(eq("someUrl"), (String)isNull(), (String)isNull()))
+                .thenReturn(new FetchResult(gerritProjects, "\"v1\"", null));
+        proxy = new DynamicConfigurationCacheProxy(storage);
+        proxy.refresh("someUrl");
+
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch respond = new CountDownLatch(1);
+        when(GerritDynamicUrlProcessor.fetchIfModified("someUrl", "\"v1\"", null))
+                .thenAnswer(new Answer<FetchResult>() {
+                    @Override
+                    public FetchResult answer(InvocationOnMock invocation) throws Throwable {
+                        fetching.countDown();
+                        respond.await();
+                        return new FetchResult(null, "\"v1\"", null);
+                    }
+                });
+        final DynamicConfigurationCacheProxy restarted = new DynamicConfigurationCacheProxy(storage);
+        Thread fetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    restarted.refresh("someUrl");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        fetcher.start();
+        try {
+            assertTrue(fetching.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            List<GerritProject> restored = restarted.getWithoutFetching("someUrl");
+            assertEquals("project", restored.get(0).getPattern());
+        } finally {
+            respond.countDown();
+            fetcher.join();
+        }
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
+import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.util.TimeUnit2;
+import jenkins.model.Jenkins;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link GerritTriggerTimer}.
+ */
+public class GerritTriggerTimerTest {
+
+    /**
+     * Where the parsed configurations are stored.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File storage;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture future;
+    private GerritTriggerTimer timer;
+
+    /**
+     * Creates a timer on a mocked scheduler.
+     *
+     * @throws Exception if so.
+     */
+    @Before
+    public void setUp() throws Exception {
+        storage = folder.newFolder();
+        scheduler = mock(ScheduledExecutorService.class);
+        future = mock(ScheduledFuture.class);
+        doReturn(future).when(scheduler).scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(),
+                any(TimeUnit.class));
+        timer = new GerritTriggerTimer(scheduler, new DynamicConfigurationCacheProxy(storage));
+    }
+
+    /**
+     * A trigger with a dynamic configuration URL.
+     *
+     * @param url the URL.
+     * @return the trigger.
+     */
+    private static GerritTrigger trigger(String url) {
+        GerritTrigger trigger = mock(GerritTrigger.class);
+        when(trigger.getTriggerConfigURL()).thenReturn(url);
+        return trigger;
+    }
+
+    /**
+     * Tests that triggers using the same URL share one refresh, which is cancelled with the last trigger.
+     */
+    @Test
+    public void shouldScheduleOneRefreshPerUrl() {
+        GerritTrigger first = trigger("http://example.com/config");
+        GerritTrigger second = trigger("http://example.com/config");
+        GerritTrigger other = trigger("http://example.com/other");
+
+        timer.register(first);
+        timer.register(second);
+        timer.register(other);
+
+        assertEquals(2, timer.getRefreshedUrlCount());
+        verify(scheduler, times(2)).scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(),
+                eq(TimeUnit.MILLISECONDS));
+
+        timer.unregister(first);
+        verify(future, never()).cancel(anyBoolean());
+        timer.unregister(second);
+        verify(future).cancel(false);
+        assertEquals(1, timer.getRefreshedUrlCount());
+    }
+
+    /**
+     * Tests that a trigger registered again moves to its new URL and one without a URL is not scheduled.
+     */
+    @Test
+    public void shouldMoveTriggerToNewUrl() {
+        GerritTrigger trigger = trigger("http://example.com/config");
+        timer.register(trigger);
+        when(trigger.getTriggerConfigURL()).thenReturn("http://example.com/other");
+        timer.register(trigger);
+
+        assertEquals(1, timer.getRefreshedUrlCount());
+        verify(future).cancel(false);
+
+        timer.register(trigger(""));
+        assertEquals(1, timer.getRefreshedUrlCount());
+    }
+
+    /**
+     * Tests that a URL without a cached or stored configuration is fetched at once.
+     */
+    @Test
+    public void shouldFetchNewUrlAtOnce() {
+        timer.register(trigger("http://example.com/config"));
+
+        ArgumentCaptor<Long> period = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), eq(0L), period.capture(),
+                eq(TimeUnit.MILLISECONDS));
+        long expectedPeriod = TimeUnit2.SECONDS.toMillis(GerritDefaultValues.DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL);
+        assertEquals(expectedPeriod, (long)period.getValue());
+    }
+
+    /**
+     * Tests that the first refresh of a stored configuration is spread within one refresh interval.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void shouldJitterFirstRefresh() throws Exception {
+        String url = "http://example.com/config";
+        new XmlFile(Jenkins.XSTREAM, new File(storage, Util.getDigestOf(url) + ".xml")).write(
+                new DynamicConfigurationCacheProxy.StoredConfiguration(url, null, null,
+                        new ArrayList<GerritProject>()));
+        timer.register(trigger(url));
+
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Long> period = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), delay.capture(), period.capture(),
+                eq(TimeUnit.MILLISECONDS));
+        long expectedPeriod = TimeUnit2.SECONDS.toMillis(GerritDefaultValues.DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL);
+        assertEquals(expectedPeriod, (long)period.getValue());
+        assertTrue(delay.getValue() >= GerritTriggerTimer.DELAY_MILLISECONDS);
+        assertTrue(delay.getValue() <= GerritTriggerTimer.DELAY_MILLISECONDS + expectedPeriod);
+    }
+}
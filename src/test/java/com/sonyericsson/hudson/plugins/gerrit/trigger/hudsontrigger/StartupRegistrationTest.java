@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
+import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
+import hudson.init.InitMilestone;
+import jenkins.model.Jenkins;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link StartupRegistration}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ Jenkins.class, PluginImpl.class })
+public class StartupRegistrationTest {
+
+    /**
+     * Tests that listeners are collected while the jobs load and then registered at once.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRegisterCollectedListenersAtOnce() {
+        PowerMockito.mockStatic(Jenkins.class);
+        Jenkins jenkins = PowerMockito.mock(Jenkins.class);
+        PowerMockito.when(Jenkins.getInstance()).thenReturn(jenkins);
+        PowerMockito.when(jenkins.getInitLevel()).thenReturn(InitMilestone.PLUGINS_STARTED);
+        PowerMockito.mockStatic(PluginImpl.class);
+        GerritHandler handler = PowerMockito.mock(GerritHandler.class);
+        PowerMockito.when(PluginImpl.getHandler_()).thenReturn(handler);
+        StartupRegistration startup = StartupRegistration.getInstance();
+
+        assertTrue(startup.collect(new EventListener("first")));
+        assertTrue(startup.collect(new EventListener("second")));
+        assertTrue(startup.collect(new EventListener("first")));
+        assertTrue(startup.collect(new EventListener("stopped")));
+        assertTrue(startup.discard(new EventListener("stopped")));
+        startup.triggerStarted(1000000);
+
+        PowerMockito.when(jenkins.getInitLevel()).thenReturn(InitMilestone.JOB_LOADED);
+        startup.registerCollected();
+
+        ArgumentCaptor<Collection> listeners = ArgumentCaptor.forClass(Collection.class);
+        verify(handler).addEventListeners(listeners.capture());
+        assertEquals(Arrays.<GerritEventListener>asList(new EventListener("first"), new EventListener("second")),
+                new ArrayList<GerritEventListener>(listeners.getValue()));
+        assertEquals(2, startup.getListenersRegistered());
+        assertEquals(1, startup.getTriggersStarted());
+        assertEquals(1, startup.getTriggerStartMillis());
+        assertFalse(startup.collect(new EventListener("late")));
+        assertFalse(startup.discard(new EventListener("late")));
+    }
+}
@@ -28,6 +28,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Config;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.ReplicationConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.BuildCancellationPolicy;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.SupersessionPolicy;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
 import com.sonymobile.tools.gerrit.gerritevents.ssh.Authentication;
@@ -456,6 +457,46 @@ public class MockGerritHudsonTriggerConfig implements
         return null;
     }
 
+    @Override
+    public int getSendQueueWeight() {
+        return Config.DEFAULT_SEND_QUEUE_WEIGHT;
+    }
+
+    @Override
+    public int getBuildStartedCoalesceWindow() {
+        return Config.DEFAULT_BUILD_STARTED_COALESCE_WINDOW;
+    }
+
+    @Override
+    public int getNotificationRateLimit() {
+        return Config.DEFAULT_NOTIFICATION_RATE_LIMIT;
+    }
+
+    @Override
+    public int getNotificationBurst() {
+        return Config.DEFAULT_NOTIFICATION_BURST;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackWindow() {
+        return Config.DEFAULT_MISSED_EVENTS_PLAYBACK_WINDOW;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackRate() {
+        return Config.DEFAULT_MISSED_EVENTS_PLAYBACK_RATE;
+    }
+
+    @Override
+    public int getMissedEventsPlaybackMaxQueued() {
+        return Config.DEFAULT_MISSED_EVENTS_PLAYBACK_MAX_QUEUED;
+    }
+
+    @Override
+    public SupersessionPolicy getMissedEventsPlaybackPolicy() {
+        return Config.DEFAULT_MISSED_EVENTS_PLAYBACK_POLICY;
+    }
+
     @Override
     public boolean isRestCodeReview() {
         return true;
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: Test data.
+
+/**
+ * Tests {@link EventTimeSlice}.
+ */
+public class EventTimeSliceTest {
+
+    /**
+     * Tests that a slice written in the compact format is read back the same.
+     *
+     * @throws IOException if so.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        PatchsetCreated first = Setup.createPatchsetCreated("server", "project", "refs/heads/master");
+        PatchsetCreated second = Setup.createPatchsetCreated("server", "other", "refs/heads/master");
+        second.getPatchSet().setNumber("2");
+        EventTimeSlice slice = new EventTimeSlice(1430244884000L);
+        slice.addEvent(first);
+
+        StringWriter writer = new StringWriter();
+        slice.write(writer);
+        EventTimeSlice read = EventTimeSlice.read(new BufferedReader(new StringReader(writer.toString())));
+
+        assertEquals(1430244884000L, read.getTimeSlice());
+        assertEquals(slice.getFingerprints(), read.getFingerprints());
+        assertTrue(read.contains(first));
+        assertFalse(read.contains(second));
+    }
+
+    /**
+     * Tests that an empty file gives no slice and that garbage is an error.
+     *
+     * @throws IOException if so.
+     */
+    @Test(expected = IOException.class)
+    public void testReadEmptyAndGarbage() throws IOException {
+        assertNull(EventTimeSlice.read(new BufferedReader(new StringReader(""))));
+        EventTimeSlice.read(new BufferedReader(new StringReader("<xml/>\n")));
+    }
+}
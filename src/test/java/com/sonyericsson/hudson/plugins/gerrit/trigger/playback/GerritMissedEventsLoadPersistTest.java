@@ -57,6 +57,8 @@ import java.io.PrintWriter;
 import java.util.Date;
 import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -229,6 +231,37 @@ public class GerritMissedEventsLoadPersistTest {
         assertNotNull(missingEventsPlaybackManager.serverTimestamp);
     }
 
+    /**
+     * Given a checkpoint file
+     * When an event is received
+     * Then the timestamp is written to the checkpoint file in place of the old XML file
+     * And it is loaded from there by a new manager.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testFlushAndLoadCheckpoint() throws IOException {
+        File checkpoint = File.createTempFile("gerrit-server-timestamps", ".txt");
+        checkpoint.deleteOnExit();
+        assertTrue(checkpoint.delete());
+        PowerMockito.when(GerritMissedEventsPlaybackManager.getCheckpointFile(anyString())).thenReturn(checkpoint);
+
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager
+                = new GerritMissedEventsPlaybackManager("defaultServer");
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/heads/master");
+        missingEventsPlaybackManager.gerritEvent(patchsetCreated);
+        assertTrue(missingEventsPlaybackManager.flush());
+
+        assertTrue(checkpoint.exists());
+        assertFalse(GerritMissedEventsPlaybackManager.getConfigXml("defaultServer").exists());
+
+        GerritMissedEventsPlaybackManager reloaded = new GerritMissedEventsPlaybackManager("defaultServer");
+        reloaded.load();
+        assertNotNull(reloaded.serverTimestamp);
+        assertEquals(patchsetCreated.getEventCreatedOn().getTime(), reloaded.serverTimestamp.getTimeSlice());
+        assertTrue(reloaded.serverTimestamp.contains(patchsetCreated));
+    }
+
     /**
      * Return a missingEventsPlaybackManager.
      * @return missingEventsPlaybackManager.
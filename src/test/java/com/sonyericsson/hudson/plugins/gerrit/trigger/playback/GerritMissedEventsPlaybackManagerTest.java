@@ -33,6 +33,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.GerritPluginChecker;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.MockPluginCheckerConfig;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeMerged;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
 
@@ -53,13 +54,18 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
@@ -92,6 +98,8 @@ public class GerritMissedEventsPlaybackManagerTest {
     private XmlFile xmlFile;
     private static final int SLEEPTIME = 500;
     private static final int HTTPOK = 200;
+    private static final int HTTPERROR = 500;
+    private static final long PLAYBACK_TIMEOUT = 10000;
 
     /**
      * Default constructor.
@@ -334,6 +342,176 @@ public class GerritMissedEventsPlaybackManagerTest {
 
     }
 
+    /**
+     * Given a response with events on separate lines
+     * When it is read
+     * Then each event is handed over as it is read
+     * And lines that aren't events are skipped.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testReadEventsLineByLine() throws IOException {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager =
+                setupManager();
+        String event = "{\"type\":\"patchset-created\",\"change\":{\"project\":\"testProject\","
+                + "\"branch\":\"develop\",\"id\":\"Icae2322236e0e521950a0232effda08d6ffcdab7\","
+                + "\"number\":\"392335\"},\"patchSet\":{\"number\":\"%d\",\"revision\":"
+                + "\"607eea8f472235b3ee47483b630003250764dab2\",\"ref\":\"refs/changes/35/392335/%d\"},"
+                + "\"eventCreatedOn\":1413448337}";
+        String body = String.format(event, 1, 1) + "\r\n"
+                + "not json\n"
+                + "\n"
+                + String.format(event, 2, 2);
+
+        final List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>();
+        int count = missingEventsPlaybackManager.readEvents(new StringReader(body),
+                new GerritMissedEventsPlaybackManager.MissedEventHandler() {
+                    @Override
+                    public void handle(GerritTriggeredEvent evt) {
+                        events.add(evt);
+                    }
+                });
+
+        assertEquals(2, count);
+        assertEquals(2, events.size());
+        assertEquals("2", ((PatchsetCreated)events.get(1)).getPatchSet().getNumber());
+        assertEquals("defaultServer", events.get(0).getProvider().getName());
+    }
+
+    /**
+     * Given the events of one playback window
+     * When a change has several patch sets created
+     * Then only the newest patch set is played back.
+     */
+    @Test
+    public void testSkipSuperseded() {
+        PatchsetCreated first = Setup.createPatchsetCreated("defaultServer", "project", "refs/heads/master");
+        PatchsetCreated second = Setup.createPatchsetCreated("defaultServer", "project", "refs/heads/master");
+        second.getPatchSet().setNumber("2");
+        PatchsetCreated other = Setup.createPatchsetCreated("defaultServer", "other", "refs/heads/master");
+        List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>();
+        events.add(first);
+        events.add(other);
+        events.add(second);
+
+        PlaybackProgress progress = new PlaybackProgress(0, 1, 1);
+        List<GerritTriggeredEvent> result = GerritMissedEventsPlaybackManager.skipSuperseded(events, progress);
+
+        assertEquals(2, result.size());
+        assertSame(other, result.get(0));
+        assertSame(second, result.get(1));
+        assertEquals(1, progress.getSuperseded());
+    }
+
+    /**
+     * Given a playback window where a change gets a new patch set and is merged
+     * When superseded events are skipped with the different policies
+     * Then only the policy for open changes skips the events of the merged change.
+     */
+    @Test
+    public void testSkipClosedChanges() {
+        PatchsetCreated first = Setup.createPatchsetCreated("defaultServer", "project", "refs/heads/master");
+        PatchsetCreated second = Setup.createPatchsetCreated("defaultServer", "project", "refs/heads/master");
+        second.getPatchSet().setNumber("2");
+        ChangeMerged merged = Setup.createChangeMerged("defaultServer", "project", "refs/heads/master");
+        PatchsetCreated other = Setup.createPatchsetCreated("defaultServer", "other", "refs/heads/master");
+        List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>();
+        events.add(first);
+        events.add(second);
+        events.add(other);
+        events.add(merged);
+
+        PlaybackProgress progress = new PlaybackProgress(0, 1, 1);
+        assertEquals(4, GerritMissedEventsPlaybackManager.skipSuperseded(events,
+                SupersessionPolicy.NONE, progress).size());
+
+        List<GerritTriggeredEvent> result = GerritMissedEventsPlaybackManager.skipSuperseded(events,
+                SupersessionPolicy.LATEST_PATCHSET, progress);
+        assertEquals(3, result.size());
+        assertSame(second, result.get(0));
+        assertSame(merged, result.get(2));
+        assertEquals(1, progress.getSuperseded());
+
+        progress = new PlaybackProgress(0, 1, 1);
+        result = GerritMissedEventsPlaybackManager.skipSuperseded(events,
+                SupersessionPolicy.LATEST_PATCHSET_OF_OPEN_CHANGES, progress);
+        assertEquals(2, result.size());
+        assertSame(other, result.get(0));
+        assertSame(merged, result.get(1));
+        assertEquals(2, progress.getClosed());
+        assertEquals(0, progress.getSuperseded());
+    }
+
+    /**
+     * Given a playback window
+     * When the events-log URL is built
+     * Then both ends of the window are in it.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testBuildEventsLogURLWindow() throws IOException {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager =
+                setupManager();
+        MockPluginCheckerConfig config = new MockPluginCheckerConfig();
+        config.setGerritFrontEndURL("http://gerrit");
+        long now = System.currentTimeMillis();
+        String url = missingEventsPlaybackManager.buildEventsLogURL(config, new Date(now), new Date(now + 1));
+        assertTrue(url, url.startsWith("http://gerrit/a/plugins/events-log/events/?t1="));
+        assertTrue(url, url.contains("&t2="));
+        assertFalse(url, missingEventsPlaybackManager.buildEventsLogURL(config, new Date(now)).contains("&t2="));
+    }
+
+    /**
+     * Given a playback of missed events that is stopped before all windows are played back
+     * When live events have moved the last-alive timestamp forward
+     * Then the timestamp to write is the playback cursor.
+     */
+    @Test
+    public void testCheckpointStaysAtPlaybackCursor() {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager = setupManager();
+        long from = missingEventsPlaybackManager.getServerTimestamp().getTimeSlice();
+
+        missingEventsPlaybackManager.connectionEstablished();
+        PatchsetCreated live = Setup.createPatchsetCreated("someGerritServer", "someProject", "refs/heads/master");
+        live.setEventCreatedOn(String.valueOf(System.currentTimeMillis() / 1000));
+        missingEventsPlaybackManager.gerritEvent(live);
+        missingEventsPlaybackManager.connectionDown();
+
+        long checkpoint = missingEventsPlaybackManager.getCheckpoint().getTimeSlice();
+        assertTrue("Checkpoint " + checkpoint, checkpoint >= from);
+        assertTrue("Checkpoint " + checkpoint, checkpoint < live.getEventCreatedOn().getTime());
+        assertTrue(missingEventsPlaybackManager.getPlaybackCursor() >= from);
+        assertEquals(live.getEventCreatedOn().getTime(),
+                missingEventsPlaybackManager.getServerTimestamp().getTimeSlice());
+    }
+
+    /**
+     * Given a playback of missed events
+     * When the events-log plugin fails to answer
+     * Then the playback cursor stays at the start of the failed window
+     * So that the next connection plays it back again.
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFailedWindowIsNotSkipped() throws Exception {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager = setupManager();
+        long from = missingEventsPlaybackManager.getServerTimestamp().getTimeSlice();
+        stubFor(get(urlMatching(EVENTS_LOG_CHANGE_EVENTS_URL_REGEXP))
+                .willReturn(aResponse().withStatus(HTTPERROR)));
+
+        missingEventsPlaybackManager.connectionEstablished();
+        long waited = 0;
+        while (missingEventsPlaybackManager.getPlaybackProgress() == null
+                || !missingEventsPlaybackManager.getPlaybackProgress().isFinished()) {
+            assertTrue("Playback did not finish", waited < PLAYBACK_TIMEOUT);
+            Thread.sleep(SLEEPTIME);
+            waited += SLEEPTIME;
+        }
+
+        assertEquals(from, missingEventsPlaybackManager.getPlaybackCursor());
+        assertEquals(from, missingEventsPlaybackManager.getCheckpoint().getTimeSlice());
+    }
+
     /**
      * This tests that the initial `isSupported` state is false.
      */
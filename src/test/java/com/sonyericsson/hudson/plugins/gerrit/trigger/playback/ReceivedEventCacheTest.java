@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: Test data.
+
+/**
+ * Tests {@link ReceivedEventCache}.
+ */
+public class ReceivedEventCacheTest {
+
+    /**
+     * Creates an event for a patch set.
+     *
+     * @param patchSet the patch set number.
+     * @return the event.
+     */
+    private static PatchsetCreated event(int patchSet) {
+        PatchsetCreated event = Setup.createPatchsetCreated("server", "project", "refs/heads/master");
+        event.getPatchSet().setNumber(String.valueOf(patchSet));
+        return event;
+    }
+
+    /**
+     * Tests that an equal event is found, counted as a duplicate and not added twice.
+     */
+    @Test
+    public void testDuplicates() {
+        ReceivedEventCache cache = new ReceivedEventCache(10, 1000);
+        assertTrue(cache.add(event(1), 0));
+        assertFalse(cache.add(event(1), 1));
+        assertFalse(cache.isDuplicate(event(2), 2));
+        assertTrue(cache.isDuplicate(event(1), 3));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getDuplicatesSuppressed());
+    }
+
+    /**
+     * Tests that the oldest events are evicted when the cache is full.
+     */
+    @Test
+    public void testMaxSize() {
+        ReceivedEventCache cache = new ReceivedEventCache(3, 1000);
+        for (int i = 1; i <= 5; i++) {
+            cache.add(event(i), i);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getEvicted());
+        assertFalse(cache.isDuplicate(event(1), 6));
+        assertTrue(cache.isDuplicate(event(5), 6));
+    }
+
+    /**
+     * Tests that events older than the window are evicted.
+     */
+    @Test
+    public void testWindow() {
+        ReceivedEventCache cache = new ReceivedEventCache(10, 1000);
+        cache.add(event(1), 0);
+        cache.add(event(2), 500);
+        assertFalse(cache.isDuplicate(event(1), 1200));
+        assertTrue(cache.isDuplicate(event(2), 1200));
+        assertEquals(1, cache.getEvicted());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getDuplicatesSuppressed());
+    }
+}
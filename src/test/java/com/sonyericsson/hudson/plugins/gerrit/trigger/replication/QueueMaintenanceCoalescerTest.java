@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 CloudBees Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.replication;
+
+import hudson.model.Queue;
+import jenkins.model.Jenkins;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: Test data.
+
+/**
+ * Tests {@link QueueMaintenanceCoalescer}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+public class QueueMaintenanceCoalescerTest {
+
+    private Queue queueMock;
+
+    /**
+     * Mocks the queue.
+     */
+    @Before
+    public void setUp() {
+        queueMock = mock(Queue.class);
+        Jenkins jenkinsMock = mock(Jenkins.class);
+        when(jenkinsMock.getQueue()).thenReturn(queueMock);
+        PowerMockito.mockStatic(Jenkins.class);
+        when(Jenkins.getInstance()).thenReturn(jenkinsMock);
+    }
+
+    /**
+     * Tests that requests made while a maintenance is pending share it
+     * and that a request after it has run schedules a new one.
+     */
+    @Test
+    public void testRequestsAreCoalesced() {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        QueueMaintenanceCoalescer coalescer = new QueueMaintenanceCoalescer(scheduler, 500);
+        coalescer.request();
+        coalescer.request();
+        coalescer.request();
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(1)).schedule(task.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(queueMock, times(0)).maintain();
+        task.getValue().run();
+        verify(queueMock, times(1)).maintain();
+        assertEquals(3, coalescer.getRequested());
+        assertEquals(1, coalescer.getPerformed());
+
+        coalescer.request();
+        verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that the maintenance is done directly without a scheduler.
+     */
+    @Test
+    public void testDirectMaintenance() {
+        QueueMaintenanceCoalescer coalescer = new QueueMaintenanceCoalescer(null, 0);
+        coalescer.request();
+        coalescer.request();
+        verify(queueMock, times(2)).maintain();
+        assertEquals(2, coalescer.getPerformed());
+    }
+}
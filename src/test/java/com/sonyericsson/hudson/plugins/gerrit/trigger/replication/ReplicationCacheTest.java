@@ -25,12 +25,17 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.replication;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.cache.CacheStats;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
@@ -43,6 +48,12 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
  */
 public class ReplicationCacheTest {
 
+    /**
+     * Where the persistent caches are kept.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Test that it should return cached event.
      */
@@ -53,8 +64,36 @@ public class ReplicationCacheTest {
             "someSlave", null);
         replicationCache.put(refReplicated);
 
-        assertEquals(refReplicated,
-            replicationCache.getIfPresent("someServer", "someProject", "refs/changes/1/1/1", "someSlave"));
+        RefReplicated cached = replicationCache.getIfPresent("someServer", "someProject", "refs/changes/1/1/1",
+            "someSlave");
+        assertNotNull(cached);
+        assertEquals("someServer", cached.getProvider().getName());
+        assertEquals("someProject", cached.getProject());
+        assertEquals("refs/changes/1/1/1", cached.getRef());
+        assertEquals("someSlave", cached.getTargetNode());
+        assertEquals(refReplicated.getStatus(), cached.getStatus());
+        assertEquals(refReplicated.getReceivedOn(), cached.getReceivedOn());
+    }
+
+    /**
+     * Test that the cache does not grow beyond its max size and that hits, misses and evictions are counted.
+     */
+    @Test
+    public void shouldEvictWhenFullAndRecordStats() {
+        ReplicationCache replicationCache = ReplicationCache.Factory.createCache(1, TimeUnit.HOURS, 2, null);
+        for (int i = 1; i <= 5; i++) {
+            replicationCache.put(Setup.createRefReplicatedEvent("someProject", "refs/changes/1/1/" + i,
+                "someServer", "someSlave", RefReplicated.SUCCEEDED_STATUS));
+        }
+        assertTrue(replicationCache.size() <= 2);
+        assertNotNull(replicationCache.getIfPresent("someServer", "someProject", "refs/changes/1/1/5", "someSlave"));
+        assertNull(replicationCache.getIfPresent("someServer", "someProject", "refs/changes/1/1/1", "someSlave"));
+
+        CacheStats stats = replicationCache.getStats();
+        assertNotNull(stats);
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(3, stats.evictionCount());
     }
 
     /**
@@ -96,4 +135,51 @@ public class ReplicationCacheTest {
         assertFalse(replicationCache.isExpired(System.currentTimeMillis()));
         assertTrue(replicationCache.isExpired(System.currentTimeMillis() - 200));
     }
+
+    /**
+     * Test that the events in a persistent cache are still there when it is created again, except the expired ones.
+     */
+    @Test
+    public void shouldLoadPersistedEvents() {
+        File file = new File(folder.getRoot(), ReplicationCache.PERSISTENT_FILE_NAME);
+        ReplicationCache replicationCache = ReplicationCache.Factory.createCache(1, TimeUnit.HOURS,
+            ReplicationCache.DEFAULT_MAX_SIZE, file);
+        RefReplicated refReplicated = Setup.createRefReplicatedEvent("someProject", "refs/changes/1/1/1", "someServer",
+            "someSlave", RefReplicated.SUCCEEDED_STATUS);
+        replicationCache.put(refReplicated);
+        RefReplicated old = Setup.createRefReplicatedEvent("someProject", "refs/changes/2/2/1", "someServer",
+            "someSlave", RefReplicated.SUCCEEDED_STATUS);
+        old.setReceivedOn(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        replicationCache.put(old);
+        replicationCache.close();
+
+        replicationCache = ReplicationCache.Factory.createCache(1, TimeUnit.HOURS,
+            ReplicationCache.DEFAULT_MAX_SIZE, file);
+        RefReplicated loaded = replicationCache.getIfPresent("someServer", "someProject", "refs/changes/1/1/1",
+            "someSlave");
+        assertNotNull(loaded);
+        assertEquals(refReplicated.getReceivedOn(), loaded.getReceivedOn());
+        assertEquals(RefReplicated.SUCCEEDED_STATUS, loaded.getStatus());
+        assertEquals("someServer", loaded.getProvider().getName());
+        assertNull(replicationCache.getIfPresent("someServer", "someProject", "refs/changes/2/2/1", "someSlave"));
+        replicationCache.close();
+    }
+
+    /**
+     * Test that an event survives being written to and read from a line in the log.
+     */
+    @Test
+    public void shouldFormatAndParseLine() {
+        RefReplicated refReplicated = Setup.createRefReplicatedEvent("someProject", "refs/heads/master", "someServer",
+            "someSlave", null);
+        RefReplicated parsed = ReplicationCache.parse(ReplicationCache.format(refReplicated));
+        assertNotNull(parsed);
+        assertEquals("someProject", parsed.getProject());
+        assertEquals("refs/heads/master", parsed.getRef());
+        assertEquals("someSlave", parsed.getTargetNode());
+        assertNull(parsed.getStatus());
+        assertNull(ReplicationCache.parse("broken"));
+        refReplicated.setProject("some\tProject");
+        assertNull(ReplicationCache.format(refReplicated));
+    }
 }
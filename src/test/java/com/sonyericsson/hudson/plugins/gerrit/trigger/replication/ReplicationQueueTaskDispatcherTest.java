@@ -23,6 +23,7 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.replication;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -43,6 +44,8 @@ import hudson.model.Queue.Item;
 import hudson.model.Queue.WaitingItem;
 import hudson.model.queue.CauseOfBlockage;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -55,7 +58,9 @@ import jenkins.model.Jenkins;
 
 import jenkins.model.TransientActionFactory;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -93,8 +98,16 @@ public class ReplicationQueueTaskDispatcherTest {
     private GerritTrigger gerritTriggerMock;
     private AbstractProject<?, ?> abstractProjectMock;
 
+    /**
+     * Where the persistent replication cache is kept.
+     */
+    // CS IGNORE VisibilityModifier FOR NEXT 2 LINES. REASON: JUnit rule.
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static final int HOURSBEFORECHANGEMERGEDFORPATCHSET = -8;
     private static final int HOURBEFOREREPLICATIONCACHECREATED = -1;
+    private static final int REPLICATIONCACHESIZE = 100;
 
     /**
      * Create ReplicationQueueTaskDispatcher with a mocked GerritHandler.
@@ -274,6 +287,47 @@ public class ReplicationQueueTaskDispatcherTest {
         verify(queueMock, times(1)).maintain();
     }
 
+    /**
+     * Test that with a persistent cache the items queued before a restart are still checked for replication,
+     * both against the replication events received before the restart and the ones received after.
+     *
+     * @throws IOException if the log can't be created.
+     */
+    @Test
+    public void shouldUnblockItemQueuedBeforeRestartWithPersistentCache() throws IOException {
+        File log = new File(folder.getRoot(), ReplicationCache.PERSISTENT_FILE_NAME);
+        ReplicationCache cache = ReplicationCache.Factory.createCache(1, TimeUnit.HOURS, REPLICATIONCACHESIZE, log);
+        dispatcher = new ReplicationQueueTaskDispatcher(gerritHandlerMock, cache);
+        long receivedOn = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+        PatchsetCreated replicatedBefore = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        replicatedBefore.setReceivedOn(receivedOn);
+        PatchsetCreated replicatedAfter = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/2/2/2");
+        replicatedAfter.setReceivedOn(receivedOn);
+        Item item1 = createItem(replicatedBefore, new String[] {"slaveA"});
+        Item item2 = createItem(replicatedAfter, new String[] {"slaveA"});
+        assertNotNull("The item should be blocked", dispatcher.canRun(item1));
+        assertNotNull("The item should be blocked", dispatcher.canRun(item2));
+        dispatcher.gerritEvent(Setup.createRefReplicatedEvent("someProject", "refs/changes/1/1/1",
+                "someGerritServer", "slaveA", RefReplicated.SUCCEEDED_STATUS));
+        cache.close();
+
+        //restart
+        ReplicationCache restartedCache = ReplicationCache.Factory.createCache(1, TimeUnit.HOURS,
+                REPLICATIONCACHESIZE, log);
+        dispatcher = new ReplicationQueueTaskDispatcher(gerritHandlerMock, restartedCache);
+        assertFalse(restartedCache.isExpired(receivedOn));
+
+        assertNull("Replicated before the restart", dispatcher.canRun(item1));
+        CauseOfBlockage cause = dispatcher.canRun(item2);
+        assertTrue("Should still wait for replication", cause instanceof WaitingForReplication);
+        dispatcher.gerritEvent(Setup.createRefReplicatedEvent("someProject", "refs/changes/2/2/2",
+                "someGerritServer", "slaveA", RefReplicated.SUCCEEDED_STATUS));
+        assertNull("Replicated after the restart", dispatcher.canRun(item2));
+        restartedCache.close();
+    }
+
     /**
      * Test that it should NOT block item if patchset has expired compared to
      * when the Change Merged event is received.
@@ -704,6 +758,48 @@ public class ReplicationQueueTaskDispatcherTest {
         verify(queueMock, times(1)).maintain();
     }
 
+    /**
+     * Test that an item found not to wait for replication is not evaluated again until it leaves the queue.
+     */
+    @Test
+    public void shouldRememberItemsThatAreNotBlocked() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        Item item = createItem(patchsetCreated, null);
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+        verify(gerritTriggerMock, times(1)).gerritSlavesToWaitFor("someGerritServer");
+        assertEquals(1, dispatcher.getNotBlockedItemCount());
+
+        dispatcher.itemLeft(item.getId());
+        assertEquals(0, dispatcher.getNotBlockedItemCount());
+    }
+
+    /**
+     * Test that a replication event only unblocks the items waiting for its ref and that unblocked
+     * items leave the index.
+     */
+    @Test
+    public void shouldOnlyUnblockItemsWaitingForTheReplicatedRef() {
+        PatchsetCreated first = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        PatchsetCreated second = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/2/2/1");
+        Item item1 = createItem(first, new String[] {"slaveA"});
+        Item item2 = createItem(second, new String[] {"slaveA"});
+        assertNotNull("the item should be blocked", dispatcher.canRun(item1));
+        assertNotNull("the item should be blocked", dispatcher.canRun(item2));
+        assertEquals(2, dispatcher.getBlockedRefCount());
+
+        dispatcher.gerritEvent(Setup.createRefReplicatedEvent("someProject", "refs/changes/2/2/1", "someGerritServer",
+                "slaveA", RefReplicated.SUCCEEDED_STATUS));
+
+        assertNotNull("the item should be blocked", dispatcher.canRun(item1));
+        assertNull("Item should not be blocked", dispatcher.canRun(item2));
+        assertEquals(1, dispatcher.getBlockedRefCount());
+        verify(queueMock, times(1)).maintain();
+    }
+
     /**
      * Create a queue item caused by the specified gerritEvent configure to wait for replication
      * to one slave.